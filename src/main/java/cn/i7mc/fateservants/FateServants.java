@@ -2,6 +2,9 @@ package cn.i7mc.fateservants;
 
 import cn.i7mc.fateservants.attributes.AttributeManager;
 import cn.i7mc.fateservants.attributes.ServantQuality;
+import cn.i7mc.fateservants.attributes.damage.AttributePlusDamagePipeline;
+import cn.i7mc.fateservants.attributes.damage.DamagePipeline;
+import cn.i7mc.fateservants.attributes.damage.NativeDamagePipeline;
 import cn.i7mc.fateservants.attributes.provider.AttributePlusProvider;
 import cn.i7mc.fateservants.attributes.provider.AttributeProvider;
 import cn.i7mc.fateservants.commands.FSCommand;
@@ -10,15 +13,23 @@ import cn.i7mc.fateservants.database.DatabaseManager;
 import cn.i7mc.fateservants.gui.GUIManager;
 import cn.i7mc.fateservants.gui.ServantGUI;
 import cn.i7mc.fateservants.gui.ServantGUIListener;
+import cn.i7mc.fateservants.listeners.MonsterIndexListener;
 import cn.i7mc.fateservants.listeners.MonsterTargetListener;
 import cn.i7mc.fateservants.listeners.PlayerJoinListener;
-import cn.i7mc.fateservants.manager.ServantAIManager;
+import cn.i7mc.fateservants.listeners.ServantDamageListener;
+import cn.i7mc.fateservants.manager.CombatResolver;
+import cn.i7mc.fateservants.manager.MonsterSpatialIndex;
+import cn.i7mc.fateservants.manager.NearbyEntityCache;
+import cn.i7mc.fateservants.manager.ServantSpatialIndex;
+import cn.i7mc.fateservants.manager.ServantTickScheduler;
 import cn.i7mc.fateservants.manager.ServantClassManager;
 import cn.i7mc.fateservants.manager.ServantManager;
 import cn.i7mc.fateservants.manager.SkinManager;
-import cn.i7mc.fateservants.model.Servant;
+import cn.i7mc.fateservants.packets.MovementEncoder;
 import cn.i7mc.fateservants.packets.PacketHandler;
+import cn.i7mc.fateservants.packets.PacketQueue;
 import cn.i7mc.fateservants.skills.SkillManager;
+import cn.i7mc.fateservants.utils.AsyncTaskManager;
 import cn.i7mc.fateservants.utils.DebugUtils;
 import cn.i7mc.fateservants.utils.FormatUtils;
 import cn.i7mc.fateservants.utils.MessageManager;
@@ -26,7 +37,6 @@ import com.comphenix.protocol.ProtocolLibrary;
 import com.comphenix.protocol.ProtocolManager;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
-import org.bukkit.entity.LivingEntity;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
@@ -34,8 +44,11 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import cn.i7mc.fateservants.config.ConfigManager;
+import cn.i7mc.fateservants.config.LevelFormulas;
+import cn.i7mc.fateservants.config.RuntimeSettings;
 import cn.i7mc.fateservants.gui.GUIConfigManager;
 import cn.i7mc.fateservants.utils.MaterialAdapter;
 
@@ -47,19 +60,27 @@ public final class FateServants extends JavaPlugin {
     private PacketHandler packetHandler;
     private AttributeManager attributeManager;
     private ServantClassManager servantClassManager;
-    private ExecutorService battleThreadPool;
     private FileConfiguration messageConfig;
     private FileConfiguration debugMessageConfig;
     private ServantGUI servantGUI;
-    private ServantAIManager aiManager;
+    private ServantTickScheduler tickScheduler;
+    private MonsterSpatialIndex monsterIndex;
+    private NearbyEntityCache nearbyEntityCache;
+    private ServantSpatialIndex servantIndex;
+    private PacketQueue packetQueue;
     private SkinManager skinManager;
     private SkillManager skillManager;
     private FileConfiguration classesConfig;
     private AttributePlusProvider attributePlusProvider;
+    private DamagePipeline nativeDamagePipeline;
+    private DamagePipeline attributePlusDamagePipeline;
     private ExecutorService battleExecutor;
+    private CombatResolver combatResolver;
     private GUIManager guiManager;
     private ConfigManager configManager;
     private GUIConfigManager guiConfigManager;
+    private volatile RuntimeSettings settings;
+    private AsyncTaskManager asyncTaskManager;
 
     @Override
     public void onEnable() {
@@ -113,6 +134,20 @@ public final class FateServants extends JavaPlugin {
             DebugUtils.debug("plugin.load_config", "stats.yml");
         }
         
+        // 编译等级系统公式，公式无效时停止加载插件
+        getLogger().info("Compiling level system formulas...");
+        try {
+            LevelFormulas.reload(getConfig());
+        } catch (IllegalArgumentException e) {
+            getLogger().severe(e.getMessage());
+            getLogger().severe("等级系统公式无效，插件已停止加载，请修正config.yml后重启服务器");
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+        
+        // 构建运行时配置快照
+        reloadSettings();
+        
         // 加载品质配置
         getLogger().info("Loading quality configuration...");
         ServantQuality.loadQualities(getConfig().getConfigurationSection("qualities"));
@@ -123,7 +158,14 @@ public final class FateServants extends JavaPlugin {
         
         // 初始化战斗线程池
         getLogger().info("Initializing battle thread pool...");
-        battleThreadPool = Executors.newFixedThreadPool(4);
+        int battleThreads = Math.max(1, getConfig().getInt("performance.battle_thread_pool_size", 4));
+        AtomicInteger battleThreadId = new AtomicInteger();
+        battleExecutor = Executors.newFixedThreadPool(battleThreads, runnable -> {
+            Thread thread = new Thread(runnable, "FateServants-Battle-" + battleThreadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        combatResolver = new CombatResolver(this, battleThreads);
         
         // 初始化属性管理器
         getLogger().info("Initializing attribute manager...");
@@ -137,8 +179,11 @@ public final class FateServants extends JavaPlugin {
         AttributeProvider provider = attributePlusProvider;
         if (provider.isAvailable()) {
             getLogger().info("Registering AttributePlus provider...");
+            nativeDamagePipeline = new NativeDamagePipeline(provider);
+            attributePlusDamagePipeline = new AttributePlusDamagePipeline(attributePlusProvider, nativeDamagePipeline);
         } else {
             getLogger().warning("AttributePlus provider is not available.");
+            nativeDamagePipeline = new NativeDamagePipeline(null);
         }
         
         // 初始化职阶管理器
@@ -147,14 +192,22 @@ public final class FateServants extends JavaPlugin {
         getLogger().info("Loading servant classes...");
         servantClassManager.loadClasses();
         
+        // 初始化敌对生物空间索引
+        getLogger().info("Initializing monster spatial index...");
+        monsterIndex = new MonsterSpatialIndex(this);
+        nearbyEntityCache = new NearbyEntityCache();
+        servantIndex = new ServantSpatialIndex();
+        packetQueue = new PacketQueue(this);
+        MovementEncoder.reload(getConfig());
+        
+        // 初始化英灵调度器
+        getLogger().info("Initializing servant tick scheduler...");
+        tickScheduler = new ServantTickScheduler(this);
+        
         // 初始化英灵管理器
         getLogger().info("Initializing servant manager...");
         servantManager = new ServantManager(this);
         
-        // 初始化AI管理器
-        getLogger().info("Initializing AI manager...");
-        aiManager = new ServantAIManager(this);
-        
         // 初始化皮肤管理器
         getLogger().info("Initializing skin manager...");
         skinManager = new SkinManager(this);
@@ -167,26 +220,12 @@ public final class FateServants extends JavaPlugin {
         getLogger().info("Initializing GUI manager...");
         guiManager = new GUIManager(this);
         
-        // 启动AI管理器
-        getLogger().info("Starting AI update task...");
-        getServer().getScheduler().runTaskTimer(this, () -> {
-            for (Servant servant : servantManager.getAllServants()) {
-                servant.updateAI();
-            }
-        }, 1L, 1L); // 每tick更新一次
-        
-        // 启动主动技能检测任务
-        getLogger().info("Starting active skill detection task...");
-        getServer().getScheduler().runTaskTimer(this, () -> {
-            for (Servant servant : servantManager.getAllServants()) {
-                if (servant.isAttacking() || servant.isDefending()) {  // 只在战斗或防御状态检测
-                    LivingEntity target = servant.getAIController().getCurrentTarget();
-                    if (target != null && !target.isDead() && target.isValid()) {
-                        servant.checkAndTriggerActiveSkills(target);
-                    }
-                }
-            }
-        }, 20L, 20L); // 每秒检测一次
+        // 启动英灵调度器（AI、跟随和主动技能检测）
+        getLogger().info("Starting servant tick scheduler...");
+        tickScheduler.start();
+        
+        // 启动数据包发送队列，必须在调度器之后启动，保证每tick在调度器之后发送
+        packetQueue.start();
         
         // 初始化数据包处理器
         packetHandler = new PacketHandler(this);
@@ -196,6 +235,8 @@ public final class FateServants extends JavaPlugin {
         getServer().getPluginManager().registerEvents(servantGUI, this);
         getServer().getPluginManager().registerEvents(new ServantGUIListener(this), this);
         getServer().getPluginManager().registerEvents(new MonsterTargetListener(this), this);
+        getServer().getPluginManager().registerEvents(new MonsterIndexListener(this), this);
+        getServer().getPluginManager().registerEvents(new ServantDamageListener(), this);
         
         // 注册命令
         FSCommand fsCommand = new FSCommand(this);
@@ -214,6 +255,9 @@ public final class FateServants extends JavaPlugin {
         // 初始化GUI配置管理器
         guiConfigManager = new GUIConfigManager(this, configManager);
         
+        // 初始化异步任务管理器
+        asyncTaskManager = new AsyncTaskManager(this);
+        
         // 初始化数据库管理器
         getLogger().info("Initializing database manager...");
         databaseManager = new DatabaseManager(this);
@@ -239,9 +283,19 @@ public final class FateServants extends JavaPlugin {
             DebugUtils.debug("plugin.reload");
         }
         
-        // 停止AI管理器
-        if (aiManager != null) {
-            aiManager.stop();
+        // 停止英灵调度器
+        if (tickScheduler != null) {
+            tickScheduler.stop();
+        }
+        
+        // 结算最后一tick尚未应用的攻击，伤害和经验在保存英灵数据前生效
+        if (combatResolver != null) {
+            combatResolver.drain();
+        }
+        
+        // 停止数据包发送队列并发出剩余数据包
+        if (packetQueue != null) {
+            packetQueue.stop();
         }
         
         // 关闭线程池
@@ -259,6 +313,9 @@ public final class FateServants extends JavaPlugin {
             databaseManager.close();
         }
         
+        // 写完剩余的调试日志
+        DebugUtils.shutdown();
+        
         getLogger().info("FateServants plugin shutdown complete!");
     }
 
@@ -294,6 +351,14 @@ public final class FateServants extends JavaPlugin {
         return battleExecutor;
     }
 
+    /**
+     * 获取战斗批量结算器
+     * @return 战斗批量结算器
+     */
+    public CombatResolver getCombatResolver() {
+        return combatResolver;
+    }
+
     public FileConfiguration getMessageConfig() {
         if (configManager == null) {
             // 如果configManager尚未初始化，直接从文件加载
@@ -330,8 +395,44 @@ public final class FateServants extends JavaPlugin {
         return servantGUI;
     }
 
-    public ServantAIManager getAIManager() {
-        return aiManager;
+    /**
+     * 获取英灵调度器
+     * @return 英灵调度器
+     */
+    public ServantTickScheduler getTickScheduler() {
+        return tickScheduler;
+    }
+
+    /**
+     * 获取敌对生物空间索引
+     * @return 敌对生物空间索引
+     */
+    public MonsterSpatialIndex getMonsterIndex() {
+        return monsterIndex;
+    }
+
+    /**
+     * 获取附近实体查询缓存
+     * @return 附近实体查询缓存
+     */
+    public NearbyEntityCache getNearbyEntityCache() {
+        return nearbyEntityCache;
+    }
+
+    /**
+     * 获取战斗中英灵的空间索引
+     * @return 英灵空间索引
+     */
+    public ServantSpatialIndex getServantIndex() {
+        return servantIndex;
+    }
+
+    /**
+     * 获取数据包发送队列
+     * @return 数据包发送队列
+     */
+    public PacketQueue getPacketQueue() {
+        return packetQueue;
     }
 
     public SkinManager getSkinManager() {
@@ -346,6 +447,18 @@ public final class FateServants extends JavaPlugin {
         return attributePlusProvider;
     }
 
+    /**
+     * 获取当前配置的伤害结算流程
+     * 配置为attributeplus但AttributePlus未加载时使用原生结算
+     * @return 伤害结算流程
+     */
+    public DamagePipeline getDamagePipeline() {
+        if (attributePlusDamagePipeline != null && "attributeplus".equals(settings.getDamagePipeline())) {
+            return attributePlusDamagePipeline;
+        }
+        return nativeDamagePipeline;
+    }
+
     /**
      * 获取classes.yml配置
      */
@@ -387,6 +500,29 @@ public final class FateServants extends JavaPlugin {
         return guiManager;
     }
 
+    /**
+     * 获取当前的运行时配置快照
+     * @return 配置快照
+     */
+    public RuntimeSettings getSettings() {
+        return settings;
+    }
+    
+    /**
+     * 从config.yml和message.yml重新构建运行时配置快照并替换当前快照
+     */
+    public void reloadSettings() {
+        settings = RuntimeSettings.load(getConfig(), getMessageConfig());
+    }
+    
+    /**
+     * 获取异步任务管理器
+     * @return 异步任务管理器实例
+     */
+    public AsyncTaskManager getAsyncTaskManager() {
+        return asyncTaskManager;
+    }
+    
     /**
      * 获取配置管理器
      * @return 配置管理器实例
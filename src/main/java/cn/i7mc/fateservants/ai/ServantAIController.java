@@ -1,45 +1,37 @@
 package cn.i7mc.fateservants.ai;
 
 import cn.i7mc.fateservants.FateServants;
+import cn.i7mc.fateservants.config.RuntimeSettings;
 import cn.i7mc.fateservants.model.Servant;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Monster;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.util.Vector;
-import org.bukkit.configuration.file.FileConfiguration;
-
-import java.util.Collection;
 
 public class ServantAIController {
     private final Servant servant;
     private ServantBehavior currentBehavior = ServantBehavior.FOLLOW;
     private Entity target;
-    private final double FOLLOW_DISTANCE;
-    private final double COMBAT_RANGE;
-    private final double DEFEND_RANGE;
-    private final double ATTACK_RANGE;
     private final FateServants plugin;
     private long lastTeleportTime = 0; // 添加上次传送时间记录
     private static final long TELEPORT_COOLDOWN = 10; // 传送后的目标搜索冷却时间（tick）
     private LivingEntity currentTarget = null;  // 添加当前目标字段
+    private ServantLodLevel lodLevel = ServantLodLevel.FULL;
 
     public ServantAIController(Servant servant) {
         this.servant = servant;
         this.plugin = FateServants.getInstance();
-        
-        // 从配置文件加载所有距离参数
-        FileConfiguration config = plugin.getConfig();
-        this.FOLLOW_DISTANCE = config.getDouble("servants.follow_distance", 2.0);
-        this.COMBAT_RANGE = config.getDouble("servants.combat_search_range", 16.0);
-        this.DEFEND_RANGE = config.getDouble("servants.defend_search_range", 8.0);
-        this.ATTACK_RANGE = config.getDouble("servants.attack_range", 2.0);
+        // 距离参数每次从当前的运行时配置快照读取，重载后立即生效
     }
 
     public void setBehavior(ServantBehavior behavior) {
         this.currentBehavior = behavior;
         this.target = null; // 切换行为时重置目标
+        this.lodLevel = ServantLodLevel.FULL; // 切换行为后立即全速响应，等待下次重新评估
+        plugin.getServantIndex().update(servant);
     }
 
     public ServantBehavior getCurrentBehavior() {
@@ -47,11 +39,24 @@ public class ServantAIController {
     }
 
     public void tick() {
+        tick(1);
+    }
+
+    /**
+     * 执行AI行为
+     * @param elapsedTicks 距离上次执行经过的tick数
+     */
+    public void tick(int elapsedTicks) {
         Player owner = servant.getOwner();
         if (owner == null || !owner.isOnline()) {
             return;
         }
 
+        if (lodLevel == ServantLodLevel.REDUCED) {
+            tickReduced(elapsedTicks);
+            return;
+        }
+
         switch (currentBehavior) {
             case IDLE:
                 // 在待机状态下，只需要保持在原地
@@ -68,6 +73,123 @@ public class ServantAIController {
         }
     }
 
+    /**
+     * 降频层级下的AI行为
+     * 跟随模式只做简化移动，战斗和防御模式按降低的频率搜索目标，找到目标后恢复全速
+     * @param elapsedTicks 距离上次执行经过的tick数
+     */
+    private void tickReduced(int elapsedTicks) {
+        switch (currentBehavior) {
+            case IDLE:
+                break;
+            case FOLLOW:
+                handleCheapFollow(elapsedTicks);
+                break;
+            case COMBAT:
+                handleCombat();
+                break;
+            case DEFEND:
+                handleDefend();
+                break;
+        }
+
+        if (hasTarget()) {
+            lodLevel = ServantLodLevel.FULL;
+        }
+    }
+
+    /**
+     * 简化跟随：按经过的tick数放大步长，朝向随传送包一起发送，不再单独发送转头数据包
+     * @param elapsedTicks 距离上次执行经过的tick数
+     */
+    private void handleCheapFollow(int elapsedTicks) {
+        Player owner = servant.getOwner();
+        Location servantLoc = servant.getLocation();
+        Location ownerLoc = owner.getLocation();
+
+        RuntimeSettings settings = plugin.getSettings();
+        double followDistance = settings.getFollowDistance();
+        double distanceSquared = ownerLoc.distanceSquared(servantLoc);
+        if (distanceSquared > settings.getMaxFollowDistanceSquared()) {
+            this.target = null;
+            this.lastTeleportTime = System.currentTimeMillis();
+            servant.teleport(ownerLoc.clone());
+            return;
+        }
+
+        if (distanceSquared <= followDistance * followDistance) {
+            return;
+        }
+
+        double distance = Math.sqrt(distanceSquared);
+        double step = Math.min(distance - followDistance, servant.getMovementSpeed() * elapsedTicks);
+        double dx = ownerLoc.getX() - servantLoc.getX();
+        double dz = ownerLoc.getZ() - servantLoc.getZ();
+
+        Location newLoc = servantLoc.clone().add(
+            dx * step / distance,
+            (ownerLoc.getY() - servantLoc.getY()) * step / distance,
+            dz * step / distance);
+        newLoc.setYaw((float) Math.toDegrees(Math.atan2(-dx, dz)));
+        servant.teleport(newLoc);
+    }
+
+    /**
+     * 重新评估AI细节层级
+     * @param observerRangeSquared 旁观者检测范围的平方
+     * @return 评估后的层级
+     */
+    public ServantLodLevel evaluateLodLevel(double observerRangeSquared) {
+        if (hasTarget()) {
+            return lodLevel = ServantLodLevel.FULL;
+        }
+
+        Location loc = servant.getLocation();
+        World world = loc.getWorld();
+        int chunkX = loc.getBlockX() >> 4;
+        int chunkZ = loc.getBlockZ() >> 4;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                if (!world.isChunkLoaded(chunkX + dx, chunkZ + dz)) {
+                    return lodLevel = ServantLodLevel.FROZEN;
+                }
+            }
+        }
+
+        Player owner = servant.getOwner();
+        for (Player player : world.getPlayers()) {
+            if (player.equals(owner)) {
+                continue;
+            }
+            if (player.getLocation().distanceSquared(loc) <= observerRangeSquared) {
+                return lodLevel = ServantLodLevel.FULL;
+            }
+        }
+
+        return lodLevel = ServantLodLevel.REDUCED;
+    }
+
+    /**
+     * 获取当前AI细节层级
+     * @return AI细节层级
+     */
+    public ServantLodLevel getLodLevel() {
+        return lodLevel;
+    }
+
+    /**
+     * 设置AI细节层级
+     * @param lodLevel AI细节层级
+     */
+    public void setLodLevel(ServantLodLevel lodLevel) {
+        this.lodLevel = lodLevel;
+    }
+
+    private boolean hasTarget() {
+        return (currentTarget != null && currentTarget.isValid() && !currentTarget.isDead())
+            || (target != null && target.isValid() && !target.isDead());
+    }
+
     private void moveToLocation(Location targetLoc, Location currentLoc) {
         // 统一的移动逻辑
         Vector direction = targetLoc.toVector().subtract(currentLoc.toVector()).normalize();
@@ -88,17 +210,19 @@ public class ServantAIController {
         if (owner == null || !owner.isOnline()) return;
 
         Location ownerLoc = owner.getLocation();
-        double distance = ownerLoc.distance(servantLoc);
+        RuntimeSettings settings = plugin.getSettings();
+        double followDistance = settings.getFollowDistance();
+        double distanceSquared = ownerLoc.distanceSquared(servantLoc);
         
         // 如果超出最大跟随距离，直接传送到主人身边并清空目标
-        if (distance > plugin.getConfig().getDouble("servants.max_follow_distance", 16)) {
+        if (distanceSquared > settings.getMaxFollowDistanceSquared()) {
             this.target = null;
             this.lastTeleportTime = System.currentTimeMillis();
             servant.teleport(ownerLoc.clone());
             return;
         }
         
-        if (distance > FOLLOW_DISTANCE) {
+        if (distanceSquared > followDistance * followDistance) {
             moveToLocation(ownerLoc, servantLoc);
         }
     }
@@ -109,17 +233,20 @@ public class ServantAIController {
         }
 
         Location servantLoc = servant.getLocation();
+        RuntimeSettings settings = plugin.getSettings();
+        double attackRange = settings.getAttackRange();
+        double followDistance = settings.getFollowDistance();
         
         // 寻找最近的怪物作为目标
-        Monster target = findNearestMonster(servantLoc);
+        Monster target = findNearestMonster(servantLoc, settings.getCombatSearchRange());
         currentTarget = target;  // 更新当前目标
         
         // 如果找到目标，进行追击和攻击
         if (target != null && target.isValid() && !target.isDead()) {
             Location targetLoc = target.getLocation();
-            double distance = targetLoc.distance(servantLoc);
+            double distanceSquared = targetLoc.distanceSquared(servantLoc);
             
-            if (distance > ATTACK_RANGE) {
+            if (distanceSquared > attackRange * attackRange) {
                 moveToLocation(targetLoc, servantLoc);
             } else {
                 servant.attack(target);
@@ -129,9 +256,9 @@ public class ServantAIController {
             Player owner = servant.getOwner();
             if (owner != null && owner.isOnline()) {
                 Location ownerLoc = owner.getLocation();
-                double distance = ownerLoc.distance(servantLoc);
+                double distanceSquared = ownerLoc.distanceSquared(servantLoc);
                 
-                if (distance > FOLLOW_DISTANCE) {
+                if (distanceSquared > followDistance * followDistance) {
                     moveToLocation(ownerLoc, servantLoc);
                 }
             }
@@ -148,33 +275,22 @@ public class ServantAIController {
         
         if (owner == null || !owner.isOnline()) return;
 
+        RuntimeSettings settings = plugin.getSettings();
+        double attackRange = settings.getAttackRange();
+        double followDistance = settings.getFollowDistance();
+
         // 如果没有目标或目标无效，检查是否有敌对生物接近主人
         if (target == null || !target.isValid() || target.isDead()) {
-            // 只获取附近的实体
-            Collection<Entity> nearbyEntities = owner.getLocation().getWorld().getNearbyEntities(owner.getLocation(), DEFEND_RANGE, DEFEND_RANGE, DEFEND_RANGE);
-            
-            double closestDistance = Double.MAX_VALUE;
-            Entity closestEnemy = null;
-            
-            for (Entity entity : nearbyEntities) {
-                if (entity instanceof Monster && !entity.isDead()) {
-                    double distanceToOwner = entity.getLocation().distance(owner.getLocation());
-                    if (distanceToOwner < DEFEND_RANGE && distanceToOwner < closestDistance) {
-                        closestDistance = distanceToOwner;
-                        closestEnemy = entity;
-                    }
-                }
-            }
-            
-            target = closestEnemy;
+            // 通过空间索引查找接近主人的怪物
+            target = plugin.getMonsterIndex().findNearest(owner.getLocation(), settings.getDefendSearchRange());
         }
 
         // 如果找到威胁目标，进行防御
         if (target != null && target.isValid() && !target.isDead()) {
             Location targetLoc = target.getLocation();
-            double distance = targetLoc.distance(servantLoc);
+            double distanceSquared = targetLoc.distanceSquared(servantLoc);
             
-            if (distance > ATTACK_RANGE) {
+            if (distanceSquared > attackRange * attackRange) {
                 moveToLocation(targetLoc, servantLoc);
             } else {
                 servant.attack((Monster)target);
@@ -182,9 +298,9 @@ public class ServantAIController {
         } else {
             // 没有威胁时保持在主人附近
             Location ownerLoc = owner.getLocation();
-            double distance = ownerLoc.distance(servantLoc);
+            double distanceSquared = ownerLoc.distanceSquared(servantLoc);
             
-            if (distance > FOLLOW_DISTANCE) {
+            if (distanceSquared > followDistance * followDistance) {
                 moveToLocation(ownerLoc, servantLoc);
             }
         }
@@ -201,24 +317,10 @@ public class ServantAIController {
     /**
      * 寻找最近的怪物目标
      * @param location 搜索的中心位置
+     * @param range 搜索范围
      * @return 最近的怪物，如果没有找到则返回null
      */
-    private Monster findNearestMonster(Location location) {
-        Collection<Entity> nearbyEntities = location.getWorld().getNearbyEntities(location, COMBAT_RANGE, COMBAT_RANGE, COMBAT_RANGE);
-        
-        double closestDistance = Double.MAX_VALUE;
-        Monster closestMonster = null;
-        
-        for (Entity entity : nearbyEntities) {
-            if (entity instanceof Monster && !entity.isDead()) {
-                double distance = entity.getLocation().distance(location);
-                if (distance < COMBAT_RANGE && distance < closestDistance) {
-                    closestDistance = distance;
-                    closestMonster = (Monster) entity;
-                }
-            }
-        }
-        
-        return closestMonster;
+    private Monster findNearestMonster(Location location, double range) {
+        return plugin.getMonsterIndex().findNearest(location, range);
     }
 }
@@ -0,0 +1,27 @@
+package cn.i7mc.fateservants.ai;
+
+/**
+ * 英灵AI细节层级
+ * 根据是否有目标、是否有旁观者以及所在区块是否加载决定AI的更新频率
+ */
+public enum ServantLodLevel {
+    FULL("全速", "战斗中或被其他玩家看到，每个更新间隔执行完整AI"),
+    REDUCED("降频", "无目标且除主人外无旁观者，降低频率执行简化跟随"),
+    FROZEN("冻结", "无目标且位于未加载区块边缘，暂停AI更新");
+
+    private final String displayName;
+    private final String description;
+
+    ServantLodLevel(String displayName, String description) {
+        this.displayName = displayName;
+        this.description = description;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
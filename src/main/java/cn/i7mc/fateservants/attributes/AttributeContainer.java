@@ -1,80 +1,150 @@
 package cn.i7mc.fateservants.attributes;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.function.ObjDoubleConsumer;
 
 /**
  * 属性容器类
  * 用于存储和管理属性值及修饰符
+ * 属性按 {@link AttributeRegistry} 分配的下标存放在数组中，基础值或修饰符变化时只标记对应的属性，
+ * 读取时重新计算被标记的属性；显示名称、单位和描述保存在注册表中，所有容器共用
+ * 每个属性的修饰符按操作类型预先汇总，添加和移除修饰符时增量更新汇总值，计算当前值不遍历修饰符：
+ * 当前值 = (基础值 + 基础值 × 基础倍率之和 + 加法之和) × 乘法之积
  */
-public class AttributeContainer {
-    private final Map<String, Double> baseValues = new HashMap<>();
-    private final Map<String, Map<UUID, AttributeModifier>> modifiers = new HashMap<>();
-    private final Map<String, Double> cachedValues;
-    private boolean isDirty;
-    private final Map<String, String> displayNames = new HashMap<>();
-    private final Map<String, String> descriptions = new HashMap<>();
-    private final Map<String, String> units = new HashMap<>();
+public class AttributeContainer implements AttributeView {
+    /**
+     * 未指定持续时间的临时修饰符的持续tick数
+     */
+    public static final int DEFAULT_TEMPORARY_TICKS = 100;
+
+    private double[] baseValues;
+    private double[] finalValues;
+    private Map<UUID, AttributeModifier>[] modifiers;
+    // 按属性汇总的修饰符：ADD之和、MULTIPLY_BASE之和、非零的(1+MULTIPLY)之积、为零的(1+MULTIPLY)个数
+    private double[] addSums;
+    private double[] baseMultiplierSums;
+    private double[] multiplierProducts;
+    private int[] zeroMultipliers;
+    // 临时修饰符ID到属性下标
+    private final Map<UUID, Integer> temporaryModifiers = new HashMap<>();
+    // 属性版本号，任意属性的基础值或修饰符变化时加一
+    private long version;
+    // 已设置基础值的属性
+    private final BitSet present = new BitSet();
+    // 需要重新计算当前值的属性
+    private final BitSet dirty = new BitSet();
 
     public AttributeContainer(Map<String, Double> baseValues) {
-        this.baseValues.putAll(baseValues);
-        this.cachedValues = new ConcurrentHashMap<>();
-        this.isDirty = true;
+        int capacity = AttributeRegistry.size();
+        this.baseValues = new double[capacity];
+        this.finalValues = new double[capacity];
+        this.modifiers = newModifierArray(capacity);
+        this.addSums = new double[capacity];
+        this.baseMultiplierSums = new double[capacity];
+        this.multiplierProducts = new double[capacity];
+        this.zeroMultipliers = new int[capacity];
+        Arrays.fill(multiplierProducts, 1.0);
 
-        // 初始化所有属性
-        for (String attribute : baseValues.keySet()) {
-            modifiers.put(attribute, new ConcurrentHashMap<>());
+        for (Map.Entry<String, Double> entry : baseValues.entrySet()) {
+            setBaseValue(entry.getKey(), entry.getValue());
         }
 
-        recalculateAll();
         initializeBaseAttributes();
     }
 
+    @SuppressWarnings("unchecked")
+    private static Map<UUID, AttributeModifier>[] newModifierArray(int capacity) {
+        return (Map<UUID, AttributeModifier>[]) new Map[capacity];
+    }
+
     /**
      * 初始化基础属性
+     * 职阶没有配置的属性使用以下默认值
      */
     private void initializeBaseAttributes() {
         // 基础属性
-        baseValues.put("health", 20.0);
-        baseValues.put("mana", 100.0);
-        baseValues.put("attack", 5.0);
-        baseValues.put("defense", 5.0);
-        baseValues.put("speed", 0.2);
+        setDefault("health", 20.0);
+        setDefault("mana", 100.0);
+        setDefault("attack", 5.0);
+        setDefault("defense", 5.0);
+        setDefault("speed", 0.2);
         
         // 战斗相关属性
-        baseValues.put("crit_rate", 5.0);
-        baseValues.put("crit_damage", 150.0);
-        baseValues.put("dodge", 5.0);
-        baseValues.put("accuracy", 95.0);
+        setDefault("crit_rate", 5.0);
+        setDefault("crit_damage", 150.0);
+        setDefault("dodge", 5.0);
+        setDefault("accuracy", 95.0);
         
         // 元素属性
-        baseValues.put("fire_resistance", 0.0);
-        baseValues.put("ice_resistance", 0.0);
-        baseValues.put("lightning_resistance", 0.0);
-        
-        // 属性显示名称
-        displayNames.put("health", "生命值");
-        displayNames.put("mana", "魔力值");
-        displayNames.put("attack", "攻击力");
-        displayNames.put("defense", "防御力");
-        displayNames.put("speed", "速度");
-        displayNames.put("crit_rate", "暴击率");
-        displayNames.put("crit_damage", "暴击伤害");
-        displayNames.put("dodge", "闪避率");
-        displayNames.put("accuracy", "命中率");
-        displayNames.put("fire_resistance", "火焰抗性");
-        displayNames.put("ice_resistance", "冰霜抗性");
-        displayNames.put("lightning_resistance", "雷电抗性");
-        
-        // 单位
-        units.put("crit_rate", "%");
-        units.put("crit_damage", "%");
-        units.put("dodge", "%");
-        units.put("accuracy", "%");
-        units.put("fire_resistance", "%");
-        units.put("ice_resistance", "%");
-        units.put("lightning_resistance", "%");
+        setDefault("fire_resistance", 0.0);
+        setDefault("ice_resistance", 0.0);
+        setDefault("lightning_resistance", 0.0);
+    }
+
+    private void setDefault(String attributeName, double value) {
+        if (!present.get(AttributeRegistry.indexOf(attributeName))) {
+            setBaseValue(attributeName, value);
+        }
+    }
+
+    /**
+     * 确保数组能容纳指定下标
+     */
+    private void ensureCapacity(int index) {
+        if (index < baseValues.length) {
+            return;
+        }
+        int oldCapacity = baseValues.length;
+        int capacity = Math.max(index + 1, AttributeRegistry.size());
+        baseValues = Arrays.copyOf(baseValues, capacity);
+        finalValues = Arrays.copyOf(finalValues, capacity);
+        modifiers = Arrays.copyOf(modifiers, capacity);
+        addSums = Arrays.copyOf(addSums, capacity);
+        baseMultiplierSums = Arrays.copyOf(baseMultiplierSums, capacity);
+        multiplierProducts = Arrays.copyOf(multiplierProducts, capacity);
+        zeroMultipliers = Arrays.copyOf(zeroMultipliers, capacity);
+        Arrays.fill(multiplierProducts, oldCapacity, capacity, 1.0);
+    }
+
+    @Override
+    public int size() {
+        return baseValues.length;
+    }
+
+    @Override
+    public boolean has(int index) {
+        return index >= 0 && present.get(index);
+    }
+
+    @Override
+    public double getBaseValue(int index) {
+        return index >= 0 && present.get(index) ? baseValues[index] : 0.0;
+    }
+
+    @Override
+    public double getValue(int index) {
+        if (index < 0 || !present.get(index)) {
+            return 0.0;
+        }
+        if (dirty.get(index)) {
+            recalculate(index);
+        }
+        return finalValues[index];
+    }
+
+    @Override
+    public void forEach(ObjDoubleConsumer<String> action) {
+        for (int index = present.nextSetBit(0); index >= 0; index = present.nextSetBit(index + 1)) {
+            action.accept(AttributeRegistry.nameOf(index), getValue(index));
+        }
+    }
+
+    /**
+     * 获取零复制的只读视图
+     * @return 只读视图
+     */
+    public AttributeView view() {
+        return this;
     }
 
     /**
@@ -83,7 +153,7 @@ public class AttributeContainer {
      * @return 基础值，如果不存在则返回0
      */
     public double getBaseValue(String attributeName) {
-        return baseValues.getOrDefault(attributeName, 0.0);
+        return getBaseValue(AttributeRegistry.find(attributeName));
     }
     
     /**
@@ -92,17 +162,21 @@ public class AttributeContainer {
      * @param value 基础值
      */
     public void setBaseValue(String attributeName, double value) {
-        baseValues.put(attributeName, value);
+        int index = AttributeRegistry.indexOf(attributeName);
+        ensureCapacity(index);
+        baseValues[index] = value;
+        present.set(index);
+        markDirty(index);
     }
     
     /**
      * 获取所有属性值
+     * 返回复制的Map，频繁调用的地方使用 {@link #forEach} 或 {@link #view()}
      */
     public Map<String, Double> getAll() {
-        if (isDirty) {
-            recalculateAll();
-        }
-        return new HashMap<>(cachedValues);
+        Map<String, Double> values = new HashMap<>();
+        forEach(values::put);
+        return values;
     }
 
     /**
@@ -110,17 +184,19 @@ public class AttributeContainer {
      * @return 属性名称和值的Map
      */
     public Map<String, Double> getAllAttributes() {
-        return new HashMap<>(baseValues);
+        Map<String, Double> values = new HashMap<>();
+        for (int index = present.nextSetBit(0); index >= 0; index = present.nextSetBit(index + 1)) {
+            values.put(AttributeRegistry.nameOf(index), baseValues[index]);
+        }
+        return values;
     }
 
     /**
      * 获取属性当前值
      */
+    @Override
     public double getValue(String attribute) {
-        if (isDirty) {
-            recalculateAll();
-        }
-        return cachedValues.getOrDefault(attribute, 0.0);
+        return getValue(AttributeRegistry.find(attribute));
     }
 
     /**
@@ -129,7 +205,17 @@ public class AttributeContainer {
      * @param modifier 修饰符
      */
     public void addModifier(String attributeName, AttributeModifier modifier) {
-        modifiers.computeIfAbsent(attributeName, k -> new ConcurrentHashMap<>()).put(modifier.getId(), modifier);
+        int index = AttributeRegistry.indexOf(attributeName);
+        ensureCapacity(index);
+        if (modifiers[index] == null) {
+            modifiers[index] = new LinkedHashMap<>();
+        }
+        AttributeModifier previous = modifiers[index].put(modifier.getId(), modifier);
+        if (previous != null) {
+            aggregate(index, previous, false);
+        }
+        aggregate(index, modifier, true);
+        markDirty(index);
     }
     
     /**
@@ -139,11 +225,87 @@ public class AttributeContainer {
      * @return 是否成功移除
      */
     public boolean removeModifier(String attributeName, UUID modifierId) {
-        Map<UUID, AttributeModifier> attrModifiers = modifiers.get(attributeName);
-        if (attrModifiers != null) {
-            return attrModifiers.remove(modifierId) != null;
+        return removeModifier(AttributeRegistry.find(attributeName), modifierId);
+    }
+
+    /**
+     * 按下标移除属性修饰符
+     * @param index 属性下标
+     * @param modifierId 修饰符ID
+     * @return 是否成功移除
+     */
+    boolean removeModifier(int index, UUID modifierId) {
+        Map<UUID, AttributeModifier> attrModifiers = modifiersOf(index);
+        if (attrModifiers == null) {
+            return false;
+        }
+        AttributeModifier removed = attrModifiers.remove(modifierId);
+        if (removed == null) {
+            return false;
+        }
+        temporaryModifiers.remove(modifierId);
+        if (attrModifiers.isEmpty()) {
+            // 没有修饰符时直接重置汇总值，避免浮点误差累积
+            modifiers[index] = null;
+            resetAggregate(index);
+        } else {
+            aggregate(index, removed, false);
         }
-        return false;
+        markDirty(index);
+        return true;
+    }
+
+    /**
+     * 把修饰符计入或移出汇总值
+     * @param index 属性下标
+     * @param modifier 修饰符
+     * @param add true为计入，false为移出
+     */
+    private void aggregate(int index, AttributeModifier modifier, boolean add) {
+        double amount = modifier.getAmount();
+        switch (modifier.getOperation()) {
+            case ADD:
+                addSums[index] += add ? amount : -amount;
+                break;
+            case MULTIPLY_BASE:
+                baseMultiplierSums[index] += add ? amount : -amount;
+                break;
+            case MULTIPLY:
+                double factor = 1 + amount;
+                // 系数为0时不能通过除法移出，单独计数
+                if (factor == 0) {
+                    zeroMultipliers[index] += add ? 1 : -1;
+                } else if (add) {
+                    multiplierProducts[index] *= factor;
+                } else {
+                    multiplierProducts[index] /= factor;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void resetAggregate(int index) {
+        addSums[index] = 0.0;
+        baseMultiplierSums[index] = 0.0;
+        multiplierProducts[index] = 1.0;
+        zeroMultipliers[index] = 0;
+    }
+
+    /**
+     * 用汇总值计算属性的最终值，不遍历修饰符
+     */
+    private double compute(int index) {
+        double base = baseValues[index];
+        if (zeroMultipliers[index] > 0) {
+            return 0.0;
+        }
+        return (base + base * baseMultiplierSums[index] + addSums[index]) * multiplierProducts[index];
+    }
+
+    private Map<UUID, AttributeModifier> modifiersOf(int index) {
+        return index >= 0 && index < modifiers.length ? modifiers[index] : null;
     }
     
     /**
@@ -152,28 +314,12 @@ public class AttributeContainer {
      * @return 最终值
      */
     public double getFinalValue(String attributeName) {
-        double baseValue = getBaseValue(attributeName);
-        
-        // 如果没有修饰符，直接返回基础值
-        Map<UUID, AttributeModifier> attrModifiers = modifiers.get(attributeName);
-        if (attrModifiers == null || attrModifiers.isEmpty()) {
-            return baseValue;
-        }
-        
-        // 计算所有修饰符的影响
-        double additiveValue = 0.0;
-        double multiplicativeValue = 1.0;
-        
-        for (AttributeModifier modifier : attrModifiers.values()) {
-            if (modifier.getOperation() == AttributeModifier.Operation.ADD) {
-                additiveValue += modifier.getAmount();
-            } else if (modifier.getOperation() == AttributeModifier.Operation.MULTIPLY) {
-                multiplicativeValue *= (1 + modifier.getAmount());
-            }
+        int index = AttributeRegistry.find(attributeName);
+        if (index < 0 || index >= baseValues.length) {
+            return 0.0;
         }
-        
-        // 计算最终值: (基础值 + 加法修饰符) * 乘法修饰符
-        return (baseValue + additiveValue) * multiplicativeValue;
+        // 只有修饰符没有基础值的属性按基础值0计算
+        return present.get(index) ? getValue(index) : compute(index);
     }
     
     /**
@@ -182,7 +328,7 @@ public class AttributeContainer {
      * @return 修饰符集合
      */
     public Set<AttributeModifier> getModifiers(String attributeName) {
-        Map<UUID, AttributeModifier> attrModifiers = modifiers.get(attributeName);
+        Map<UUID, AttributeModifier> attrModifiers = modifiersOf(AttributeRegistry.find(attributeName));
         if (attrModifiers != null) {
             return new HashSet<>(attrModifiers.values());
         }
@@ -194,14 +340,28 @@ public class AttributeContainer {
      * @param attributeName 属性名称
      */
     public void clearModifiers(String attributeName) {
-        modifiers.remove(attributeName);
+        int index = AttributeRegistry.find(attributeName);
+        Map<UUID, AttributeModifier> attrModifiers = modifiersOf(index);
+        if (attrModifiers != null) {
+            temporaryModifiers.keySet().removeAll(attrModifiers.keySet());
+            modifiers[index] = null;
+            resetAggregate(index);
+            markDirty(index);
+        }
     }
     
     /**
      * 清除所有属性的所有修饰符
      */
     public void clearAllModifiers() {
-        modifiers.clear();
+        for (int index = 0; index < modifiers.length; index++) {
+            if (modifiers[index] != null) {
+                modifiers[index] = null;
+                resetAggregate(index);
+                markDirty(index);
+            }
+        }
+        temporaryModifiers.clear();
     }
     
     /**
@@ -209,8 +369,12 @@ public class AttributeContainer {
      * @return 属性名称集合
      */
     public Set<String> getAttributeNames() {
-        Set<String> names = new HashSet<>(baseValues.keySet());
-        names.addAll(modifiers.keySet());
+        Set<String> names = new HashSet<>();
+        for (int index = 0; index < baseValues.length; index++) {
+            if (present.get(index) || modifiers[index] != null) {
+                names.add(AttributeRegistry.nameOf(index));
+            }
+        }
         return names;
     }
     
@@ -220,39 +384,26 @@ public class AttributeContainer {
      * @return 是否已设置
      */
     public boolean hasAttribute(String attributeName) {
-        return baseValues.containsKey(attributeName) || modifiers.containsKey(attributeName);
+        int index = AttributeRegistry.find(attributeName);
+        return index >= 0 && (present.get(index) || modifiersOf(index) != null);
     }
 
-    /**
-     * 标记需要重新计算
-     */
-    private void markDirty() {
-        isDirty = true;
+    private void markDirty(int index) {
+        dirty.set(index);
+        version++;
     }
 
     /**
-     * 重新计算所有属性值
+     * 获取属性版本号，用于判断根据属性生成的缓存是否需要重建
+     * @return 版本号，任意属性变化后增大
      */
-    private void recalculateAll() {
-        cachedValues.clear();
-        for (String attribute : baseValues.keySet()) {
-            recalculate(attribute);
-        }
-        isDirty = false;
+    public long getVersion() {
+        return version;
     }
 
-    private void recalculate(String attribute) {
-        double base = getBaseValue(attribute);
-        double finalValue = base;
-
-        Map<UUID, AttributeModifier> attrModifiers = modifiers.get(attribute);
-        if (attrModifiers != null) {
-            for (AttributeModifier modifier : attrModifiers.values()) {
-                finalValue = modifier.apply(base, finalValue);
-            }
-        }
-
-        cachedValues.put(attribute, finalValue);
+    private void recalculate(int index) {
+        finalValues[index] = compute(index);
+        dirty.clear(index);
     }
 
     /**
@@ -296,20 +447,42 @@ public class AttributeContainer {
         return description;
     }
 
+    /**
+     * 添加持续 {@link #DEFAULT_TEMPORARY_TICKS} tick的临时加法修饰符
+     * @param attribute 属性名
+     * @param value 修饰数值
+     */
     public void addTemporaryModifier(String attribute, double value) {
-        AttributeModifier modifier = new AttributeModifier(
-            "临时修饰符",
-            attribute,
-            value,
-            AttributeModifier.Operation.ADD,
-            100
-        );
+        addTemporaryModifier(attribute, value, DEFAULT_TEMPORARY_TICKS);
+    }
+
+    /**
+     * 添加临时加法修饰符，到期后由 {@link ModifierExpiryWheel} 移除
+     * 只能在主线程调用
+     * @param attribute 属性名
+     * @param value 修饰数值
+     * @param ticks 持续tick数
+     * @return 修饰符ID，可用于提前移除
+     */
+    public UUID addTemporaryModifier(String attribute, double value, int ticks) {
+        AttributeModifier modifier = new AttributeModifier("临时修饰符", value, AttributeModifier.Operation.ADD);
         addModifier(attribute, modifier);
+        int index = AttributeRegistry.indexOf(attribute);
+        temporaryModifiers.put(modifier.getId(), index);
+        ModifierExpiryWheel.schedule(this, index, modifier.getId(), ticks);
+        return modifier.getId();
     }
 
+    /**
+     * 移除所有尚未到期的临时修饰符，其他修饰符保留
+     */
     public void clearTemporaryModifiers() {
-        modifiers.clear();
-        recalculateAll();
+        if (temporaryModifiers.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<UUID, Integer> entry : new ArrayList<>(temporaryModifiers.entrySet())) {
+            removeModifier(entry.getValue(), entry.getKey());
+        }
     }
 
     /**
@@ -318,16 +491,17 @@ public class AttributeContainer {
      * @return 显示名称，如果没有则返回属性名本身
      */
     public String getDisplayName(String attribute) {
-        return displayNames.getOrDefault(attribute, attribute);
+        int index = AttributeRegistry.find(attribute);
+        return index >= 0 ? AttributeRegistry.getDisplayName(index) : attribute;
     }
 
     /**
-     * 设置属性显示名称
+     * 设置属性显示名称，所有英灵共用
      * @param attribute 属性名
      * @param displayName 显示名称
      */
     public void setDisplayName(String attribute, String displayName) {
-        displayNames.put(attribute, displayName);
+        AttributeRegistry.setDisplayName(AttributeRegistry.indexOf(attribute), displayName);
     }
 
     /**
@@ -336,16 +510,17 @@ public class AttributeContainer {
      * @return 单位，如果没有则返回空字符串
      */
     public String getUnit(String attribute) {
-        return units.getOrDefault(attribute, "");
+        int index = AttributeRegistry.find(attribute);
+        return index >= 0 ? AttributeRegistry.getUnit(index) : "";
     }
 
     /**
-     * 设置属性单位
+     * 设置属性单位，所有英灵共用
      * @param attribute 属性名
      * @param unit 单位
      */
     public void setUnit(String attribute, String unit) {
-        units.put(attribute, unit);
+        AttributeRegistry.setUnit(AttributeRegistry.indexOf(attribute), unit);
     }
 
     /**
@@ -354,16 +529,17 @@ public class AttributeContainer {
      * @return 描述，如果没有则返回空字符串
      */
     public String getDescription(String attribute) {
-        return descriptions.getOrDefault(attribute, "");
+        int index = AttributeRegistry.find(attribute);
+        return index >= 0 ? AttributeRegistry.getDescription(index) : "";
     }
 
     /**
-     * 设置属性描述
+     * 设置属性描述，所有英灵共用
      * @param attribute 属性名
      * @param description 描述
      */
     public void setDescription(String attribute, String description) {
-        descriptions.put(attribute, description);
+        AttributeRegistry.setDescription(AttributeRegistry.indexOf(attribute), description);
     }
 
     /**
@@ -372,8 +548,7 @@ public class AttributeContainer {
      * @param value 属性值
      */
     public void setValue(String attribute, double value) {
-        baseValues.put(attribute, value);
-        markDirty();
+        setBaseValue(attribute, value);
     }
 
     /**
@@ -382,32 +557,24 @@ public class AttributeContainer {
      */
     public void copyFrom(AttributeContainer source) {
         if (source == null) return;
+        ensureCapacity(source.baseValues.length - 1);
         
         // 复制基础属性值
-        for (Map.Entry<String, Double> entry : source.baseValues.entrySet()) {
-            this.baseValues.put(entry.getKey(), entry.getValue());
+        for (int index = source.present.nextSetBit(0); index >= 0; index = source.present.nextSetBit(index + 1)) {
+            baseValues[index] = source.baseValues[index];
+            present.set(index);
+            markDirty(index);
         }
         
         // 复制修饰符
-        for (Map.Entry<String, Map<UUID, AttributeModifier>> entry : source.modifiers.entrySet()) {
-            String attributeName = entry.getKey();
-            Map<UUID, AttributeModifier> attributeModifiers = entry.getValue();
-            
-            Map<UUID, AttributeModifier> targetModifiers = this.modifiers.computeIfAbsent(
-                attributeName, k -> new ConcurrentHashMap<>()
-            );
-            
+        for (int index = 0; index < source.modifiers.length; index++) {
+            Map<UUID, AttributeModifier> attributeModifiers = source.modifiers[index];
+            if (attributeModifiers == null) {
+                continue;
+            }
             for (AttributeModifier modifier : attributeModifiers.values()) {
-                targetModifiers.put(modifier.getId(), modifier);
+                addModifier(AttributeRegistry.nameOf(index), modifier);
             }
         }
-        
-        // 复制显示名称、描述和单位
-        this.displayNames.putAll(source.displayNames);
-        this.descriptions.putAll(source.descriptions);
-        this.units.putAll(source.units);
-        
-        // 标记为脏，以便下次获取属性值时重新计算
-        markDirty();
     }
-} 
\ No newline at end of file
+}
@@ -83,6 +83,9 @@ public class AttributeManager {
             }
         }
         
+        // 为属性分配下标并更新显示信息
+        AttributeRegistry.load(attributeInfoMap.values());
+        
         plugin.getLogger().info(String.format("已加载 %d 个属性定义", attributeInfoMap.size()));
     }
     
@@ -0,0 +1,178 @@
+package cn.i7mc.fateservants.attributes;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 属性注册表
+ * 为每个属性名称分配一个从0开始连续的下标，属性容器按下标用数组存储属性值；
+ * 属性的显示名称、单位、描述和stats.yml中的配置只在这里保存一份，所有英灵共用
+ * 下标一经分配不再改变，重载stats.yml只更新显示信息，不在stats.yml中的属性在第一次使用时分配下标
+ */
+public final class AttributeRegistry {
+    private static final Object LOCK = new Object();
+    private static final Map<String, Integer> INDICES = new ConcurrentHashMap<>();
+    // 按下标排列的属性信息，修改时复制后整体替换，读取时不加锁
+    private static volatile Entry[] entries = new Entry[0];
+
+    /**
+     * 单个属性的注册信息
+     */
+    private static final class Entry {
+        private final String name;
+        private final String displayName;
+        private final String unit;
+        private final String description;
+        private final AttributeInfo info;
+
+        private Entry(String name, String displayName, String unit, String description, AttributeInfo info) {
+            this.name = name;
+            this.displayName = displayName;
+            this.unit = unit;
+            this.description = description;
+            this.info = info;
+        }
+    }
+
+    static {
+        // 内置属性的显示名称和单位，stats.yml中配置的显示名称优先
+        register("health", "生命值", "");
+        register("mana", "魔力值", "");
+        register("attack", "攻击力", "");
+        register("defense", "防御力", "");
+        register("speed", "速度", "");
+        register("crit_rate", "暴击率", "%");
+        register("crit_damage", "暴击伤害", "%");
+        register("dodge", "闪避率", "%");
+        register("accuracy", "命中率", "%");
+        register("fire_resistance", "火焰抗性", "%");
+        register("ice_resistance", "冰霜抗性", "%");
+        register("lightning_resistance", "雷电抗性", "%");
+    }
+
+    private AttributeRegistry() {
+    }
+
+    private static void register(String name, String displayName, String unit) {
+        int index = indexOf(name);
+        Entry entry = entries[index];
+        update(index, new Entry(name, displayName, unit, entry.description, entry.info));
+    }
+
+    /**
+     * 用stats.yml中的属性配置更新注册表
+     * @param infos 属性配置
+     */
+    public static void load(Collection<AttributeInfo> infos) {
+        synchronized (LOCK) {
+            for (AttributeInfo info : infos) {
+                int index = indexOf(info.getName());
+                Entry entry = entries[index];
+                update(index, new Entry(entry.name, info.getDisplayName(), entry.unit, entry.description, info));
+            }
+        }
+    }
+
+    /**
+     * 获取属性的下标，属性尚未注册时为其分配新下标
+     * @param attributeName 属性名称
+     * @return 属性下标
+     */
+    public static int indexOf(String attributeName) {
+        Integer index = INDICES.get(attributeName);
+        if (index != null) {
+            return index;
+        }
+        synchronized (LOCK) {
+            index = INDICES.get(attributeName);
+            if (index != null) {
+                return index;
+            }
+            Entry[] current = entries;
+            Entry[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = new Entry(attributeName, attributeName, "", "", null);
+            entries = updated;
+            INDICES.put(attributeName, current.length);
+            return current.length;
+        }
+    }
+
+    /**
+     * 查找属性的下标，不分配新下标
+     * @param attributeName 属性名称
+     * @return 属性下标，未注册时返回-1
+     */
+    public static int find(String attributeName) {
+        Integer index = INDICES.get(attributeName);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * 获取已注册的属性数量，所有下标都小于此值
+     * @return 属性数量
+     */
+    public static int size() {
+        return entries.length;
+    }
+
+    /**
+     * 获取下标对应的属性名称
+     * @param index 属性下标
+     * @return 属性名称
+     */
+    public static String nameOf(int index) {
+        return entries[index].name;
+    }
+
+    /**
+     * 获取属性的stats.yml配置
+     * @param index 属性下标
+     * @return 属性配置，不在stats.yml中的属性返回null
+     */
+    public static AttributeInfo getInfo(int index) {
+        return entries[index].info;
+    }
+
+    public static String getDisplayName(int index) {
+        return entries[index].displayName;
+    }
+
+    public static String getUnit(int index) {
+        return entries[index].unit;
+    }
+
+    public static String getDescription(int index) {
+        return entries[index].description;
+    }
+
+    public static void setDisplayName(int index, String displayName) {
+        synchronized (LOCK) {
+            Entry entry = entries[index];
+            update(index, new Entry(entry.name, displayName, entry.unit, entry.description, entry.info));
+        }
+    }
+
+    public static void setUnit(int index, String unit) {
+        synchronized (LOCK) {
+            Entry entry = entries[index];
+            update(index, new Entry(entry.name, entry.displayName, unit, entry.description, entry.info));
+        }
+    }
+
+    public static void setDescription(int index, String description) {
+        synchronized (LOCK) {
+            Entry entry = entries[index];
+            update(index, new Entry(entry.name, entry.displayName, entry.unit, description, entry.info));
+        }
+    }
+
+    private static void update(int index, Entry entry) {
+        synchronized (LOCK) {
+            Entry[] updated = entries.clone();
+            updated[index] = entry;
+            entries = updated;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package cn.i7mc.fateservants.attributes;
+
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * 属性容器的只读视图
+ * 直接读取容器内部的数组，不复制属性值；属性下标由 {@link AttributeRegistry} 分配
+ */
+public interface AttributeView {
+    /**
+     * 获取下标上限，所有已设置属性的下标都小于此值
+     * @return 下标上限
+     */
+    int size();
+
+    /**
+     * 检查属性是否设置了基础值
+     * @param index 属性下标
+     * @return 是否已设置
+     */
+    boolean has(int index);
+
+    /**
+     * 获取属性的基础值
+     * @param index 属性下标
+     * @return 基础值，未设置时返回0
+     */
+    double getBaseValue(int index);
+
+    /**
+     * 获取属性的当前值（基础值+修饰符）
+     * @param index 属性下标
+     * @return 当前值，未设置时返回0
+     */
+    double getValue(int index);
+
+    /**
+     * 获取属性的当前值（基础值+修饰符）
+     * @param attributeName 属性名称
+     * @return 当前值，未设置时返回0
+     */
+    double getValue(String attributeName);
+
+    /**
+     * 按下标顺序遍历所有已设置属性的名称和当前值
+     * @param action 处理函数
+     */
+    void forEach(ObjDoubleConsumer<String> action);
+}
@@ -0,0 +1,108 @@
+package cn.i7mc.fateservants.attributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 限时属性修饰符的时间轮
+ * 修饰符按到期tick放入对应的槽位，每tick只检查当前槽位，添加和到期都是O(1)；
+ * 超过一圈的到期时间记录剩余圈数，转到该槽位时减一，归零时移除修饰符
+ * 由英灵调度器每tick推进一次，只在主线程使用
+ */
+public final class ModifierExpiryWheel {
+    // 槽位数量，必须是2的幂
+    private static final int WHEEL_SIZE = 256;
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    @SuppressWarnings("unchecked")
+    private static final List<Timer>[] SLOTS = new List[WHEEL_SIZE];
+    private static long currentTick;
+    private static int pending;
+
+    /**
+     * 一个待到期的修饰符
+     */
+    private static final class Timer {
+        private final AttributeContainer container;
+        private final int attributeIndex;
+        private final UUID modifierId;
+        private long rounds;
+
+        private Timer(AttributeContainer container, int attributeIndex, UUID modifierId, long rounds) {
+            this.container = container;
+            this.attributeIndex = attributeIndex;
+            this.modifierId = modifierId;
+            this.rounds = rounds;
+        }
+    }
+
+    static {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            SLOTS[i] = new ArrayList<>();
+        }
+    }
+
+    private ModifierExpiryWheel() {
+    }
+
+    /**
+     * 安排修饰符在指定tick数后移除
+     * 修饰符提前被移除时到期不做任何事
+     * @param container 属性容器
+     * @param attributeIndex 属性下标
+     * @param modifierId 修饰符ID
+     * @param ticks 持续tick数
+     */
+    static void schedule(AttributeContainer container, int attributeIndex, UUID modifierId, int ticks) {
+        long delay = Math.max(1, ticks);
+        long expireTick = currentTick + delay;
+        // 当前tick推进后才检查槽位，因此第一圈内到期的计时器剩余圈数为0
+        SLOTS[(int) (expireTick & MASK)].add(new Timer(container, attributeIndex, modifierId, (delay - 1) / WHEEL_SIZE));
+        pending++;
+    }
+
+    /**
+     * 推进一个tick，移除当前槽位中到期的修饰符
+     */
+    public static void advance() {
+        currentTick++;
+        if (pending == 0) {
+            return;
+        }
+        List<Timer> slot = SLOTS[(int) (currentTick & MASK)];
+        if (slot.isEmpty()) {
+            return;
+        }
+        List<Timer> expired = null;
+        for (int i = slot.size() - 1; i >= 0; i--) {
+            Timer timer = slot.get(i);
+            if (timer.rounds > 0) {
+                timer.rounds--;
+                continue;
+            }
+            // 用末尾元素填补被移除的位置，避免移动整个列表
+            int last = slot.size() - 1;
+            slot.set(i, slot.get(last));
+            slot.remove(last);
+            pending--;
+            if (expired == null) {
+                expired = new ArrayList<>();
+            }
+            expired.add(timer);
+        }
+        if (expired != null) {
+            for (Timer timer : expired) {
+                timer.container.removeModifier(timer.attributeIndex, timer.modifierId);
+            }
+        }
+    }
+
+    /**
+     * 获取尚未到期的修饰符数量
+     * @return 修饰符数量
+     */
+    public static int getPending() {
+        return pending;
+    }
+}
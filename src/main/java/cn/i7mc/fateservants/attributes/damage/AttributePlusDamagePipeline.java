@@ -0,0 +1,117 @@
+package cn.i7mc.fateservants.attributes.damage;
+
+import cn.i7mc.fateservants.FateServants;
+import cn.i7mc.fateservants.attributes.provider.AttributePlusProvider;
+import cn.i7mc.fateservants.model.Servant;
+import cn.i7mc.fateservants.utils.DebugUtils;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.serverct.ersha.api.AttributeAPI;
+import org.serverct.ersha.attribute.data.AttributeData;
+import org.serverct.ersha.attribute.data.AttributeSource;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * AttributePlus伤害结算
+ * 攻击时把英灵属性源临时加到主人身上，以主人的名义对目标造成1点伤害，
+ * 由AttributePlus按主人的属性完成伤害计算，结算后移除英灵属性并恢复主人原有属性
+ * 每次攻击都会让AttributePlus重新计算主人属性，需要在config.yml中显式启用
+ * 无法获取主人的AttributePlus数据或造成伤害前出错时改用原生结算，造成伤害后出错只记录日志
+ */
+public class AttributePlusDamagePipeline implements DamagePipeline {
+    private final AttributePlusProvider provider;
+    private final DamagePipeline fallback;
+
+    /**
+     * @param provider AttributePlus属性提供者
+     * @param fallback AttributePlus不可用时使用的结算流程
+     */
+    public AttributePlusDamagePipeline(AttributePlusProvider provider, DamagePipeline fallback) {
+        this.provider = provider;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public String getName() {
+        return "attributeplus";
+    }
+
+    @Override
+    public double attack(Servant servant, LivingEntity target) {
+        Player owner = servant.getOwner();
+        AttributeData ownerData;
+        try {
+            ownerData = AttributeAPI.getAttrData(owner);
+        } catch (NoClassDefFoundError | Exception e) {
+            return fallback(servant, target, e);
+        }
+        if (ownerData == null) {
+            DebugUtils.trace("servant.attack_base_damage", () -> new Object[]{
+                servant.getServantClass().getDisplayName(), fallback.getName()});
+            return fallback.attack(servant, target);
+        }
+
+        // 检查是否禁用属性叠加
+        boolean disableStacking = FateServants.getInstance().getSettings().isDisableAttributeStacking();
+
+        // 保存主人原有的属性源（如果需要的话）
+        final Map<String, AttributeSource> originalSources = !disableStacking ?
+            new HashMap<>(ownerData.getApiSourceAttribute()) : null;
+
+        double initialHealth = target.getHealth();
+        // 已经以主人的名义造成伤害后出错时不能再改用原生结算，否则目标会受到两次伤害
+        boolean hit = false;
+        try {
+            // 如果禁用属性叠加,则清除主人当前所有API属性，添加英灵属性源时会重新计算
+            if (disableStacking) {
+                ownerData.clearApiAttribute();
+            }
+
+            // 英灵属性源只在英灵属性变化后重新生成
+            AttributeSource servantSource = servant.getAttributeSource().get(provider);
+            ownerData.operationApiAttribute("servant_attributes", servantSource,
+                AttributeSource.OperationType.ADD, true);
+
+            // 造成伤害
+            target.damage(1, owner);
+            hit = true;
+
+            // 禁用叠加时移除英灵属性，恢复原有属性时统一重新计算
+            if (disableStacking) {
+                ownerData.clearApiAttribute();
+                ownerData.updateAttribute(true);
+            }
+        } catch (NoClassDefFoundError | Exception e) {
+            if (!hit) {
+                return fallback(servant, target, e);
+            }
+            FateServants.getInstance().getLogger().log(Level.WARNING, "AttributePlus结算后移除英灵属性失败", e);
+        } finally {
+            // 只有在不禁用属性叠加时才恢复主人原有属性
+            if (!disableStacking && originalSources != null) {
+                ownerData.clearApiAttribute();
+                // 逐个添加时不重新计算，全部添加后只计算一次
+                originalSources.forEach((source, attr) -> {
+                    ownerData.operationApiAttribute(source, attr,
+                        AttributeSource.OperationType.ADD, false);
+                });
+                ownerData.updateAttribute(true);
+                AttributeAPI.updateAttribute(owner);
+            }
+        }
+
+        // 计算实际伤害
+        return Math.max(0, initialHealth - target.getHealth());
+    }
+
+    private double fallback(Servant servant, LivingEntity target, Throwable e) {
+        DebugUtils.debug("servant.attack_fallback", () -> new Object[]{
+            servant.getServantClass().getDisplayName(),
+            fallback.getName(),
+            e.getMessage()});
+        return fallback.attack(servant, target);
+    }
+}
@@ -0,0 +1,25 @@
+package cn.i7mc.fateservants.attributes.damage;
+
+import cn.i7mc.fateservants.model.Servant;
+import org.bukkit.entity.LivingEntity;
+
+/**
+ * 英灵伤害结算流程
+ * 决定英灵普通攻击如何根据属性计算伤害并作用到目标上，
+ * 由config.yml中的 servants.damage_pipeline 选择实现
+ */
+public interface DamagePipeline {
+    /**
+     * 获取结算流程名称
+     * @return 名称
+     */
+    String getName();
+
+    /**
+     * 结算一次普通攻击，只能在主线程调用
+     * @param servant 发起攻击的英灵
+     * @param target 目标
+     * @return 目标实际损失的生命值，未命中时返回0
+     */
+    double attack(Servant servant, LivingEntity target);
+}
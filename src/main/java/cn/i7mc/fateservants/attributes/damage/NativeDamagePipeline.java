@@ -0,0 +1,195 @@
+package cn.i7mc.fateservants.attributes.damage;
+
+import cn.i7mc.fateservants.attributes.AttributeContainer;
+import cn.i7mc.fateservants.attributes.AttributeRegistry;
+import cn.i7mc.fateservants.attributes.provider.AttributeProvider;
+import cn.i7mc.fateservants.model.Servant;
+import cn.i7mc.fateservants.utils.DebugUtils;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 原生伤害结算
+ * 直接用英灵属性容器中的攻击力、暴击率、暴击伤害和命中率计算伤害，
+ * 目标的闪避率和防御力通过属性提供者读取，最后只对目标造成一次伤害，不修改主人的属性
+ * 伤害仍以主人的名义造成以保留击杀归属，AttributePlus等插件按主人属性改写的伤害
+ * 由ServantDamageListener在最高优先级恢复为本流程计算的数值
+ * 百分比属性按百分数存储，例如暴击率5.0表示5%，暴击伤害150.0表示1.5倍
+ */
+public class NativeDamagePipeline implements DamagePipeline {
+    private static final int ATTACK = AttributeRegistry.indexOf("attack");
+    private static final int CRIT_RATE = AttributeRegistry.indexOf("crit_rate");
+    private static final int CRIT_DAMAGE = AttributeRegistry.indexOf("crit_damage");
+    private static final int ACCURACY = AttributeRegistry.indexOf("accuracy");
+
+    // 正在结算的目标和伤害，只在target.damage调用期间有效
+    private static Entity pendingTarget;
+    private static double pendingDamage;
+
+    private final AttributeProvider targetProvider;
+
+    /**
+     * @param targetProvider 读取目标闪避率和防御力的属性提供者，为null时目标没有闪避和防御
+     */
+    public NativeDamagePipeline(AttributeProvider targetProvider) {
+        this.targetProvider = targetProvider;
+    }
+
+    @Override
+    public String getName() {
+        return "native";
+    }
+
+    @Override
+    public double attack(Servant servant, LivingEntity target) {
+        AttackSnapshot snapshot = snapshot(servant, target);
+        return apply(snapshot, snapshot.computeDamage(ThreadLocalRandom.current()));
+    }
+
+    /**
+     * 在主线程读取攻击双方的属性，生成可以在其他线程计算伤害的快照
+     * @param servant 发起攻击的英灵
+     * @param target 目标
+     * @return 攻击快照
+     */
+    public AttackSnapshot snapshot(Servant servant, LivingEntity target) {
+        AttributeContainer attributes = servant.getAttributes();
+        return new AttackSnapshot(servant, target,
+            attributes.getValue(ATTACK),
+            attributes.getValue(CRIT_RATE),
+            attributes.getValue(CRIT_DAMAGE),
+            attributes.getValue(ACCURACY),
+            targetValue(target, "dodge_chance"),
+            targetValue(target, "defense"));
+    }
+
+    /**
+     * 在主线程把计算好的伤害作用到目标上
+     * @param snapshot 攻击快照
+     * @param damage 计算出的伤害，0表示未命中
+     * @return 目标实际损失的生命值
+     */
+    public static double apply(AttackSnapshot snapshot, double damage) {
+        Servant servant = snapshot.getServant();
+        LivingEntity target = snapshot.getTarget();
+        if (damage <= 0) {
+            DebugUtils.trace("servant.attack_miss", () -> new Object[]{
+                servant.getServantClass().getDisplayName(), target.getName()});
+            return 0;
+        }
+
+        DebugUtils.trace("servant.native_damage", () -> new Object[]{
+            servant.getServantClass().getDisplayName(),
+            String.format("%.2f", snapshot.attack),
+            String.format("%.2f", damage)});
+
+        double initialHealth = target.getHealth();
+        pendingTarget = target;
+        pendingDamage = damage;
+        try {
+            target.damage(damage, servant.getOwner());
+        } finally {
+            pendingTarget = null;
+        }
+        return Math.max(0, initialHealth - target.getHealth());
+    }
+
+    /**
+     * 获取正在对实体结算的原生伤害，供伤害事件监听器恢复伤害数值
+     * @param entity 受到伤害的实体
+     * @return 本流程计算的伤害，实体不是正在结算的目标时返回-1
+     */
+    public static double getPendingDamage(Entity entity) {
+        return entity == pendingTarget ? pendingDamage : -1;
+    }
+
+    /**
+     * 计算一次攻击的伤害，不访问任何游戏对象，可以在任意线程调用
+     * @param attack 攻击力
+     * @param critRate 暴击率（%）
+     * @param critDamage 暴击伤害（%）
+     * @param accuracy 命中率（%）
+     * @param targetDodge 目标闪避率（%）
+     * @param targetDefense 目标防御力
+     * @param random 随机数来源
+     * @return 伤害，未命中时返回0
+     */
+    public static double computeDamage(double attack, double critRate, double critDamage, double accuracy,
+                                       double targetDodge, double targetDefense, Random random) {
+        // 命中率减去闪避率为最终命中概率
+        double hitChance = (accuracy - targetDodge) / 100.0;
+        if (hitChance < 1.0 && random.nextDouble() >= hitChance) {
+            return 0;
+        }
+
+        double damage = Math.max(0, attack);
+        if (critRate > 0 && random.nextDouble() * 100.0 < critRate) {
+            damage *= Math.max(0, critDamage) / 100.0;
+        }
+
+        // 防御力按比例减伤，100点防御减少一半伤害
+        if (targetDefense > 0) {
+            damage *= 100.0 / (100.0 + targetDefense);
+        }
+        return damage;
+    }
+
+    private double targetValue(LivingEntity target, String attribute) {
+        if (targetProvider == null) {
+            return 0;
+        }
+        try {
+            return targetProvider.getValue(target, attribute);
+        } catch (NoClassDefFoundError | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 一次攻击的不可变属性快照
+     * 属性值在主线程读取，伤害计算只使用快照中的数值，可以在战斗线程池中执行
+     */
+    public static final class AttackSnapshot {
+        private final Servant servant;
+        private final LivingEntity target;
+        private final double attack;
+        private final double critRate;
+        private final double critDamage;
+        private final double accuracy;
+        private final double targetDodge;
+        private final double targetDefense;
+
+        private AttackSnapshot(Servant servant, LivingEntity target, double attack, double critRate,
+                               double critDamage, double accuracy, double targetDodge, double targetDefense) {
+            this.servant = servant;
+            this.target = target;
+            this.attack = attack;
+            this.critRate = critRate;
+            this.critDamage = critDamage;
+            this.accuracy = accuracy;
+            this.targetDodge = targetDodge;
+            this.targetDefense = targetDefense;
+        }
+
+        /**
+         * 计算本次攻击的伤害，可以在任意线程调用
+         * @param random 随机数来源
+         * @return 伤害，未命中时返回0
+         */
+        public double computeDamage(Random random) {
+            return NativeDamagePipeline.computeDamage(attack, critRate, critDamage, accuracy,
+                targetDodge, targetDefense, random);
+        }
+
+        public Servant getServant() {
+            return servant;
+        }
+
+        public LivingEntity getTarget() {
+            return target;
+        }
+    }
+}
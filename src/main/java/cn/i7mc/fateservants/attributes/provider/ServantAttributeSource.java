@@ -0,0 +1,67 @@
+package cn.i7mc.fateservants.attributes.provider;
+
+import cn.i7mc.fateservants.attributes.AttributeContainer;
+import cn.i7mc.fateservants.utils.DebugUtils;
+import org.serverct.ersha.api.AttributeAPI;
+import org.serverct.ersha.attribute.data.AttributeSource;
+
+import java.util.HashMap;
+
+/**
+ * 英灵属性对应的AttributePlus属性源缓存
+ * 每个英灵持有一个，只在英灵属性版本号或属性映射变化时重新生成属性源，
+ * 攻击时直接把缓存的属性源加到主人身上
+ */
+public class ServantAttributeSource {
+    private final AttributeContainer attributes;
+    private AttributePlusProvider provider;
+    private long version = -1;
+    private AttributeSource source;
+    private int size;
+
+    public ServantAttributeSource(AttributeContainer attributes) {
+        this.attributes = attributes;
+    }
+
+    /**
+     * 获取英灵当前属性对应的属性源，属性未变化时返回缓存
+     * 属性只设置基础值，增益值为0，避免重复计算
+     * @param provider AttributePlus属性提供者，用于映射属性名称
+     * @return 属性源
+     */
+    public AttributeSource get(AttributePlusProvider provider) {
+        long currentVersion = attributes.getVersion();
+        if (source != null && version == currentVersion && this.provider == provider) {
+            return source;
+        }
+
+        HashMap<String, Number[]> values = new HashMap<>();
+        attributes.forEach((key, value) -> {
+            String mappedAttr = provider.getMappedAttributeName(key);
+            if (mappedAttr != null) {
+                values.put(mappedAttr, new Number[]{value, 0.0});
+            }
+        });
+        source = AttributeAPI.createStaticAttributeSource(values, new HashMap<>());
+        size = values.size();
+        version = currentVersion;
+        this.provider = provider;
+        DebugUtils.trace("attribute.source_rebuild", () -> new Object[]{currentVersion, size});
+        return source;
+    }
+
+    /**
+     * 获取属性源中的属性数量
+     * @return 上次生成时映射到的属性数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 丢弃缓存，下次获取时重新生成
+     */
+    public void invalidate() {
+        source = null;
+    }
+}
@@ -1,9 +1,17 @@
 package cn.i7mc.fateservants.commands;
 
 import cn.i7mc.fateservants.FateServants;
+import cn.i7mc.fateservants.config.LevelFormulas;
+import cn.i7mc.fateservants.manager.NearbyEntityCache;
 import cn.i7mc.fateservants.model.Servant;
 import cn.i7mc.fateservants.model.ServantClass;
+import cn.i7mc.fateservants.model.ServantPlaceholder;
+import cn.i7mc.fateservants.packets.MovementEncoder;
+import cn.i7mc.fateservants.packets.PacketQueue;
+import cn.i7mc.fateservants.utils.DebugLevel;
+import cn.i7mc.fateservants.utils.DebugLogWriter;
 import cn.i7mc.fateservants.utils.DebugUtils;
+import cn.i7mc.fateservants.utils.FormatUtils;
 import cn.i7mc.fateservants.utils.MessageManager;
 
 import org.bukkit.ChatColor;
@@ -73,6 +81,9 @@ public class FSCommand implements CommandExecutor {
             case "apstats":
                 handleAPStats(player);
                 break;
+            case "debug":
+                handleDebug(player, args);
+                break;
             case "help":
                 showCommandHelp(player);
                 break;
@@ -172,7 +183,25 @@ public class FSCommand implements CommandExecutor {
         // 重载插件
         plugin.reloadConfig();
         plugin.reloadMessageConfig();
+        plugin.getConfigManager().reloadConfig("message.yml");
         MessageManager.reload();
+        DebugUtils.reload();
+        // 构建新的运行时配置快照，英灵在下一次tick时读取到新值
+        plugin.reloadSettings();
+        plugin.getTickScheduler().reload();
+        plugin.getMonsterIndex().reload();
+        MovementEncoder.reload(plugin.getConfig());
+        try {
+            LevelFormulas.reload(plugin.getConfig());
+        } catch (IllegalArgumentException e) {
+            // 保留之前的公式，提示管理员修正配置
+            plugin.getLogger().warning(e.getMessage());
+            MessageManager.send(player, "commands.reload.invalid_formula", e.getMessage());
+        }
+        
+        // 清空预编译的格式模板，下面重建全息图时按新配置重新编译
+        FormatUtils.clearCache();
+        ServantPlaceholder.TEMPLATES.clear();
         
         // 更新所有在线英灵的显示
         plugin.getServantManager().getAllServants().forEach(servant -> {
@@ -203,6 +232,8 @@ public class FSCommand implements CommandExecutor {
             String.format("%.1f", servant.getCurrentHealth()), 
             String.format("%.1f", servant.getAttributes().getValue("health"))
         );
+        MessageManager.send(player, "commands.info.ai_level",
+            servant.getAIController().getLodLevel().getDisplayName());
         
         // 显示所有属性
         MessageManager.send(player, "commands.info.attributes_header");
@@ -237,6 +268,51 @@ public class FSCommand implements CommandExecutor {
         plugin.getServantGUI().openMainMenu(player);
     }
 
+    private void handleDebug(Player player, String[] args) {
+        if (!player.hasPermission("fateservants.debug")) {
+            MessageManager.send(player, "commands.no_permission");
+            return;
+        }
+
+        if (args.length < 2) {
+            // 显示异步调试日志的状态
+            DebugLogWriter writer = DebugUtils.getLogWriter();
+            if (writer == null) {
+                MessageManager.send(player, "commands.debug.status_console");
+            } else {
+                MessageManager.send(player, "commands.debug.status", writer.getFile().getPath(),
+                    writer.getWritten(), writer.getPending(), writer.getDropped());
+            }
+            // 显示性能统计，供调整配置时参考
+            PacketQueue packetQueue = plugin.getPacketQueue();
+            if (packetQueue != null) {
+                MessageManager.send(player, "commands.debug.packet_stats", packetQueue.getQueuedLastTick(),
+                    packetQueue.getMaxQueuedPerTick(), packetQueue.getTotalQueued());
+            }
+            NearbyEntityCache nearbyCache = plugin.getNearbyEntityCache();
+            if (nearbyCache != null) {
+                MessageManager.send(player, "commands.debug.nearby_cache_stats", nearbyCache.getHitsLastTick(),
+                    nearbyCache.getMissesLastTick(), nearbyCache.getTotalHits(), nearbyCache.getTotalMisses());
+            }
+            MessageManager.send(player, "commands.debug.usage");
+            return;
+        }
+
+        String category = args[1].toLowerCase();
+        DebugLevel level;
+        if (args.length >= 3) {
+            level = DebugLevel.parse(args[2], null);
+            if (level == null) {
+                MessageManager.send(player, "commands.debug.invalid_level", args[2]);
+                return;
+            }
+            DebugUtils.setCategoryLevel(category, level);
+        } else {
+            level = DebugUtils.toggleCategory(category);
+        }
+        MessageManager.send(player, "commands.debug.toggled", category, level.name().toLowerCase());
+    }
+
     private void handleAPStats(Player player) {
         if (!player.hasPermission("fateservants.command.apstats")) {
             MessageManager.send(player, "attributePlus.apstats.no_permission");
@@ -347,5 +423,9 @@ public class FSCommand implements CommandExecutor {
         if (player.hasPermission("fateservants.command.apstats")) {
             player.sendMessage(MessageManager.get("commands.help.apstats"));
         }
+        
+        if (player.hasPermission("fateservants.debug")) {
+            player.sendMessage(MessageManager.get("commands.help.debug"));
+        }
     }
 } 
\ No newline at end of file
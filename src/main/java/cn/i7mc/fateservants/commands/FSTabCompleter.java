@@ -2,6 +2,8 @@ package cn.i7mc.fateservants.commands;
 
 import cn.i7mc.fateservants.FateServants;
 import cn.i7mc.fateservants.model.ServantClass;
+import cn.i7mc.fateservants.utils.DebugLevel;
+import cn.i7mc.fateservants.utils.DebugUtils;
 
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -15,7 +17,7 @@ import java.util.stream.Collectors;
 
 public class FSTabCompleter implements TabCompleter {
     private final FateServants plugin;
-    private final List<String> baseCommands = Arrays.asList("summon", "unsummon", "list", "info", "reload", "manage");
+    private final List<String> baseCommands = Arrays.asList("summon", "unsummon", "list", "info", "reload", "manage", "debug");
 
     public FSTabCompleter(FateServants plugin) {
         this.plugin = plugin;
@@ -41,6 +43,9 @@ public class FSTabCompleter implements TabCompleter {
                     if (cmd.equals("manage")) {
                         return player.hasPermission("fateservants.manage");
                     }
+                    if (cmd.equals("debug")) {
+                        return player.hasPermission("fateservants.debug");
+                    }
                     return player.hasPermission("fateservants." + cmd);
                 })
                 .filter(cmd -> cmd.toLowerCase().startsWith(input))
@@ -51,6 +56,20 @@ public class FSTabCompleter implements TabCompleter {
                 .map(servantClass -> servantClass.getId())
                 .filter(id -> id.toLowerCase().startsWith(input))
                 .collect(Collectors.toList());
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("debug") && player.hasPermission("fateservants.debug")) {
+            // 补全debugmessage.yml中的调试分类
+            String input = args[1].toLowerCase();
+            completions = DebugUtils.getCategories().stream()
+                .filter(category -> category.toLowerCase().startsWith(input))
+                .sorted()
+                .collect(Collectors.toList());
+        } else if (args.length == 3 && args[0].equalsIgnoreCase("debug") && player.hasPermission("fateservants.debug")) {
+            // 补全输出等级
+            String input = args[2].toLowerCase();
+            completions = Arrays.stream(DebugLevel.values())
+                .map(level -> level.name().toLowerCase())
+                .filter(level -> level.startsWith(input))
+                .collect(Collectors.toList());
         }
 
         return completions;
@@ -0,0 +1,166 @@
+package cn.i7mc.fateservants.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 经验曲线
+ * 按升级经验公式预先计算从1级到各等级的累计经验表，
+ * 获得大量经验时通过二分查找一次得到新等级，而不是逐级计算公式
+ * 每个最大等级对应一条曲线，曲线不可变，重载公式时清空缓存
+ */
+public final class ExperienceCurve {
+    // 累计经验表最多覆盖的等级数，超出部分逐级计算
+    private static final int TABLE_LIMIT = 10000;
+
+    private static final Map<Integer, ExperienceCurve> CURVES = new ConcurrentHashMap<>();
+
+    // 最大等级，0表示无限制
+    private final int maxLevel;
+    // cumulative[i]为从1级升到i+1级所需的累计经验
+    private final long[] cumulative;
+
+    private ExperienceCurve(int maxLevel) {
+        this.maxLevel = maxLevel;
+        int levels = maxLevel > 0 ? Math.min(maxLevel, TABLE_LIMIT) : TABLE_LIMIT;
+        this.cumulative = new long[levels];
+        for (int i = 1; i < levels; i++) {
+            cumulative[i] = cumulative[i - 1] + requiredFromFormula(i);
+        }
+    }
+
+    /**
+     * 获取指定最大等级的经验曲线
+     * @param maxLevel 最大等级，小于等于0表示无限制
+     * @return 经验曲线
+     */
+    public static ExperienceCurve forMaxLevel(int maxLevel) {
+        int key = Math.max(0, maxLevel);
+        ExperienceCurve curve = CURVES.get(key);
+        if (curve == null) {
+            curve = new ExperienceCurve(key);
+            CURVES.put(key, curve);
+        }
+        return curve;
+    }
+
+    /**
+     * 根据全局和职阶的等级限制计算实际的最大等级
+     * @param globalMaxLevel level_system.max_level，-1表示无限制
+     * @param classMaxLevel 职阶最大等级，0表示无限制
+     * @return 实际最大等级，小于等于0表示无限制
+     */
+    public static int effectiveMaxLevel(int globalMaxLevel, int classMaxLevel) {
+        if (globalMaxLevel == -1) {
+            // 如果全局限制是-1（无限制），则使用职阶限制
+            return classMaxLevel;
+        }
+        if (classMaxLevel == 0) {
+            // 如果职阶限制是0（无限制），则使用全局限制
+            return globalMaxLevel;
+        }
+        // 两者都有限制时，使用较小的值
+        return Math.min(globalMaxLevel, classMaxLevel);
+    }
+
+    /**
+     * 清空所有曲线，升级经验公式变化后调用
+     */
+    static void clear() {
+        CURVES.clear();
+    }
+
+    /**
+     * 获取最大等级
+     * @return 最大等级，0表示无限制
+     */
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * 检查等级是否已达到上限
+     * @param level 等级
+     * @return 是否已达到上限
+     */
+    public boolean isMaxLevel(int level) {
+        return maxLevel > 0 && level >= maxLevel;
+    }
+
+    /**
+     * 获取指定等级升到下一级所需的经验值
+     * @param level 当前等级
+     * @return 所需经验值
+     */
+    public int getRequiredExperience(int level) {
+        if (level >= 1 && level < cumulative.length) {
+            return (int) (cumulative[level] - cumulative[level - 1]);
+        }
+        return requiredFromFormula(Math.max(1, level));
+    }
+
+    /**
+     * 获取从1级升到指定等级所需的累计经验
+     * @param level 等级
+     * @return 累计经验
+     */
+    public long getCumulativeExperience(int level) {
+        if (level <= 1) {
+            return 0;
+        }
+        if (level <= cumulative.length) {
+            return cumulative[level - 1];
+        }
+        // 超出表的部分逐级累加，只在无限制或最大等级超过表长度时发生
+        long total = cumulative[cumulative.length - 1];
+        for (int l = cumulative.length; l < level; l++) {
+            total += requiredFromFormula(l);
+        }
+        return total;
+    }
+
+    /**
+     * 计算累计经验对应的等级
+     * @param totalExperience 从1级开始累计的总经验
+     * @return 等级，不超过最大等级
+     */
+    public int getLevel(long totalExperience) {
+        int last = cumulative.length - 1;
+        if (totalExperience >= cumulative[last]) {
+            int level = last + 1;
+            if (isMaxLevel(level)) {
+                return maxLevel;
+            }
+            // 超出表的部分逐级计算
+            long total = cumulative[last];
+            while (!isMaxLevel(level)) {
+                total += requiredFromFormula(level);
+                if (total > totalExperience) {
+                    break;
+                }
+                level++;
+            }
+            return level;
+        }
+
+        // 二分查找最后一个累计经验不超过总经验的等级
+        int low = 0;
+        int high = last;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (cumulative[mid] <= totalExperience) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low + 1;
+    }
+
+    /**
+     * 使用公式计算单级所需经验，至少为1，避免公式结果为0或负数时无限升级
+     */
+    private static int requiredFromFormula(int level) {
+        return Math.max(1, LevelFormulas.getRequiredExperience(level));
+    }
+}
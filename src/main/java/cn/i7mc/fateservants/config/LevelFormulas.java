@@ -0,0 +1,94 @@
+package cn.i7mc.fateservants.config;
+
+import cn.i7mc.fateservants.utils.Expression;
+import org.bukkit.configuration.file.FileConfiguration;
+
+/**
+ * 等级系统公式
+ * 加载配置时把level_system中的经验获取公式和升级经验公式编译为表达式，
+ * 之后每次获得经验和检查升级只做一次表达式求值
+ */
+public final class LevelFormulas {
+    private static volatile Formulas current = new Formulas(
+        Expression.compile("{damage}/10", "damage"),
+        Expression.compile("100+({level}*240)", "level"),
+        100);
+
+    /**
+     * 一次加载得到的全部公式，重载时整体替换
+     */
+    private static final class Formulas {
+        private final Expression expGain;
+        private final Expression levelUp;
+        private final int defaultRequiredExp;
+
+        private Formulas(Expression expGain, Expression levelUp, int defaultRequiredExp) {
+            this.expGain = expGain;
+            this.levelUp = levelUp;
+            this.defaultRequiredExp = defaultRequiredExp;
+        }
+    }
+
+    private LevelFormulas() {
+    }
+
+    /**
+     * 从配置重新编译公式
+     * 任一公式无效时抛出异常并保留之前的公式
+     * @param config 插件配置
+     * @throws IllegalArgumentException 公式无效
+     */
+    public static void reload(FileConfiguration config) {
+        Expression expGain = compile(config, "level_system.exp_gain_formula", "{damage}/10", "damage");
+        Expression levelUp = compile(config, "level_system.level_up_formula", "100+({level}*240)", "level");
+        current = new Formulas(expGain, levelUp, config.getInt("level_system.default_required_exp", 100));
+        ExperienceCurve.clear();
+    }
+
+    private static Expression compile(FileConfiguration config, String path, String def, String variable) {
+        try {
+            return Expression.compile(config.getString(path, def), variable);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("config.yml中的" + path + "无效: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 计算造成伤害获得的经验值
+     * @param damage 造成的实际伤害
+     * @return 经验值（四舍五入）
+     */
+    public static int getExperienceGain(double damage) {
+        return (int) Math.round(current.expGain.evaluate(damage));
+    }
+
+    /**
+     * 计算指定等级升到下一级所需的经验值
+     * 1级使用default_required_exp，2级及以上使用升级经验公式
+     * @param level 当前等级
+     * @return 所需经验值（四舍五入）
+     */
+    public static int getRequiredExperience(int level) {
+        Formulas formulas = current;
+        if (level <= 1) {
+            return formulas.defaultRequiredExp;
+        }
+        return (int) Math.round(formulas.levelUp.evaluate(level));
+    }
+
+    /**
+     * 获取升级经验公式
+     * @return 公式
+     */
+    public static String getLevelUpFormula() {
+        return current.levelUp.getSource();
+    }
+
+    /**
+     * 获取经验获取公式
+     * @return 公式
+     */
+    public static String getExpGainFormula() {
+        return current.expGain.getSource();
+    }
+}
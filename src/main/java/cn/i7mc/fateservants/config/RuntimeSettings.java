@@ -0,0 +1,264 @@
+package cn.i7mc.fateservants.config;
+
+import cn.i7mc.fateservants.model.ServantPlaceholder;
+import cn.i7mc.fateservants.utils.PlaceholderTemplate;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 运行时配置快照
+ * 加载配置时一次性读取config.yml和message.yml中tick路径使用的设置，所有字段不可变，
+ * 重载时构建新的快照整体替换，调用方每次使用时从插件获取当前快照，不再逐次查询YAML路径
+ */
+public final class RuntimeSettings {
+    // 英灵行为
+    private final double followDistance;
+    private final double maxFollowDistance;
+    private final double maxFollowDistanceSquared;
+    private final double combatSearchRange;
+    private final double defendSearchRange;
+    private final double attackRange;
+    private final boolean disableAttributeStacking;
+    private final String damagePipeline;
+    private final double monsterTargetRange;
+    private final double monsterTargetChance;
+    private final boolean headRotation;
+
+    // 等级系统
+    private final int globalMaxLevel;
+    private final boolean levelUpMessage;
+    private final boolean levelUpSound;
+
+    // 性能
+    private final double visibilityRange;
+    private final double visibilityRangeSquared;
+    private final boolean passengerHolograms;
+    private final boolean batchCombat;
+
+    // 显示（message.yml）
+    private final boolean displayEnabled;
+    private final PlaceholderTemplate<ServantPlaceholder> displayTemplate;
+    private final double hologramBaseHeight;
+    private final double hologramHeightInterval;
+    private final List<HologramMessage> hologramMessages;
+    private final String healthBarFilledColor;
+    private final String healthBarEmptyColor;
+    private final String healthBarHeartSymbol;
+    private final int healthBarTotalHearts;
+
+    /**
+     * 启用的全息图消息（msg1~msg4）
+     */
+    public static final class HologramMessage {
+        private final String id;
+        private final PlaceholderTemplate<ServantPlaceholder> template;
+
+        private HologramMessage(String id, PlaceholderTemplate<ServantPlaceholder> template) {
+            this.id = id;
+            this.template = template;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public PlaceholderTemplate<ServantPlaceholder> getTemplate() {
+            return template;
+        }
+    }
+
+    private RuntimeSettings(FileConfiguration config, FileConfiguration messageConfig) {
+        this.followDistance = config.getDouble("servants.follow_distance", 2.0);
+        this.maxFollowDistance = config.getDouble("servants.max_follow_distance", 16);
+        this.maxFollowDistanceSquared = maxFollowDistance * maxFollowDistance;
+        this.combatSearchRange = config.getDouble("servants.combat_search_range", 10.0);
+        this.defendSearchRange = config.getDouble("servants.defend_search_range", 5.0);
+        this.attackRange = config.getDouble("servants.attack_range", 2.0);
+        this.disableAttributeStacking = config.getBoolean("servants.disable_attribute_stacking", true);
+        this.damagePipeline = config.getString("servants.damage_pipeline", "native").toLowerCase();
+        this.monsterTargetRange = config.getDouble("servants.monster_target_range", 16.0);
+        this.monsterTargetChance = config.getDouble("servants.monster_target_chance", 0.3);
+        this.headRotation = config.getBoolean("servants.head_rotation", false);
+
+        this.globalMaxLevel = config.getInt("level_system.max_level", -1);
+        this.levelUpMessage = config.getBoolean("level_system.level_up_message", true);
+        this.levelUpSound = config.getBoolean("level_system.level_up_sound", true);
+
+        this.visibilityRange = config.getDouble("performance.servant_visibility_range", 32);
+        this.visibilityRangeSquared = visibilityRange * visibilityRange;
+        this.passengerHolograms = "passenger".equalsIgnoreCase(config.getString("performance.hologram_mode", "teleport"));
+        this.batchCombat = config.getBoolean("performance.batch_combat", true);
+
+        this.displayEnabled = messageConfig.getBoolean("messages.display.enabled", true);
+        this.displayTemplate = compile(displayEnabled
+            ? messageConfig.getString("messages.display.format", "{quality} {class_name}")
+            : "");
+        this.hologramBaseHeight = messageConfig.getDouble("messages.height.base", 2.0);
+        this.hologramHeightInterval = messageConfig.getDouble("messages.height.interval", 0.25);
+        List<HologramMessage> messages = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            String msgKey = "msg" + i;
+            if (messageConfig.getBoolean("messages." + msgKey + ".enabled", false)) {
+                messages.add(new HologramMessage(msgKey, compile(messageConfig.getString("messages." + msgKey + ".format", ""))));
+            }
+        }
+        this.hologramMessages = Collections.unmodifiableList(messages);
+        this.healthBarFilledColor = messageConfig.getString("health_bar.filled_color", "§4");
+        this.healthBarEmptyColor = messageConfig.getString("health_bar.empty_color", "§8");
+        this.healthBarHeartSymbol = messageConfig.getString("health_bar.heart_symbol", "❤");
+        this.healthBarTotalHearts = messageConfig.getInt("health_bar.total_hearts", 10);
+    }
+
+    /**
+     * 从配置构建快照
+     * @param config config.yml
+     * @param messageConfig message.yml
+     * @return 配置快照
+     */
+    public static RuntimeSettings load(FileConfiguration config, FileConfiguration messageConfig) {
+        return new RuntimeSettings(config, messageConfig);
+    }
+
+    private static PlaceholderTemplate<ServantPlaceholder> compile(String format) {
+        return PlaceholderTemplate.compile(format, ServantPlaceholder::byName);
+    }
+
+    public double getFollowDistance() {
+        return followDistance;
+    }
+
+    public double getMaxFollowDistance() {
+        return maxFollowDistance;
+    }
+
+    public double getMaxFollowDistanceSquared() {
+        return maxFollowDistanceSquared;
+    }
+
+    public double getCombatSearchRange() {
+        return combatSearchRange;
+    }
+
+    public double getDefendSearchRange() {
+        return defendSearchRange;
+    }
+
+    public double getAttackRange() {
+        return attackRange;
+    }
+
+    public boolean isDisableAttributeStacking() {
+        return disableAttributeStacking;
+    }
+
+    /**
+     * 获取普通攻击的伤害结算方式
+     * @return native 或 attributeplus
+     */
+    public String getDamagePipeline() {
+        return damagePipeline;
+    }
+
+    public double getMonsterTargetRange() {
+        return monsterTargetRange;
+    }
+
+    public double getMonsterTargetChance() {
+        return monsterTargetChance;
+    }
+
+    /**
+     * 英灵空闲时是否转头看向附近的生物
+     * @return 是否启用
+     */
+    public boolean isHeadRotation() {
+        return headRotation;
+    }
+
+    /**
+     * 获取全局最大等级
+     * @return 最大等级，-1表示无限制
+     */
+    public int getGlobalMaxLevel() {
+        return globalMaxLevel;
+    }
+
+    public boolean isLevelUpMessage() {
+        return levelUpMessage;
+    }
+
+    public boolean isLevelUpSound() {
+        return levelUpSound;
+    }
+
+    public double getVisibilityRange() {
+        return visibilityRange;
+    }
+
+    public double getVisibilityRangeSquared() {
+        return visibilityRangeSquared;
+    }
+
+    /**
+     * 全息图是否以乘客模式叠放在玩家实体上
+     * @return 是否为乘客模式
+     */
+    public boolean isPassengerHolograms() {
+        return passengerHolograms;
+    }
+
+    /**
+     * 是否批量结算普通攻击
+     * @return 是否在战斗线程池中批量计算伤害
+     */
+    public boolean isBatchCombat() {
+        return batchCombat;
+    }
+
+    public boolean isDisplayEnabled() {
+        return displayEnabled;
+    }
+
+    /**
+     * 获取玩家实体显示名称的模板，未启用时为空模板
+     * @return 显示名称模板
+     */
+    public PlaceholderTemplate<ServantPlaceholder> getDisplayTemplate() {
+        return displayTemplate;
+    }
+
+    public double getHologramBaseHeight() {
+        return hologramBaseHeight;
+    }
+
+    public double getHologramHeightInterval() {
+        return hologramHeightInterval;
+    }
+
+    /**
+     * 获取启用的全息图消息，按msg1~msg4的顺序排列
+     * @return 不可修改的消息列表
+     */
+    public List<HologramMessage> getHologramMessages() {
+        return hologramMessages;
+    }
+
+    public String getHealthBarFilledColor() {
+        return healthBarFilledColor;
+    }
+
+    public String getHealthBarEmptyColor() {
+        return healthBarEmptyColor;
+    }
+
+    public String getHealthBarHeartSymbol() {
+        return healthBarHeartSymbol;
+    }
+
+    public int getHealthBarTotalHearts() {
+        return healthBarTotalHearts;
+    }
+}
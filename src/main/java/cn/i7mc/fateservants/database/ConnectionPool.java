@@ -0,0 +1,311 @@
+package cn.i7mc.fateservants.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * 内置的JDBC连接池
+ * 连接数量有上限，借出空闲较久的连接前先校验是否可用，空闲超时的连接被关闭；
+ * 每个连接缓存自己的预编译语句，同一条SQL在一个连接上只预编译一次
+ * 池中的连接在创建时关闭自动提交，使用方用完后提交或回滚事务再归还
+ */
+public class ConnectionPool {
+    /**
+     * 创建新的数据库连接
+     */
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    // 空闲超过此时间的连接在借出前校验是否可用（毫秒）
+    private static final long VALIDATE_AFTER_IDLE_MS = 5000;
+    // 校验连接的超时时间（秒）
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    // 每个连接缓存的预编译语句数量上限
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long idleTimeoutMs;
+    private final long acquireTimeoutMs;
+    private final Logger logger;
+
+    private final Object lock = new Object();
+    // 空闲连接，最近归还的在队首，最久未使用的在队尾
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    // 已创建的连接数量（空闲 + 借出）
+    private int total;
+    private boolean closed;
+
+    /**
+     * 创建连接池，连接在第一次借出时才创建
+     * @param factory 连接工厂
+     * @param maxSize 最大连接数量
+     * @param idleTimeoutMs 空闲连接的最长保留时间（毫秒）
+     * @param acquireTimeoutMs 连接全部借出时等待的最长时间（毫秒）
+     * @param logger 日志记录器
+     */
+    public ConnectionPool(ConnectionFactory factory, int maxSize, long idleTimeoutMs, long acquireTimeoutMs, Logger logger) {
+        this.factory = factory;
+        this.maxSize = Math.max(1, maxSize);
+        this.idleTimeoutMs = Math.max(1000, idleTimeoutMs);
+        this.acquireTimeoutMs = Math.max(0, acquireTimeoutMs);
+        this.logger = logger;
+    }
+
+    /**
+     * 借出一个连接，使用完后调用 {@link PooledConnection#close()} 归还
+     * @return 连接
+     * @throws SQLException 连接池已关闭、等待超时或创建连接失败
+     */
+    public PooledConnection borrow() throws SQLException {
+        long deadline = System.currentTimeMillis() + acquireTimeoutMs;
+        while (true) {
+            PooledConnection candidate = null;
+            synchronized (lock) {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("连接池已关闭");
+                    }
+                    if (!idle.isEmpty()) {
+                        candidate = idle.pollFirst();
+                        break;
+                    }
+                    if (total < maxSize) {
+                        total++;
+                        break;
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new SQLException("等待数据库连接超时，" + maxSize + " 个连接均在使用中");
+                    }
+                    try {
+                        lock.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("等待数据库连接时被中断", e);
+                    }
+                }
+            }
+
+            if (candidate == null) {
+                return open();
+            }
+            if (System.currentTimeMillis() - candidate.lastUsed < VALIDATE_AFTER_IDLE_MS || candidate.isValid()) {
+                return candidate;
+            }
+            // 连接已失效（例如被MySQL的wait_timeout断开），丢弃后重新获取
+            logger.warning("丢弃已失效的数据库连接");
+            discard(candidate);
+        }
+    }
+
+    /**
+     * 关闭空闲超时的连接，由定时任务调用
+     */
+    public void evictIdle() {
+        List<PooledConnection> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            Iterator<PooledConnection> iterator = idle.descendingIterator();
+            while (iterator.hasNext()) {
+                PooledConnection connection = iterator.next();
+                if (now - connection.lastUsed < idleTimeoutMs) {
+                    break;
+                }
+                iterator.remove();
+                total--;
+                expired.add(connection);
+            }
+            lock.notifyAll();
+        }
+        for (PooledConnection connection : expired) {
+            connection.closePhysical();
+        }
+    }
+
+    /**
+     * 关闭连接池和所有空闲连接，借出中的连接在归还时关闭
+     */
+    public void close() {
+        List<PooledConnection> remaining;
+        synchronized (lock) {
+            closed = true;
+            remaining = new ArrayList<>(idle);
+            total -= idle.size();
+            idle.clear();
+            lock.notifyAll();
+        }
+        for (PooledConnection connection : remaining) {
+            connection.closePhysical();
+        }
+    }
+
+    /**
+     * 获取连接数量
+     * @return 已创建的连接数量和其中空闲的连接数量
+     */
+    public int[] getStats() {
+        synchronized (lock) {
+            return new int[]{total, idle.size()};
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        try {
+            return new PooledConnection(this, factory.create());
+        } catch (SQLException | RuntimeException e) {
+            synchronized (lock) {
+                total--;
+                lock.notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private void release(PooledConnection connection) {
+        synchronized (lock) {
+            if (!closed && !connection.broken) {
+                connection.lastUsed = System.currentTimeMillis();
+                idle.addFirst(connection);
+                lock.notifyAll();
+                return;
+            }
+        }
+        discard(connection);
+    }
+
+    private void discard(PooledConnection connection) {
+        synchronized (lock) {
+            total--;
+            lock.notifyAll();
+        }
+        connection.closePhysical();
+    }
+
+    /**
+     * 连接池中的连接，缓存在该连接上预编译过的语句
+     * 同一时间只由借出它的线程使用
+     */
+    public static final class PooledConnection implements AutoCloseable {
+        private final ConnectionPool pool;
+        private final Connection connection;
+        // 按SQL缓存的预编译语句，超出上限时关闭最久未使用的语句
+        private final Map<String, PreparedStatement> statements =
+            new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= STATEMENT_CACHE_SIZE) {
+                        return false;
+                    }
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+            };
+        private long lastUsed;
+        private boolean broken;
+
+        private PooledConnection(ConnectionPool pool, Connection connection) throws SQLException {
+            this.pool = pool;
+            this.connection = connection;
+            this.lastUsed = System.currentTimeMillis();
+            try {
+                connection.setAutoCommit(false);
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        /**
+         * 获取预编译语句，同一条SQL重复使用同一个语句对象
+         * 返回的语句已清空参数和批处理，使用方不能关闭它
+         * @param sql SQL语句
+         * @return 预编译语句
+         * @throws SQLException 预编译失败
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+                statement.clearBatch();
+            }
+            return statement;
+        }
+
+        /**
+         * 获取底层连接，用于执行不需要缓存的语句
+         * @return JDBC连接
+         */
+        public Connection getConnection() {
+            return connection;
+        }
+
+        public void commit() throws SQLException {
+            try {
+                connection.commit();
+            } catch (SQLException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        /**
+         * 回滚事务，回滚失败时该连接在归还时被关闭
+         */
+        public void rollback() {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                broken = true;
+                pool.logger.warning("回滚事务失败: " + e.getMessage());
+            }
+        }
+
+        /**
+         * 归还连接到连接池
+         */
+        @Override
+        public void close() {
+            pool.release(this);
+        }
+
+        private boolean isValid() {
+            try {
+                return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private void closePhysical() {
+            for (PreparedStatement statement : statements.values()) {
+                closeQuietly(statement);
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                pool.logger.warning("关闭数据库连接时发生错误: " + e.getMessage());
+            }
+        }
+
+        private static void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import cn.i7mc.fateservants.utils.DebugUtils;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 
 import java.io.File;
@@ -17,16 +18,25 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DatabaseManager {
     private final FateServants plugin;
-    private Connection connection;
+    private volatile ConnectionPool pool;
     private LocalStorageManager localStorageManager;
-    private boolean useLocalStorage;
+    private volatile boolean useLocalStorage;
     private boolean useSQLite;
+    private final ServantSaveQueue saveQueue;
+    private final long shutdownTimeoutMs;
+    // 连续写入数据库失败的次数，达到上限后改为保存到本地存储
+    private final AtomicInteger writeFailures = new AtomicInteger();
+    private final int maxWriteRetries;
     
     // SQL语句常量
     private static final String CREATE_SERVANTS_TABLE = 
@@ -57,50 +67,90 @@ public class DatabaseManager {
             "growth_rate DOUBLE NOT NULL, " +
             "PRIMARY KEY (servant_uuid, attribute_key))";
     
+    // REPLACE INTO 在SQLite和MySQL中都可用（INSERT OR REPLACE 只有SQLite支持）
     private static final String INSERT_SERVANT = 
-            "INSERT OR REPLACE INTO servants VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            "REPLACE INTO servants VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
     
-    private static final String SELECT_SERVANT = 
-            "SELECT * FROM servants WHERE owner_uuid = ?";
+    // 按玩家批量查询，参数占位符在查询时按玩家数量补全
+    private static final String SELECT_SERVANTS_IN = 
+            "SELECT * FROM servants WHERE owner_uuid IN (";
     
     private static final String DELETE_SERVANT = 
             "DELETE FROM servants WHERE owner_uuid = ?";
     
     private static final String INSERT_ATTRIBUTE = 
-            "INSERT OR REPLACE INTO servant_attributes VALUES (?, ?, ?, ?)";
+            "REPLACE INTO servant_attributes VALUES (?, ?, ?, ?)";
     
-    private static final String SELECT_ATTRIBUTES = 
-            "SELECT * FROM servant_attributes WHERE servant_uuid = ?";
+    private static final String SELECT_OWNER_ATTRIBUTES_IN = 
+            "SELECT a.* FROM servant_attributes a JOIN servants s ON a.servant_uuid = s.servant_uuid WHERE s.owner_uuid IN (";
     
-    private static final String DELETE_ATTRIBUTES = 
-            "DELETE FROM servant_attributes WHERE servant_uuid = ?";
+    private static final String DELETE_OWNER_ATTRIBUTES = 
+            "DELETE FROM servant_attributes WHERE servant_uuid IN (SELECT servant_uuid FROM servants WHERE owner_uuid = ?)";
+    
+    // 加载玩家数据前等待其待写入数据的最长时间（毫秒）
+    private static final long LOAD_WAIT_MS = 2000;
+    
+    // 单条IN查询的最大参数数量，旧版SQLite限制每条语句最多999个参数
+    private static final int MAX_IN_PARAMETERS = 500;
+    
+    // 定时关闭空闲连接的任务名称
+    private static final String EVICTION_TASK = "database-pool-eviction";
 
     public DatabaseManager(FateServants plugin) {
         this.plugin = plugin;
         this.localStorageManager = new LocalStorageManager(plugin);
         
+        connect(false);
+        
+        // 启动异步写入队列，SQLite同一时间只允许一个写入者，只使用一个数据库线程
+        this.saveQueue = new ServantSaveQueue(this::writeBatch, plugin.getLogger(),
+            plugin.getConfig().getInt("database.write_batch_size", 32),
+            plugin.getConfig().getLong("database.write_interval_ms", 500),
+            plugin.getConfig().getLong("database.retry_delay_ms", 1000),
+            plugin.getConfig().getLong("database.max_retry_delay_ms", 30000),
+            useSQLite ? 1 : plugin.getConfig().getInt("database.write_threads", 2));
+        this.maxWriteRetries = Math.max(1, plugin.getConfig().getInt("database.max_write_retries", 8));
+        this.shutdownTimeoutMs = plugin.getConfig().getLong("database.shutdown_timeout_ms", 10000);
+        
+        // 定时关闭空闲超时的连接
+        long evictionTicks = Math.max(20L, plugin.getConfig().getLong("database.pool.idle_timeout_ms", 600000) / 50 / 2);
+        plugin.getAsyncTaskManager().runAsyncRepeating(EVICTION_TASK, () -> {
+            ConnectionPool current = pool;
+            if (current != null) {
+                current.evictIdle();
+            }
+        }, evictionTicks, evictionTicks);
+    }
+
+    /**
+     * 按配置创建连接池并建表，连接失败时改用本地存储
+     * @param reconnect 是否为重新连接
+     */
+    private void connect(boolean reconnect) {
         String storageType = plugin.getConfig().getString("database.type", "sqlite").toLowerCase();
+        String action = reconnect ? "重新连接" : "连接";
         
         if (storageType.equals("sqlite")) {
             useSQLite = true;
             try {
-                connectSQLite();
-                useLocalStorage = false;
+                // SQLite同一时间只允许一个写入者，连接池只保留一个连接
+                pool = createPool(this::connectSQLite, 1);
                 createTables();
-                plugin.getLogger().info("成功连接到SQLite数据库");
+                useLocalStorage = false;
+                plugin.getLogger().info("成功" + action + "到SQLite数据库");
             } catch (SQLException e) {
-                plugin.getLogger().warning("SQLite数据库连接失败，将使用本地存储: " + e.getMessage());
+                plugin.getLogger().warning("SQLite数据库" + action + "失败，将使用本地存储: " + e.getMessage());
                 useLocalStorage = true;
             }
         } else if (storageType.equals("mysql")) {
             useSQLite = false;
             try {
-                connectMySQL();
-                useLocalStorage = false;
+                pool = createPool(this::connectMySQL, plugin.getConfig().getInt("database.pool.max_size", 4));
                 createTables();
-                plugin.getLogger().info("成功连接到MySQL数据库");
+                useLocalStorage = false;
+                plugin.getLogger().info("成功" + action + "到MySQL数据库");
             } catch (SQLException e) {
-                plugin.getLogger().warning("MySQL数据库连接失败，将使用本地存储: " + e.getMessage());
+                plugin.getLogger().warning("MySQL数据库" + action + "失败，将使用本地存储: " + e.getMessage());
                 useLocalStorage = true;
             }
         } else {
@@ -109,7 +159,22 @@ public class DatabaseManager {
         }
     }
 
-    private void connectSQLite() throws SQLException {
+    private ConnectionPool createPool(ConnectionPool.ConnectionFactory factory, int maxSize) {
+        return new ConnectionPool(factory, maxSize,
+            plugin.getConfig().getLong("database.pool.idle_timeout_ms", 600000),
+            plugin.getConfig().getLong("database.pool.acquire_timeout_ms", 5000),
+            plugin.getLogger());
+    }
+
+    /**
+     * 获取异步写入队列
+     * @return 写入队列
+     */
+    public ServantSaveQueue getSaveQueue() {
+        return saveQueue;
+    }
+
+    private Connection connectSQLite() throws SQLException {
         // 使用Spigot 1.12.2内置的SQLite驱动
         try {
             Class.forName("org.sqlite.JDBC");
@@ -126,343 +191,384 @@ public class DatabaseManager {
         String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
         
         DebugUtils.debug("database.connect_sqlite", url);
-        connection = DriverManager.getConnection(url);
+        Connection connection = DriverManager.getConnection(url);
         
         // 启用外键约束
         try (Statement stmt = connection.createStatement()) {
             stmt.execute("PRAGMA foreign_keys = ON;");
         }
+        return connection;
     }
 
-    private void connectMySQL() throws SQLException {
+    private Connection connectMySQL() throws SQLException {
         String host = plugin.getConfig().getString("database.host", "localhost");
         int port = plugin.getConfig().getInt("database.port", 3306);
         String database = plugin.getConfig().getString("database.database", "fateservants");
         String username = plugin.getConfig().getString("database.username", "root");
         String password = plugin.getConfig().getString("database.password", "");
 
-        String url = String.format("jdbc:mysql://%s:%d/%s?useSSL=false&autoReconnect=true", host, port, database);
-        connection = DriverManager.getConnection(url, username, password);
+        // 失效的连接由连接池校验后丢弃，不再依赖驱动的autoReconnect
+        String url = String.format("jdbc:mysql://%s:%d/%s?useSSL=false&cachePrepStmts=true&useServerPrepStmts=true&rewriteBatchedStatements=true",
+            host, port, database);
+        DebugUtils.debug("database.connect_mysql", host, port, database);
+        return DriverManager.getConnection(url, username, password);
     }
     
     private void createTables() throws SQLException {
-        try (Statement stmt = connection.createStatement()) {
+        try (ConnectionPool.PooledConnection connection = pool.borrow();
+             Statement stmt = connection.getConnection().createStatement()) {
             stmt.execute(CREATE_SERVANTS_TABLE);
             stmt.execute(CREATE_ATTRIBUTES_TABLE);
+            connection.commit();
         }
     }
 
+    /**
+     * 保存英灵数据
+     * 在调用线程（主线程）上复制英灵状态，写入由数据库线程异步完成
+     * @param owner 主人
+     * @param servant 英灵
+     */
     public void saveServant(Player owner, Servant servant) {
-        if (useLocalStorage) {
-            localStorageManager.saveServant(owner, servant);
-            return;
+        saveQueue.submit(ServantSnapshot.capture(owner, servant));
+    }
+
+    /**
+     * 在数据库线程中写入一批快照，所有快照在同一个事务中提交
+     * 写入失败时由写入队列稍后重试，连续失败达到上限后视为数据库不可用，改为保存到本地存储
+     * @param snapshots 快照列表
+     * @return 是否已写入数据库或本地存储
+     */
+    private boolean writeBatch(List<ServantSnapshot> snapshots) {
+        ConnectionPool current = pool;
+        if (useLocalStorage || current == null) {
+            localStorageManager.save(snapshots);
+            return true;
         }
         
-        String ownerUuid = owner.getUniqueId().toString();
-        String servantUuid = servant.getUuid().toString();
-        Location loc = servant.getLocation();
-        
-        try {
-            // 开始事务
-            connection.setAutoCommit(false);
-            
-            // 保存英灵基本信息
-            try (PreparedStatement pstmt = connection.prepareStatement(INSERT_SERVANT)) {
-                pstmt.setString(1, ownerUuid);
-                pstmt.setString(2, servantUuid);
-                pstmt.setString(3, servant.getServantClass().getId());
-                pstmt.setDouble(4, servant.getLevel());
-                pstmt.setInt(5, servant.getExperience());
-                pstmt.setDouble(6, servant.getCurrentHealth());
-                pstmt.setDouble(7, servant.getCurrentMana());
-                pstmt.setString(8, loc.getWorld().getName());
-                pstmt.setDouble(9, loc.getX());
-                pstmt.setDouble(10, loc.getY());
-                pstmt.setDouble(11, loc.getZ());
-                pstmt.setFloat(12, loc.getYaw());
-                pstmt.setFloat(13, loc.getPitch());
-                pstmt.setBoolean(14, servant.isFollowing());
-                pstmt.setBoolean(15, servant.isAttacking());
-                pstmt.setBoolean(16, servant.isDefending());
-                pstmt.setLong(17, servant.getSummonTime());
-                pstmt.executeUpdate();
-            }
-            
-            // 删除旧的属性记录
-            try (PreparedStatement pstmt = connection.prepareStatement(DELETE_ATTRIBUTES)) {
-                pstmt.setString(1, servantUuid);
-                pstmt.executeUpdate();
-            }
-            
-            // 保存属性信息
-            try (PreparedStatement pstmt = connection.prepareStatement(INSERT_ATTRIBUTE)) {
-                Map<String, Double> attributes = servant.getAttributes().getAll();
-                Map<String, Double> growths = servant.getAttributeGrowths();
-                
-                // 首先确保保存核心属性，包括movement_speed
-                String[] coreAttributes = {"health", "mana", "movement_speed"};
-                for (String coreAttr : coreAttributes) {
-                    double baseValue = 0.0;
-                    if (coreAttr.equals("movement_speed")) {
-                        baseValue = servant.getServantClass().getBaseMovementSpeed();
-                    } else {
-                        baseValue = servant.getAttributes().getBaseValue(coreAttr);
-                    }
-                    double growth = growths.getOrDefault(coreAttr, 0.0);
-                    
-                    pstmt.setString(1, servantUuid);
-                    pstmt.setString(2, coreAttr);
-                    pstmt.setDouble(3, baseValue);
-                    pstmt.setDouble(4, growth);
-                    pstmt.addBatch();
-                    
-                    DebugUtils.debug("database.save_attribute", 
-                        coreAttr, baseValue, growth);
-                }
+        try (ConnectionPool.PooledConnection connection = current.borrow()) {
+            try {
+                // 预编译语句由连接缓存，不在这里关闭
+                PreparedStatement insertServant = connection.prepare(INSERT_SERVANT);
+                PreparedStatement deleteServant = connection.prepare(DELETE_SERVANT);
+                PreparedStatement deleteOwnerAttributes = connection.prepare(DELETE_OWNER_ATTRIBUTES);
+                PreparedStatement insertAttribute = connection.prepare(INSERT_ATTRIBUTE);
                 
-                // 然后保存其他属性
-                for (Map.Entry<String, Double> entry : attributes.entrySet()) {
-                    String attrKey = entry.getKey();
-                    // 跳过已处理的核心属性
-                    if (attrKey.equals("health") || attrKey.equals("mana") || attrKey.equals("movement_speed")) {
+                for (ServantSnapshot snapshot : snapshots) {
+                    String ownerUuid = snapshot.getOwnerUuid().toString();
+                    // 删除该玩家旧的属性记录（包括更换过的英灵留下的记录）
+                    deleteOwnerAttributes.setString(1, ownerUuid);
+                    deleteOwnerAttributes.addBatch();
+                    if (snapshot.isRemoval()) {
+                        deleteServant.setString(1, ownerUuid);
+                        deleteServant.addBatch();
                         continue;
                     }
                     
-                    double baseValue = servant.getAttributes().getBaseValue(attrKey);
-                    double growth = growths.getOrDefault(attrKey, 0.0);
+                    // 保存英灵基本信息
+                    String servantUuid = snapshot.getServantUuid().toString();
+                    insertServant.setString(1, ownerUuid);
+                    insertServant.setString(2, servantUuid);
+                    insertServant.setString(3, snapshot.getClassId());
+                    insertServant.setDouble(4, snapshot.getLevel());
+                    insertServant.setInt(5, snapshot.getExperience());
+                    insertServant.setDouble(6, snapshot.getHealth());
+                    insertServant.setDouble(7, snapshot.getMana());
+                    insertServant.setString(8, snapshot.getWorld());
+                    insertServant.setDouble(9, snapshot.getX());
+                    insertServant.setDouble(10, snapshot.getY());
+                    insertServant.setDouble(11, snapshot.getZ());
+                    insertServant.setFloat(12, snapshot.getYaw());
+                    insertServant.setFloat(13, snapshot.getPitch());
+                    insertServant.setBoolean(14, snapshot.isFollowing());
+                    insertServant.setBoolean(15, snapshot.isAttacking());
+                    insertServant.setBoolean(16, snapshot.isDefending());
+                    insertServant.setLong(17, snapshot.getSummonTime());
+                    insertServant.addBatch();
                     
-                    pstmt.setString(1, servantUuid);
-                    pstmt.setString(2, attrKey);
-                    pstmt.setDouble(3, baseValue);
-                    pstmt.setDouble(4, growth);
-                    pstmt.addBatch();
+                    // 保存属性信息
+                    for (ServantSnapshot.AttributeRow row : snapshot.getAttributes()) {
+                        insertAttribute.setString(1, servantUuid);
+                        insertAttribute.setString(2, row.getKey());
+                        insertAttribute.setDouble(3, row.getBaseValue());
+                        insertAttribute.setDouble(4, row.getGrowth());
+                        insertAttribute.addBatch();
+                        
+                        DebugUtils.trace("database.save_attribute", () -> new Object[]{
+                            row.getKey(), row.getBaseValue(), row.getGrowth()});
+                    }
                 }
-                pstmt.executeBatch();
-            }
-            
-            // 提交事务
-            connection.commit();
-            
-            DebugUtils.debug("database.save_success", owner.getName());
-            
-        } catch (SQLException e) {
-            try {
+                
+                // 先删除再写入，保证属性表中只有最新的记录
+                deleteOwnerAttributes.executeBatch();
+                deleteServant.executeBatch();
+                insertServant.executeBatch();
+                insertAttribute.executeBatch();
+                
+                // 提交事务
+                connection.commit();
+            } catch (SQLException e) {
                 // 回滚事务
                 connection.rollback();
-            } catch (SQLException ex) {
-                plugin.getLogger().severe("回滚事务失败: " + ex.getMessage());
+                throw e;
             }
             
-            plugin.getLogger().severe("保存英灵数据到SQLite数据库时发生错误: " + e.getMessage());
-            e.printStackTrace();
+            for (ServantSnapshot snapshot : snapshots) {
+                DebugUtils.debug(snapshot.isRemoval() ? "database.remove_success" : "database.save_success",
+                    () -> new Object[]{snapshot.getOwnerName()});
+            }
+            DebugUtils.debug("database.batch_commit", snapshots.size());
+            writeFailures.set(0);
+            return true;
             
-            // 如果数据库保存失败，使用本地存储作为备份
-            localStorageManager.saveServant(owner, servant);
-        } finally {
-            try {
-                connection.setAutoCommit(true);
-            } catch (SQLException e) {
-                plugin.getLogger().severe("重置自动提交失败: " + e.getMessage());
+        } catch (SQLException e) {
+            plugin.getLogger().severe("保存英灵数据到数据库时发生错误: " + e.getMessage());
+            
+            // 获取连接超时等临时错误交给写入队列重试，避免本地存储中的数据比数据库新而在下次加载时被旧数据覆盖
+            if (writeFailures.incrementAndGet() < maxWriteRetries) {
+                return false;
             }
+            // 数据库持续不可用时使用本地存储作为备份
+            plugin.getLogger().warning("数据库连续 " + maxWriteRetries + " 次写入失败，" + snapshots.size() + " 个英灵的数据改为保存到本地存储");
+            e.printStackTrace();
+            localStorageManager.save(snapshots);
+            return true;
         }
     }
 
-    public Servant loadServant(Player owner) {
-        if (useLocalStorage) {
-            return localStorageManager.loadServant(owner);
+    /**
+     * 读取一批玩家的英灵数据
+     * 只访问数据库或本地文件，不创建英灵，可以在异步线程中调用；
+     * 所有玩家的数据通过一条IN查询读取，英灵实例由主线程调用 {@link #createServant} 创建
+     * @param owners 玩家UUID到玩家名称的映射
+     * @return 玩家UUID到英灵快照的映射，没有英灵的玩家不在其中
+     */
+    public Map<UUID, ServantSnapshot> loadSnapshots(Map<UUID, String> owners) {
+        Map<UUID, ServantSnapshot> result = new HashMap<>();
+        List<UUID> toRead = new ArrayList<>();
+        for (Map.Entry<UUID, String> entry : owners.entrySet()) {
+            UUID ownerUuid = entry.getKey();
+            // 尚未写入的快照就是该玩家最新的数据，直接使用
+            ServantSnapshot pending = saveQueue.getPending(ownerUuid);
+            if (pending != null) {
+                if (!pending.isRemoval()) {
+                    result.put(ownerUuid, pending);
+                }
+                continue;
+            }
+            // 玩家刚退出又重新进入时，等待上次退出时的保存写入完成
+            if (!saveQueue.awaitWritten(ownerUuid, LOAD_WAIT_MS)) {
+                plugin.getLogger().warning("等待 " + entry.getValue() + " 的英灵数据写入超时，加载的可能不是最新数据");
+            }
+            toRead.add(ownerUuid);
         }
         
-        String ownerUuid = owner.getUniqueId().toString();
+        if (toRead.isEmpty()) {
+            return result;
+        }
         
-        try {
-            // 查询英灵基本信息
-            Servant servant = null;
-            
-            try (PreparedStatement pstmt = connection.prepareStatement(SELECT_SERVANT)) {
-                pstmt.setString(1, ownerUuid);
-                
-                try (ResultSet rs = pstmt.executeQuery()) {
-                    if (rs.next()) {
-                        String classId = rs.getString("class_id");
-                        ServantClass servantClass = plugin.getServantClassManager().getClass(classId);
-                        
-                        if (servantClass == null) {
-                            plugin.getLogger().warning("找不到职阶: " + classId);
-                            return null;
-                        }
-                        
-                        // 创建英灵实例
-                        servant = new Servant(owner, servantClass);
-                        servant.setUuid(UUID.fromString(rs.getString("servant_uuid")));
-                        
-                        // 设置基本属性
-                        servant.setLevel(rs.getDouble("level"));
-                        servant.setExperience(rs.getInt("experience"));
-                        servant.setHealth(rs.getDouble("health"));
-                        servant.setMana(rs.getDouble("mana"));
-                        
-                        // 设置位置
-                        Location loc = new Location(
-                            Bukkit.getWorld(rs.getString("world")),
-                            rs.getDouble("x"),
-                            rs.getDouble("y"),
-                            rs.getDouble("z"),
-                            rs.getFloat("yaw"),
-                            rs.getFloat("pitch")
-                        );
-                        servant.teleport(loc);
-                        
-                        // 设置行为状态
-                        servant.setFollowing(rs.getBoolean("is_following"));
-                        servant.setAttacking(rs.getBoolean("is_attacking"));
-                        servant.setDefending(rs.getBoolean("is_defending"));
-                        servant.setSummonTime(rs.getLong("summon_time"));
-                    } else {
-                        // 数据库中没有此玩家的英灵记录
-                        return null;
-                    }
+        ConnectionPool current = pool;
+        if (useLocalStorage || current == null) {
+            loadLocalSnapshots(toRead, owners, result);
+            return result;
+        }
+        
+        try (ConnectionPool.PooledConnection connection = current.borrow()) {
+            try {
+                for (int from = 0; from < toRead.size(); from += MAX_IN_PARAMETERS) {
+                    readSnapshots(connection, toRead.subList(from, Math.min(toRead.size(), from + MAX_IN_PARAMETERS)), owners, result);
                 }
+                // 结束只读事务
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
             }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("从数据库加载英灵数据时发生错误: " + e.getMessage());
+            e.printStackTrace();
             
-            if (servant == null) {
-                return null;
+            // 如果数据库读取失败，尝试从本地存储加载
+            loadLocalSnapshots(toRead, owners, result);
+        }
+        return result;
+    }
+
+    private void loadLocalSnapshots(List<UUID> ownerUuids, Map<UUID, String> owners, Map<UUID, ServantSnapshot> result) {
+        for (UUID ownerUuid : ownerUuids) {
+            ServantSnapshot snapshot = localStorageManager.loadSnapshot(ownerUuid, owners.get(ownerUuid));
+            if (snapshot != null) {
+                result.put(ownerUuid, snapshot);
             }
-            
-            // 查询属性信息
-            Map<String, Double> growths = new HashMap<>();
-            
-            try (PreparedStatement pstmt = connection.prepareStatement(SELECT_ATTRIBUTES)) {
-                pstmt.setString(1, servant.getUuid().toString());
+        }
+    }
+
+    /**
+     * 用两条IN查询读取一组玩家的英灵记录和属性记录
+     */
+    private void readSnapshots(ConnectionPool.PooledConnection connection, List<UUID> ownerUuids, Map<UUID, String> owners, Map<UUID, ServantSnapshot> result) throws SQLException {
+        String placeholders = inPlaceholders(ownerUuids.size());
+        
+        // 查询属性信息，按英灵UUID分组
+        Map<String, List<ServantSnapshot.AttributeRow>> attributes = new HashMap<>();
+        PreparedStatement attributeQuery = connection.prepare(SELECT_OWNER_ATTRIBUTES_IN + placeholders);
+        bindOwners(attributeQuery, ownerUuids);
+        try (ResultSet rs = attributeQuery.executeQuery()) {
+            while (rs.next()) {
+                String attrKey = rs.getString("attribute_key");
+                double baseValue = rs.getDouble("base_value");
+                attributes.computeIfAbsent(rs.getString("servant_uuid"), k -> new ArrayList<>())
+                    .add(new ServantSnapshot.AttributeRow(attrKey, baseValue, rs.getDouble("growth_rate")));
                 
-                try (ResultSet rs = pstmt.executeQuery()) {
-                    while (rs.next()) {
-                        String attrKey = rs.getString("attribute_key");
-                        double baseValue = rs.getDouble("base_value");
-                        double growth = rs.getDouble("growth_rate");
-                        
-                        servant.getAttributes().setBaseValue(attrKey, baseValue);
-                        growths.put(attrKey, growth);
-                        
-                        // 记录找到的movement_speed属性
-                        if (attrKey.equals("movement_speed")) {
-                            DebugUtils.debug("database.load_movement_speed", baseValue);
-                        }
-                    }
+                // 记录找到的movement_speed属性
+                if (attrKey.equals("movement_speed")) {
+                    DebugUtils.debug("database.load_movement_speed", baseValue);
                 }
             }
-            
-            // 设置成长资质
-            servant.setAttributeGrowths(growths);
-            
-            // 确保加载了所有必要的核心属性，如果数据库中没有，则从职阶配置中加载
-            String[] coreAttributes = {"health", "mana", "movement_speed"};
-            for (String coreAttr : coreAttributes) {
-                if (!servant.getAttributes().hasAttribute(coreAttr)) {
-                    double baseValue = 0.0;
-                    if (coreAttr.equals("movement_speed")) {
-                        baseValue = servant.getServantClass().getBaseMovementSpeed();
-                        DebugUtils.debug("database.use_class_movement_speed", baseValue);
-                    } else if (coreAttr.equals("health")) {
-                        baseValue = servant.getServantClass().getBaseHealth();
-                    } else if (coreAttr.equals("mana")) {
-                        baseValue = servant.getServantClass().getBaseMana();
-                    }
-                    servant.getAttributes().setBaseValue(coreAttr, baseValue);
-                }
-            }
-            
-            // 确保英灵的AI控制器被正确设置为跟随模式
-            if (servant.getAIController() != null) {
-                servant.getAIController().setBehavior(cn.i7mc.fateservants.ai.ServantBehavior.FOLLOW);
-                DebugUtils.debug("database.ai_controller_set", 
-                    owner.getName(),
-                    servant.getServantClass() != null ? servant.getServantClass().getId() : "null");
+        }
+        
+        // 查询英灵基本信息
+        PreparedStatement servantQuery = connection.prepare(SELECT_SERVANTS_IN + placeholders);
+        bindOwners(servantQuery, ownerUuids);
+        try (ResultSet rs = servantQuery.executeQuery()) {
+            while (rs.next()) {
+                UUID ownerUuid = UUID.fromString(rs.getString("owner_uuid"));
+                String servantUuid = rs.getString("servant_uuid");
+                List<ServantSnapshot.AttributeRow> rows = attributes.get(servantUuid);
+                result.put(ownerUuid, new ServantSnapshot(ownerUuid, owners.get(ownerUuid), false,
+                    UUID.fromString(servantUuid),
+                    rs.getString("class_id"),
+                    rs.getDouble("level"),
+                    rs.getInt("experience"),
+                    rs.getDouble("health"),
+                    rs.getDouble("mana"),
+                    rs.getString("world"),
+                    rs.getDouble("x"),
+                    rs.getDouble("y"),
+                    rs.getDouble("z"),
+                    rs.getFloat("yaw"),
+                    rs.getFloat("pitch"),
+                    rs.getBoolean("is_following"),
+                    rs.getBoolean("is_attacking"),
+                    rs.getBoolean("is_defending"),
+                    rs.getLong("summon_time"),
+                    rows != null ? rows : Collections.<ServantSnapshot.AttributeRow>emptyList()));
             }
-            
-            DebugUtils.debug("database.load_success", owner.getName());
-            return servant;
-            
-        } catch (SQLException e) {
-            plugin.getLogger().severe("从SQLite数据库加载英灵数据时发生错误: " + e.getMessage());
-            e.printStackTrace();
-            
-            // 如果数据库读取失败，尝试从本地存储加载
-            return localStorageManager.loadServant(owner);
         }
     }
 
-    public void removeServant(Player owner) {
-        if (useLocalStorage) {
-            localStorageManager.removeServant(owner);
-            return;
+    private static String inPlaceholders(int count) {
+        StringBuilder builder = new StringBuilder(count * 3 + 1);
+        for (int i = 0; i < count; i++) {
+            builder.append(i == 0 ? "?" : ", ?");
+        }
+        return builder.append(')').toString();
+    }
+
+    private static void bindOwners(PreparedStatement pstmt, List<UUID> ownerUuids) throws SQLException {
+        for (int i = 0; i < ownerUuids.size(); i++) {
+            pstmt.setString(i + 1, ownerUuids.get(i).toString());
+        }
+    }
+
+    /**
+     * 根据快照创建英灵实例，必须在主线程调用
+     * @param owner 主人
+     * @param snapshot 英灵快照
+     * @return 英灵，职阶不存在时返回null
+     */
+    public Servant createServant(Player owner, ServantSnapshot snapshot) {
+        ServantClass servantClass = plugin.getServantClassManager().getClass(snapshot.getClassId());
+        if (servantClass == null) {
+            plugin.getLogger().warning("无法为玩家 " + owner.getName() + " 加载英灵，找不到职阶: " + snapshot.getClassId());
+            return null;
         }
         
-        String ownerUuid = owner.getUniqueId().toString();
+        // 创建英灵实例
+        Servant servant = new Servant(owner, servantClass);
+        if (snapshot.getServantUuid() != null) {
+            servant.setUuid(snapshot.getServantUuid());
+        }
         
-        try {
-            // 开始事务
-            connection.setAutoCommit(false);
-            
-            // 先查询servant_uuid
-            String servantUuid = null;
-            try (PreparedStatement pstmt = connection.prepareStatement("SELECT servant_uuid FROM servants WHERE owner_uuid = ?")) {
-                pstmt.setString(1, ownerUuid);
-                try (ResultSet rs = pstmt.executeQuery()) {
-                    if (rs.next()) {
-                        servantUuid = rs.getString("servant_uuid");
-                    }
-                }
+        // 设置基本属性
+        servant.setLevel(snapshot.getLevel());
+        servant.setExperience(snapshot.getExperience());
+        servant.setHealth(Double.isNaN(snapshot.getHealth()) ? servant.getMaxHealth() : snapshot.getHealth());
+        servant.setMana(Double.isNaN(snapshot.getMana()) ? servant.getMaxMana() : snapshot.getMana());
+        
+        // 设置位置
+        World world = snapshot.getWorld() != null ? Bukkit.getWorld(snapshot.getWorld()) : null;
+        if (world != null) {
+            servant.teleport(new Location(world, snapshot.getX(), snapshot.getY(), snapshot.getZ(),
+                snapshot.getYaw(), snapshot.getPitch()));
+        }
+        
+        // 设置行为状态
+        servant.setFollowing(snapshot.isFollowing());
+        servant.setAttacking(snapshot.isAttacking());
+        servant.setDefending(snapshot.isDefending());
+        if (snapshot.getSummonTime() > 0) {
+            servant.setSummonTime(snapshot.getSummonTime());
+        }
+        
+        // 设置属性和成长资质，成长资质为NaN表示存储中没有记录，保留职阶生成的资质
+        for (ServantSnapshot.AttributeRow row : snapshot.getAttributes()) {
+            servant.getAttributes().setBaseValue(row.getKey(), row.getBaseValue());
+            if (!Double.isNaN(row.getGrowth())) {
+                servant.setAttributeGrowth(row.getKey(), row.getGrowth());
             }
-            
-            if (servantUuid != null) {
-                // 删除属性记录
-                try (PreparedStatement pstmt = connection.prepareStatement(DELETE_ATTRIBUTES)) {
-                    pstmt.setString(1, servantUuid);
-                    pstmt.executeUpdate();
+        }
+        
+        // 确保加载了所有必要的核心属性，如果存储中没有，则从职阶配置中加载
+        String[] coreAttributes = {"health", "mana", "movement_speed"};
+        for (String coreAttr : coreAttributes) {
+            if (!servant.getAttributes().hasAttribute(coreAttr)) {
+                double baseValue = 0.0;
+                if (coreAttr.equals("movement_speed")) {
+                    baseValue = servantClass.getBaseMovementSpeed();
+                    DebugUtils.debug("database.use_class_movement_speed", baseValue);
+                } else if (coreAttr.equals("health")) {
+                    baseValue = servantClass.getBaseHealth();
+                } else if (coreAttr.equals("mana")) {
+                    baseValue = servantClass.getBaseMana();
                 }
-            }
-            
-            // 删除英灵记录
-            try (PreparedStatement pstmt = connection.prepareStatement(DELETE_SERVANT)) {
-                pstmt.setString(1, ownerUuid);
-                pstmt.executeUpdate();
-            }
-            
-            // 提交事务
-            connection.commit();
-            
-            DebugUtils.debug("database.remove_success", owner.getName());
-            
-        } catch (SQLException e) {
-            try {
-                // 回滚事务
-                connection.rollback();
-            } catch (SQLException ex) {
-                plugin.getLogger().severe("回滚事务失败: " + ex.getMessage());
-            }
-            
-            plugin.getLogger().severe("从SQLite数据库删除英灵数据时发生错误: " + e.getMessage());
-            e.printStackTrace();
-            
-            // 如果数据库删除失败，使用本地存储作为备份
-            localStorageManager.removeServant(owner);
-        } finally {
-            try {
-                connection.setAutoCommit(true);
-            } catch (SQLException e) {
-                plugin.getLogger().severe("重置自动提交失败: " + e.getMessage());
+                servant.getAttributes().setBaseValue(coreAttr, baseValue);
             }
         }
+        
+        // 确保英灵的AI控制器被正确设置为跟随模式
+        if (servant.getAIController() != null) {
+            servant.getAIController().setBehavior(cn.i7mc.fateservants.ai.ServantBehavior.FOLLOW);
+            DebugUtils.debug("database.ai_controller_set", owner.getName(), servantClass.getId());
+        }
+        
+        DebugUtils.debug("database.load_success", owner.getName());
+        return servant;
+    }
+
+    /**
+     * 删除玩家的英灵数据，由数据库线程异步执行
+     * @param owner 主人
+     */
+    public void removeServant(Player owner) {
+        saveQueue.submit(ServantSnapshot.removal(owner));
     }
 
     public void close() {
-        if (connection != null) {
-            try {
-                connection.close();
-                plugin.getLogger().info("数据库连接已关闭");
-            } catch (SQLException e) {
-                plugin.getLogger().warning("关闭数据库连接时发生错误: " + e.getMessage());
-            }
+        plugin.getAsyncTaskManager().cancelTask(EVICTION_TASK);
+        
+        // 在限定时间内写完所有待保存的英灵数据，超时未写入的改为写入本地存储
+        List<ServantSnapshot> unsaved = saveQueue.shutdown(shutdownTimeoutMs);
+        if (!unsaved.isEmpty()) {
+            plugin.getLogger().warning("等待数据库写入超时，" + unsaved.size() + " 个英灵的数据改为保存到本地存储");
+            localStorageManager.save(unsaved);
+        }
+        
+        ConnectionPool current = pool;
+        if (current != null) {
+            pool = null;
+            current.close();
+            plugin.getLogger().info("数据库连接已关闭");
         }
         
         if (useLocalStorage) {
@@ -470,45 +576,19 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * 按新配置重新创建连接池，旧连接池中借出的连接在归还时关闭
+     * 数据库线程数量在重启插件后才会改变
+     */
     public void reload() {
-        // 关闭现有连接
-        if (connection != null) {
-            try {
-                connection.close();
-            } catch (SQLException e) {
-                plugin.getLogger().warning("关闭数据库连接时发生错误: " + e.getMessage());
-            }
-            connection = null;
-        }
+        ConnectionPool old = pool;
+        pool = null;
         
         // 重新读取配置并连接
-        String storageType = plugin.getConfig().getString("database.type", "sqlite").toLowerCase();
+        connect(true);
         
-        if (storageType.equals("sqlite")) {
-            useSQLite = true;
-            try {
-                connectSQLite();
-                useLocalStorage = false;
-                createTables();
-                plugin.getLogger().info("成功重新连接到SQLite数据库");
-            } catch (SQLException e) {
-                plugin.getLogger().warning("SQLite数据库重新连接失败，将使用本地存储: " + e.getMessage());
-                useLocalStorage = true;
-            }
-        } else if (storageType.equals("mysql")) {
-            useSQLite = false;
-            try {
-                connectMySQL();
-                useLocalStorage = false;
-                createTables();
-                plugin.getLogger().info("成功重新连接到MySQL数据库");
-            } catch (SQLException e) {
-                plugin.getLogger().warning("MySQL数据库重新连接失败，将使用本地存储: " + e.getMessage());
-                useLocalStorage = true;
-            }
-        } else {
-            plugin.getLogger().warning("不支持的数据库类型: " + storageType + "，将使用本地存储");
-            useLocalStorage = true;
+        if (old != null) {
+            old.close();
         }
         
         // 如果使用本地存储，重载本地存储
@@ -516,4 +596,12 @@ public class DatabaseManager {
             localStorageManager.reload();
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * 获取连接池
+     * @return 连接池，使用本地存储时为null
+     */
+    public ConnectionPool getPool() {
+        return useLocalStorage ? null : pool;
+    }
+}
@@ -1,20 +1,15 @@
 package cn.i7mc.fateservants.database;
 
 import cn.i7mc.fateservants.FateServants;
-import cn.i7mc.fateservants.model.Servant;
-import cn.i7mc.fateservants.model.ServantClass;
 
-import org.bukkit.Bukkit;
-import org.bukkit.Location;
-import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
-import org.bukkit.entity.Player;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.logging.Level;
 
@@ -29,36 +24,53 @@ public class LocalStorageManager {
         reload();
     }
 
-    public void reload() {
+    public synchronized void reload() {
         if (!saveFile.exists()) {
             plugin.saveResource("save.yml", false);
         }
         saveConfig = YamlConfiguration.loadConfiguration(saveFile);
     }
 
-    public void saveServant(Player owner, Servant servant) {
-        String ownerUuid = owner.getUniqueId().toString();
-        ConfigurationSection servantSection = saveConfig.createSection("servants." + ownerUuid);
+    /**
+     * 把一批英灵快照写入本地文件，整批只写一次文件
+     * @param snapshots 快照列表
+     */
+    public synchronized void save(List<ServantSnapshot> snapshots) {
+        for (ServantSnapshot snapshot : snapshots) {
+            String ownerUuid = snapshot.getOwnerUuid().toString();
+            if (snapshot.isRemoval()) {
+                saveConfig.set("servants." + ownerUuid, null);
+                continue;
+            }
+            
+            ConfigurationSection servantSection = saveConfig.createSection("servants." + ownerUuid);
 
-        // 保存基本信息
-        servantSection.set("servant_uuid", servant.getUuid().toString());
-        servantSection.set("class", servant.getServantClass().getId());
-        servantSection.set("health", servant.getCurrentHealth());
+            // 保存基本信息
+            servantSection.set("servant_uuid", snapshot.getServantUuid().toString());
+            servantSection.set("class", snapshot.getClassId());
+            servantSection.set("level", snapshot.getLevel());
+            servantSection.set("experience", snapshot.getExperience());
+            servantSection.set("health", snapshot.getHealth());
+            servantSection.set("mana", snapshot.getMana());
+            servantSection.set("following", snapshot.isFollowing());
+            servantSection.set("attacking", snapshot.isAttacking());
+            servantSection.set("defending", snapshot.isDefending());
 
-        // 保存位置信息
-        Location loc = servant.getLocation();
-        ConfigurationSection locationSection = servantSection.createSection("location");
-        locationSection.set("world", loc.getWorld().getName());
-        locationSection.set("x", loc.getX());
-        locationSection.set("y", loc.getY());
-        locationSection.set("z", loc.getZ());
-        locationSection.set("yaw", loc.getYaw());
-        locationSection.set("pitch", loc.getPitch());
+            // 保存位置信息
+            ConfigurationSection locationSection = servantSection.createSection("location");
+            locationSection.set("world", snapshot.getWorld());
+            locationSection.set("x", snapshot.getX());
+            locationSection.set("y", snapshot.getY());
+            locationSection.set("z", snapshot.getZ());
+            locationSection.set("yaw", snapshot.getYaw());
+            locationSection.set("pitch", snapshot.getPitch());
 
-        // 保存属性信息
-        ConfigurationSection attributesSection = servantSection.createSection("attributes");
-        for (Map.Entry<String, Double> entry : servant.getAttributes().getAll().entrySet()) {
-            attributesSection.set(entry.getKey(), entry.getValue());
+            // 保存属性信息，格式与加载时读取的 <属性>.base / <属性>.growth 一致
+            ConfigurationSection attributesSection = servantSection.createSection("attributes");
+            for (ServantSnapshot.AttributeRow row : snapshot.getAttributes()) {
+                attributesSection.set(row.getKey() + ".base", row.getBaseValue());
+                attributesSection.set(row.getKey() + ".growth", row.getGrowth());
+            }
         }
 
         // 保存到文件
@@ -69,91 +81,63 @@ public class LocalStorageManager {
         }
     }
 
-    public Servant loadServant(Player player) {
+    /**
+     * 从本地文件读取玩家的英灵快照，可以在异步线程中调用
+     * @param ownerUuid 玩家UUID
+     * @param ownerName 玩家名称
+     * @return 英灵快照，没有数据时返回null
+     */
+    public synchronized ServantSnapshot loadSnapshot(UUID ownerUuid, String ownerName) {
         // 重新加载配置
         reload();
         
         // 检查玩家是否有英灵数据
-        String uuidStr = player.getUniqueId().toString();
-        if (!saveConfig.contains("servants." + uuidStr)) {
+        ConfigurationSection section = saveConfig.getConfigurationSection("servants." + ownerUuid);
+        if (section == null) {
             return null;
         }
         
         try {
-            // 获取英灵基本信息
-            String classId = saveConfig.getString("servants." + uuidStr + ".class");
-            ServantClass servantClass = plugin.getServantClassManager().getServantClass(classId);
-            if (servantClass == null) {
-                plugin.getLogger().warning("无法为玩家 " + player.getName() + " 加载英灵，找不到职阶: " + classId);
-                return null;
-            }
-            
-            // 创建英灵实例
-            Servant servant = new Servant(player, servantClass);
-            servant.setLevel(saveConfig.getInt("servants." + uuidStr + ".level", 1));
-            servant.setExperience(saveConfig.getInt("servants." + uuidStr + ".experience", 0));
-            servant.setHealth(saveConfig.getDouble("servants." + uuidStr + ".health", servant.getMaxHealth()));
-            servant.setMana(saveConfig.getDouble("servants." + uuidStr + ".mana", servant.getMaxMana()));
-            
-            // 确保明确设置所有者
-            servant.setOwner(player);
-            
-            // 加载状态
-            servant.setFollowing(saveConfig.getBoolean("servants." + uuidStr + ".following", true));
-            servant.setAttacking(saveConfig.getBoolean("servants." + uuidStr + ".attacking", true));
-            servant.setDefending(saveConfig.getBoolean("servants." + uuidStr + ".defending", true));
-            
-            // 加载位置
-            if (saveConfig.contains("servants." + uuidStr + ".location")) {
-                String worldName = saveConfig.getString("servants." + uuidStr + ".location.world");
-                double x = saveConfig.getDouble("servants." + uuidStr + ".location.x");
-                double y = saveConfig.getDouble("servants." + uuidStr + ".location.y");
-                double z = saveConfig.getDouble("servants." + uuidStr + ".location.z");
-                float yaw = (float) saveConfig.getDouble("servants." + uuidStr + ".location.yaw");
-                float pitch = (float) saveConfig.getDouble("servants." + uuidStr + ".location.pitch");
-                
-                World world = Bukkit.getWorld(worldName);
-                if (world != null) {
-                    Location location = new Location(world, x, y, z, yaw, pitch);
-                    servant.setLocation(location);
+            // 加载属性信息，没有记录成长资质的属性使用NaN，创建英灵时保留职阶生成的资质
+            List<ServantSnapshot.AttributeRow> attributes = new ArrayList<>();
+            ConfigurationSection attrSection = section.getConfigurationSection("attributes");
+            if (attrSection != null) {
+                for (String key : attrSection.getKeys(false)) {
+                    attributes.add(new ServantSnapshot.AttributeRow(key,
+                        attrSection.getDouble(key + ".base", 0),
+                        attrSection.contains(key + ".growth") ? attrSection.getDouble(key + ".growth", 1.0) : Double.NaN));
                 }
             }
             
-            // 加载属性信息
-            if (saveConfig.contains("servants." + uuidStr + ".attributes")) {
-                ConfigurationSection attrSection = saveConfig.getConfigurationSection("servants." + uuidStr + ".attributes");
-                if (attrSection != null) {
-                    for (String key : attrSection.getKeys(false)) {
-                        double baseValue = attrSection.getDouble(key + ".base", 0);
-                        servant.getAttributes().setBaseValue(key, baseValue);
-                        
-                        if (attrSection.contains(key + ".growth")) {
-                            double growth = attrSection.getDouble(key + ".growth", 1.0);
-                            servant.setAttributeGrowth(key, growth);
-                        }
-                    }
-                }
-            }
+            String servantUuid = section.getString("servant_uuid");
+            ServantSnapshot snapshot = new ServantSnapshot(ownerUuid, ownerName, false,
+                servantUuid != null ? UUID.fromString(servantUuid) : null,
+                section.getString("class"),
+                section.getDouble("level", 1),
+                section.getInt("experience", 0),
+                section.getDouble("health", Double.NaN),
+                section.getDouble("mana", Double.NaN),
+                section.getString("location.world"),
+                section.getDouble("location.x"),
+                section.getDouble("location.y"),
+                section.getDouble("location.z"),
+                (float) section.getDouble("location.yaw"),
+                (float) section.getDouble("location.pitch"),
+                section.getBoolean("following", true),
+                section.getBoolean("attacking", true),
+                section.getBoolean("defending", true),
+                0,
+                attributes);
             
-            plugin.getLogger().info("从本地存储加载了 " + player.getName() + " 的英灵数据");
-            return servant;
+            plugin.getLogger().info("从本地存储加载了 " + ownerName + " 的英灵数据");
+            return snapshot;
         } catch (Exception e) {
             plugin.getLogger().log(Level.SEVERE, "从本地文件加载英灵数据时发生错误", e);
             return null;
         }
     }
 
-    public void removeServant(Player owner) {
-        String ownerUuid = owner.getUniqueId().toString();
-        saveConfig.set("servants." + ownerUuid, null);
-        try {
-            saveConfig.save(saveFile);
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "从本地文件删除英灵数据时发生错误", e);
-        }
-    }
-
-    public void saveAll() {
+    public synchronized void saveAll() {
         try {
             saveConfig.save(saveFile);
         } catch (IOException e) {
@@ -0,0 +1,304 @@
+package cn.i7mc.fateservants.database;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 英灵数据的异步写入队列（write-behind）
+ * 主线程提交英灵快照后立即返回，专用的数据库线程在写入间隔到达后取出待写入的快照，
+ * 按批次在一个事务中写入；同一玩家在写入前多次提交时只保留最新的快照
+ * 有多个数据库线程时各自写入不同的批次，同一玩家的快照不会被两个线程同时写入，保证写入顺序
+ * 写入失败的快照重新排队，按指数退避的间隔重试；停止时不再重试，剩余快照由 {@link #shutdown} 返回
+ */
+public class ServantSaveQueue {
+    /**
+     * 在数据库线程中写入一批快照
+     */
+    public interface BatchWriter {
+        /**
+         * @param batch 快照列表
+         * @return 是否写入成功，失败时快照重新排队，稍后重试
+         */
+        boolean write(List<ServantSnapshot> batch);
+    }
+
+    private final BatchWriter writer;
+    private final Logger logger;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long retryDelayMs;
+    private final long maxRetryDelayMs;
+
+    private final Object lock = new Object();
+    // 待写入的快照，按玩家合并，保持首次提交的顺序
+    private final Map<UUID, ServantSnapshot> pending = new LinkedHashMap<>();
+    // 正在写入的玩家
+    private final Set<UUID> inFlight = new HashSet<>();
+    private final Thread[] threads;
+    private volatile boolean running = true;
+    // 有线程在等待写入完成时，数据库线程不再等待写入间隔
+    private boolean hasWaiter;
+    // 连续写入失败的次数和下一次重试的时间
+    private int consecutiveFailures;
+    private long retryAt;
+
+    private long submitted;
+    private long coalesced;
+    private long written;
+    private long retried;
+
+    /**
+     * 创建写入队列并启动数据库线程
+     * @param writer 在数据库线程中写入一批快照
+     * @param logger 日志记录器
+     * @param batchSize 每个事务最多写入的快照数量
+     * @param flushIntervalMs 写入间隔（毫秒），间隔内的多次提交合并写入
+     * @param retryDelayMs 写入失败后第一次重试的间隔（毫秒），之后每次失败翻倍
+     * @param maxRetryDelayMs 重试间隔的上限（毫秒）
+     * @param threadCount 数据库线程数量
+     */
+    public ServantSaveQueue(BatchWriter writer, Logger logger, int batchSize, long flushIntervalMs,
+                            long retryDelayMs, long maxRetryDelayMs, int threadCount) {
+        this.writer = writer;
+        this.logger = logger;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(0, flushIntervalMs);
+        this.retryDelayMs = Math.max(1, retryDelayMs);
+        this.maxRetryDelayMs = Math.max(this.retryDelayMs, maxRetryDelayMs);
+        this.threads = new Thread[Math.max(1, threadCount)];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(this::run, threads.length == 1 ? "FateServants-Database" : "FateServants-Database-" + (i + 1));
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * 提交一个快照，覆盖该玩家尚未写入的快照
+     * @param snapshot 英灵快照
+     */
+    public void submit(ServantSnapshot snapshot) {
+        synchronized (lock) {
+            submitted++;
+            if (pending.put(snapshot.getOwnerUuid(), snapshot) != null) {
+                coalesced++;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 获取玩家尚未写入的快照
+     * @param ownerUuid 玩家UUID
+     * @return 快照，没有待写入的快照时返回null
+     */
+    public ServantSnapshot getPending(UUID ownerUuid) {
+        synchronized (lock) {
+            return pending.get(ownerUuid);
+        }
+    }
+
+    /**
+     * 等待玩家的待写入快照写入完成
+     * @param ownerUuid 玩家UUID
+     * @param timeoutMs 最长等待时间（毫秒）
+     * @return 是否已写入完成
+     */
+    public boolean awaitWritten(UUID ownerUuid, long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (lock) {
+            while (pending.containsKey(ownerUuid) || inFlight.contains(ownerUuid)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !isAlive()) {
+                    return false;
+                }
+                hasWaiter = true;
+                lock.notifyAll();
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 停止数据库线程，在限定时间内写完所有待写入的快照
+     * @param timeoutMs 最长等待时间（毫秒）
+     * @return 超时未能写入的快照，全部写入时为空列表
+     */
+    public List<ServantSnapshot> shutdown(long timeoutMs) {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        long deadline = System.currentTimeMillis() + Math.max(1, timeoutMs);
+        try {
+            for (Thread thread : threads) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                thread.join(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            List<ServantSnapshot> remaining = new ArrayList<>(pending.values());
+            pending.clear();
+            return remaining;
+        }
+    }
+
+    /**
+     * 获取待写入的快照数量
+     * @return 快照数量
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size() + inFlight.size();
+        }
+    }
+
+    /**
+     * 获取统计信息
+     * @return 提交次数、被合并的次数、写入的快照数、重新排队的快照数
+     */
+    public long[] getStats() {
+        synchronized (lock) {
+            return new long[]{submitted, coalesced, written, retried};
+        }
+    }
+
+    private boolean isAlive() {
+        for (Thread thread : threads) {
+            if (thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void run() {
+        while (true) {
+            List<ServantSnapshot> batch = takeBatch();
+            if (batch == null) {
+                return;
+            }
+            // 程序错误导致的异常重试也不会成功，按已处理丢弃
+            boolean success = true;
+            try {
+                success = writer.write(batch);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "写入英灵数据时发生错误", e);
+            } finally {
+                synchronized (lock) {
+                    for (ServantSnapshot snapshot : batch) {
+                        inFlight.remove(snapshot.getOwnerUuid());
+                    }
+                    if (success) {
+                        written += batch.size();
+                        consecutiveFailures = 0;
+                        retryAt = 0;
+                    } else {
+                        requeue(batch);
+                    }
+                    lock.notifyAll();
+                }
+            }
+            // 停止时写入失败不再重试，剩余快照由shutdown返回给调用方
+            if (!success && !running) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 把写入失败的快照放回队列并推迟下一次写入，需持有锁
+     * 排队期间同一玩家提交了更新的快照时保留新快照
+     */
+    private void requeue(List<ServantSnapshot> batch) {
+        for (ServantSnapshot snapshot : batch) {
+            if (pending.putIfAbsent(snapshot.getOwnerUuid(), snapshot) == null) {
+                retried++;
+            }
+        }
+        consecutiveFailures++;
+        long delay = Math.min(maxRetryDelayMs, retryDelayMs << Math.min(consecutiveFailures - 1, 20));
+        retryAt = System.currentTimeMillis() + delay;
+        logger.warning("写入英灵数据失败，" + batch.size() + " 个英灵的数据将在 " + delay + " 毫秒后重试");
+    }
+
+    /**
+     * 等待并取出下一批快照，跳过正在被其他线程写入的玩家
+     * @return 快照列表，队列已停止且没有待写入的快照时返回null
+     */
+    private List<ServantSnapshot> takeBatch() {
+        synchronized (lock) {
+            while (true) {
+                try {
+                    while (!hasWritable()) {
+                        if (!running && pending.isEmpty()) {
+                            return null;
+                        }
+                        lock.wait();
+                    }
+                    // 上次写入失败时等待重试间隔，停止时立即重试一次
+                    long remaining;
+                    while (running && (remaining = retryAt - System.currentTimeMillis()) > 0) {
+                        lock.wait(remaining);
+                    }
+                    // 写入间隔内到达的提交合并为一次写入，停止时或有人等待时立即写入
+                    long deadline = System.currentTimeMillis() + flushIntervalMs;
+                    while (running && !hasWaiter && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                        lock.wait(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    // 被中断时不再等待，写完剩余的快照后退出
+                    running = false;
+                }
+                hasWaiter = false;
+
+                List<ServantSnapshot> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+                Iterator<ServantSnapshot> iterator = pending.values().iterator();
+                while (iterator.hasNext() && batch.size() < batchSize) {
+                    ServantSnapshot snapshot = iterator.next();
+                    if (inFlight.contains(snapshot.getOwnerUuid())) {
+                        continue;
+                    }
+                    iterator.remove();
+                    inFlight.add(snapshot.getOwnerUuid());
+                    batch.add(snapshot);
+                }
+                // 等待期间快照已被其他线程取走时重新等待
+                if (!batch.isEmpty()) {
+                    return batch;
+                }
+            }
+        }
+    }
+
+    /**
+     * 检查是否有可以写入的快照，需持有锁
+     */
+    private boolean hasWritable() {
+        for (UUID ownerUuid : pending.keySet()) {
+            if (!inFlight.contains(ownerUuid)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
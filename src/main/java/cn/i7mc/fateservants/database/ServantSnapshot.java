@@ -0,0 +1,269 @@
+package cn.i7mc.fateservants.database;
+
+import cn.i7mc.fateservants.attributes.AttributeContainer;
+import cn.i7mc.fateservants.attributes.AttributeRegistry;
+import cn.i7mc.fateservants.attributes.AttributeView;
+import cn.i7mc.fateservants.model.Servant;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 英灵持久化快照
+ * 保存时在主线程上一次性复制英灵需要保存的全部状态，之后可以在数据库线程中安全读取；
+ * 加载时在异步线程中从数据库或本地存储读取，再交给主线程创建英灵
+ * 快照不可变，同一玩家的多个待保存快照只需写入最新的一个
+ */
+public final class ServantSnapshot {
+    // 保存时总是写入的核心属性
+    private static final String[] CORE_ATTRIBUTES = {"health", "mana", "movement_speed"};
+
+    private final UUID ownerUuid;
+    private final String ownerName;
+    // 为true时表示删除该玩家的英灵数据，其余字段无意义
+    private final boolean removal;
+    private final UUID servantUuid;
+    private final String classId;
+    private final double level;
+    private final int experience;
+    private final double health;
+    private final double mana;
+    private final String world;
+    private final double x;
+    private final double y;
+    private final double z;
+    private final float yaw;
+    private final float pitch;
+    private final boolean following;
+    private final boolean attacking;
+    private final boolean defending;
+    private final long summonTime;
+    private final List<AttributeRow> attributes;
+
+    /**
+     * 一条属性记录
+     */
+    public static final class AttributeRow {
+        private final String key;
+        private final double baseValue;
+        private final double growth;
+
+        AttributeRow(String key, double baseValue, double growth) {
+            this.key = key;
+            this.baseValue = baseValue;
+            this.growth = growth;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public double getBaseValue() {
+            return baseValue;
+        }
+
+        public double getGrowth() {
+            return growth;
+        }
+    }
+
+    private ServantSnapshot(Player owner, Servant servant) {
+        this.ownerUuid = owner.getUniqueId();
+        this.ownerName = owner.getName();
+        this.removal = false;
+        this.servantUuid = servant.getUuid();
+        this.classId = servant.getServantClass().getId();
+        this.level = servant.getLevel();
+        this.experience = servant.getExperience();
+        this.health = servant.getCurrentHealth();
+        this.mana = servant.getCurrentMana();
+        Location loc = servant.getLocation();
+        this.world = loc.getWorld().getName();
+        this.x = loc.getX();
+        this.y = loc.getY();
+        this.z = loc.getZ();
+        this.yaw = loc.getYaw();
+        this.pitch = loc.getPitch();
+        this.following = servant.isFollowing();
+        this.attacking = servant.isAttacking();
+        this.defending = servant.isDefending();
+        this.summonTime = servant.getSummonTime();
+
+        AttributeContainer container = servant.getAttributes();
+        Map<String, Double> growths = servant.getAttributeGrowths();
+        List<AttributeRow> rows = new ArrayList<>();
+        // 首先确保保存核心属性，movement_speed使用职阶配置的基础值
+        for (String coreAttr : CORE_ATTRIBUTES) {
+            double baseValue = coreAttr.equals("movement_speed")
+                ? servant.getServantClass().getBaseMovementSpeed()
+                : container.getBaseValue(coreAttr);
+            rows.add(new AttributeRow(coreAttr, baseValue, growths.getOrDefault(coreAttr, 0.0)));
+        }
+        // 然后保存其他属性
+        AttributeView view = container.view();
+        for (int index = 0; index < view.size(); index++) {
+            if (!view.has(index)) {
+                continue;
+            }
+            String attrKey = AttributeRegistry.nameOf(index);
+            if (isCoreAttribute(attrKey)) {
+                continue;
+            }
+            rows.add(new AttributeRow(attrKey, view.getBaseValue(index), growths.getOrDefault(attrKey, 0.0)));
+        }
+        this.attributes = Collections.unmodifiableList(rows);
+    }
+
+    /**
+     * 使用从存储中读取的数据创建快照
+     * 生命值和魔法值为NaN时表示存储中没有记录，创建英灵时使用最大值
+     */
+    ServantSnapshot(UUID ownerUuid, String ownerName, boolean removal, UUID servantUuid, String classId,
+                    double level, int experience, double health, double mana,
+                    String world, double x, double y, double z, float yaw, float pitch,
+                    boolean following, boolean attacking, boolean defending, long summonTime,
+                    List<AttributeRow> attributes) {
+        this.ownerUuid = ownerUuid;
+        this.ownerName = ownerName;
+        this.removal = removal;
+        this.servantUuid = servantUuid;
+        this.classId = classId;
+        this.level = level;
+        this.experience = experience;
+        this.health = health;
+        this.mana = mana;
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.yaw = yaw;
+        this.pitch = pitch;
+        this.following = following;
+        this.attacking = attacking;
+        this.defending = defending;
+        this.summonTime = summonTime;
+        this.attributes = Collections.unmodifiableList(new ArrayList<>(attributes));
+    }
+
+    /**
+     * 在主线程上复制英灵的当前状态
+     * @param owner 主人
+     * @param servant 英灵
+     * @return 快照
+     */
+    public static ServantSnapshot capture(Player owner, Servant servant) {
+        return new ServantSnapshot(owner, servant);
+    }
+
+    /**
+     * 创建删除玩家英灵数据的快照
+     * @param owner 主人
+     * @return 快照
+     */
+    public static ServantSnapshot removal(Player owner) {
+        return new ServantSnapshot(owner.getUniqueId(), owner.getName(), true, null, null,
+            0, 0, 0, 0, null, 0, 0, 0, 0, 0, false, false, false, 0, Collections.<AttributeRow>emptyList());
+    }
+
+    private static boolean isCoreAttribute(String key) {
+        for (String coreAttr : CORE_ATTRIBUTES) {
+            if (coreAttr.equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public UUID getOwnerUuid() {
+        return ownerUuid;
+    }
+
+    public String getOwnerName() {
+        return ownerName;
+    }
+
+    /**
+     * 是否为删除操作
+     * @return 是否删除该玩家的英灵数据
+     */
+    public boolean isRemoval() {
+        return removal;
+    }
+
+    public UUID getServantUuid() {
+        return servantUuid;
+    }
+
+    public String getClassId() {
+        return classId;
+    }
+
+    public double getLevel() {
+        return level;
+    }
+
+    public int getExperience() {
+        return experience;
+    }
+
+    public double getHealth() {
+        return health;
+    }
+
+    public double getMana() {
+        return mana;
+    }
+
+    public String getWorld() {
+        return world;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    public float getYaw() {
+        return yaw;
+    }
+
+    public float getPitch() {
+        return pitch;
+    }
+
+    public boolean isFollowing() {
+        return following;
+    }
+
+    public boolean isAttacking() {
+        return attacking;
+    }
+
+    public boolean isDefending() {
+        return defending;
+    }
+
+    public long getSummonTime() {
+        return summonTime;
+    }
+
+    /**
+     * 获取属性记录，核心属性在前
+     * @return 不可修改的属性记录列表
+     */
+    public List<AttributeRow> getAttributes() {
+        return attributes;
+    }
+}
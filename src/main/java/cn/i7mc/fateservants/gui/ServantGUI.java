@@ -4,6 +4,7 @@ import cn.i7mc.fateservants.FateServants;
 import cn.i7mc.fateservants.attributes.AttributeInfo;
 import cn.i7mc.fateservants.attributes.AttributeManager;
 import cn.i7mc.fateservants.attributes.AttributeModifier;
+import cn.i7mc.fateservants.config.LevelFormulas;
 import cn.i7mc.fateservants.model.Servant;
 import cn.i7mc.fateservants.ai.ServantBehavior;
 import cn.i7mc.fateservants.skills.Skill;
@@ -457,69 +458,17 @@ public class ServantGUI implements Listener {
             lore.add("§7等级: §f" + (int)servant.getLevel());
         }
         
-        // 计算下一级所需经验
-        int requiredExp;
-        double expPercent = 0.0;
-        
-        try {
-            // 如果是1级，使用默认值
-            if (servant.getLevel() == 1) {
-                requiredExp = plugin.getConfig().getInt("level_system.default_required_exp", 100);
-                if (plugin.getConfig().getBoolean("debug", false)) {
-                    plugin.getLogger().info(String.format(
-                        "[GUI Debug] 使用1级默认经验值: %d",
-                        requiredExp
-                    ));
-                }
-            } else {
-                // 2级及以上使用公式计算
-                String levelUpFormula = plugin.getConfig().getString("level_system.level_up_formula", "100*({level}^2)");
-                String formula = levelUpFormula.replace("{level}", String.valueOf(servant.getLevel()));
-                
-                javax.script.ScriptEngineManager manager = new javax.script.ScriptEngineManager();
-                javax.script.ScriptEngine engine = manager.getEngineByName("js");
-                
-                // 替换变量并计算
-                requiredExp = (int)Math.round(Double.parseDouble(engine.eval(formula).toString()));
-                
-                // 输出调试信息到后台
-                if (plugin.getConfig().getBoolean("debug", false)) {
-                    plugin.getLogger().info(String.format(
-                        "[GUI Debug] 经验计算:\n" +
-                        "1. 原始公式: %s\n" +
-                        "2. 当前等级: %d\n" +
-                        "3. 替换变量后的公式: %s\n" +
-                        "4. 计算结果: %d",
-                        levelUpFormula,
-                        servant.getLevel(),
-                        formula,
-                        requiredExp
-                    ));
-                }
-            }
-            
-            // 计算经验百分比
-            expPercent = ((double)servant.getExperience() / requiredExp) * 100.0;
-            
-            // 输出最终结果
-            if (plugin.getConfig().getBoolean("debug", false)) {
-                plugin.getLogger().info(String.format(
-                    "[GUI Debug] 最终结果:\n" +
-                    "当前等级: %d\n" +
-                    "当前经验: %d\n" +
-                    "所需经验: %d\n" +
-                    "经验百分比: %.2f%%",
-                    servant.getLevel(),
-                    servant.getExperience(),
-                    requiredExp,
-                    expPercent
-                ));
-            }
-        } catch (Exception e) {
-            plugin.getLogger().warning("计算升级经验时发生错误: " + e.getMessage());
-            e.printStackTrace();
-            requiredExp = 100; // 出错时使用默认值
-        }
+        // 计算下一级所需经验，与升级检查使用同一条经验曲线
+        int requiredExp = servant.getRequiredExperience();
+        double expPercent = requiredExp > 0 ? ((double) servant.getExperience() / requiredExp) * 100.0 : 0.0;
+        
+        // 输出最终结果
+        DebugUtils.trace("gui.exp_calculation", () -> new Object[]{
+            LevelFormulas.getLevelUpFormula(),
+            (int) servant.getLevel(),
+            servant.getExperience(),
+            requiredExp,
+            String.format("%.2f", expPercent)});
         
         // 添加经验值显示
         String expFormat = guiConfig.getString("servant-info.format.experience", "§7经验值: §e%d/%d");
@@ -14,7 +14,6 @@ import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
-import org.bukkit.ChatColor;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -230,14 +229,7 @@ public class ServantControlPage extends AbstractGUIPage {
                 } else {
                     // 其他核心属性使用通用格式
                     double value = servant.getAttributes().getValue(attrName);
-                    String format = info.getFormat();
-                    
-                    // 替换变量
-                    format = format.replace("{display_name}", info.getDisplayName())
-                                 .replace("{value}", String.format("%.1f", value))
-                                 .replace("{symbol}", info.getSymbol());
-                    
-                    formattedValue = ChatColor.translateAlternateColorCodes('&', format);
+                    formattedValue = FormatUtils.formatAttribute(info, value);
                 }
                 
                 lore.add(formattedValue);
@@ -272,12 +264,7 @@ public class ServantControlPage extends AbstractGUIPage {
                     if (line.contains("{" + attrName + "}")) {
                         AttributeInfo info = plugin.getAttributeManager().getAttributeInfo(attrName);
                         if (info != null) {
-                            String format = info.getFormat();
-                            format = format.replace("{display_name}", info.getDisplayName())
-                                       .replace("{value}", String.format("%.1f", entry.getValue()))
-                                       .replace("{symbol}", info.getSymbol());
-                            
-                            line = line.replace("{" + attrName + "}", format);
+                            line = line.replace("{" + attrName + "}", FormatUtils.formatAttribute(info, entry.getValue()));
                         }
                     }
                 }
@@ -18,6 +18,7 @@ import org.bukkit.inventory.meta.ItemMeta;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -152,14 +153,7 @@ public class ServantStatsPage extends AbstractGUIPage {
                 } else {
                     // 其他核心属性使用通用格式
                     double value = servant.getAttributes().getValue(attrName);
-                    String format = info.getFormat();
-                    
-                    // 替换变量
-                    format = format.replace("{display_name}", info.getDisplayName())
-                                 .replace("{value}", String.format("%.1f", value))
-                                 .replace("{symbol}", info.getSymbol());
-                    
-                    lore.add(ChatColor.translateAlternateColorCodes('&', format));
+                    lore.add(FormatUtils.formatAttribute(info, value));
                 }
             }
         } else {
@@ -191,12 +185,7 @@ public class ServantStatsPage extends AbstractGUIPage {
                     if (line.contains("{" + attrName + "}")) {
                         AttributeInfo info = plugin.getAttributeManager().getAttributeInfo(attrName);
                         if (info != null) {
-                            String format = info.getFormat();
-                            format = format.replace("{display_name}", info.getDisplayName())
-                                       .replace("{value}", String.format("%.1f", entry.getValue()))
-                                       .replace("{symbol}", info.getSymbol());
-                            
-                            line = line.replace("{" + attrName + "}", format);
+                            line = line.replace("{" + attrName + "}", FormatUtils.formatAttribute(info, entry.getValue()));
                         }
                     }
                 }
@@ -352,21 +341,22 @@ public class ServantStatsPage extends AbstractGUIPage {
         String bonusSign = bonus >= 0 ? "+" : "";
         String growthColor = getGrowthColor(growth);
         
-        // 处理每一行
+        // 所有行共用同一组变量
+        Map<String, Object> values = new HashMap<>();
+        values.put("attribute_id", attributeName);
+        values.put("display_name", displayName);
+        values.put("symbol", symbol);
+        values.put("value", String.format("%.1f", value));
+        values.put("base_value", String.format("%.1f", baseValue));
+        values.put("bonus_value", String.format("%.1f", Math.abs(bonus)));
+        values.put("bonus_sign", bonusSign);
+        values.put("bonus_color", bonusColor);
+        values.put("growth", growthPercent);
+        values.put("growth_color", growthColor);
+        
+        // 处理每一行，模板在首次使用时编译并缓存
         for (String line : template) {
-            // 替换所有变量
-            line = line.replace("{attribute_id}", attributeName)
-                     .replace("{display_name}", displayName)
-                     .replace("{symbol}", symbol)
-                     .replace("{value}", String.format("%.1f", value))
-                     .replace("{base_value}", String.format("%.1f", baseValue))
-                     .replace("{bonus_value}", String.format("%.1f", Math.abs(bonus)))
-                     .replace("{bonus_sign}", bonusSign)
-                     .replace("{bonus_color}", bonusColor)
-                     .replace("{growth}", String.valueOf(growthPercent))
-                     .replace("{growth_color}", growthColor);
-            
-            lore.add(ChatColor.translateAlternateColorCodes('&', line));
+            lore.add(FormatUtils.format(line, values));
         }
         
         meta.setLore(lore);
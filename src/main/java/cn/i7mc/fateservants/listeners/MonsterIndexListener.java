@@ -0,0 +1,41 @@
+package cn.i7mc.fateservants.listeners;
+
+import cn.i7mc.fateservants.FateServants;
+import cn.i7mc.fateservants.manager.MonsterSpatialIndex;
+import org.bukkit.entity.Monster;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * 在两次重建之间增量维护敌对生物空间索引
+ */
+public class MonsterIndexListener implements Listener {
+    private final MonsterSpatialIndex monsterIndex;
+
+    public MonsterIndexListener(FateServants plugin) {
+        this.monsterIndex = plugin.getMonsterIndex();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onCreatureSpawn(CreatureSpawnEvent event) {
+        if (event.getEntity() instanceof Monster) {
+            monsterIndex.add((Monster) event.getEntity());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityDeath(EntityDeathEvent event) {
+        if (event.getEntity() instanceof Monster) {
+            monsterIndex.remove((Monster) event.getEntity());
+        }
+    }
+
+    @EventHandler
+    public void onWorldUnload(WorldUnloadEvent event) {
+        monsterIndex.removeWorld(event.getWorld());
+    }
+}
@@ -1,22 +1,28 @@
 package cn.i7mc.fateservants.listeners;
 
 import cn.i7mc.fateservants.FateServants;
-import cn.i7mc.fateservants.manager.ServantManager;
+import cn.i7mc.fateservants.config.RuntimeSettings;
+import cn.i7mc.fateservants.manager.ServantSpatialIndex;
 import cn.i7mc.fateservants.model.Servant;
 import org.bukkit.Location;
 import org.bukkit.entity.Monster;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityTargetEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class MonsterTargetListener implements Listener {
     private final FateServants plugin;
-    private final ServantManager servantManager;
-    private static final double TARGET_RANGE = 16.0; // 怪物的索敌范围
+    private final ServantSpatialIndex servantIndex;
+    // 复用的查询结果列表，事件只在主线程触发
+    private final List<Servant> nearbyServants = new ArrayList<>();
 
     public MonsterTargetListener(FateServants plugin) {
         this.plugin = plugin;
-        this.servantManager = plugin.getServantManager();
+        this.servantIndex = plugin.getServantIndex();
     }
 
     @EventHandler
@@ -28,28 +34,28 @@ public class MonsterTargetListener implements Listener {
         Monster monster = (Monster) event.getEntity();
         Location monsterLoc = monster.getLocation();
 
-        // 检查附近的英灵
-        for (Servant servant : servantManager.getServants()) {
-            // 只考虑处于战斗状态的英灵
-            if (!servant.isAttacking()) {
-                continue;
-            }
-
-            Location servantLoc = servant.getLocation();
-            if (servantLoc.getWorld() != monsterLoc.getWorld()) {
-                continue;
-            }
-
-            double distance = servantLoc.distance(monsterLoc);
-            if (distance <= TARGET_RANGE) {
-                // 有一定概率将英灵作为目标
-                if (Math.random() < 0.3) { // 30%的概率
-                    // 取消原目标,将怪物的仇恨转向英灵的主人
-                    event.setCancelled(true);
-                    monster.setTarget(servant.getOwner());
-                    break;
-                }
+        // 怪物的索敌范围和转移仇恨的概率来自运行时配置快照
+        RuntimeSettings settings = plugin.getSettings();
+        double chance = settings.getMonsterTargetChance();
+
+        // 只检查附近区块中处于战斗状态的英灵
+        nearbyServants.clear();
+        servantIndex.queryWithin(monsterLoc, settings.getMonsterTargetRange(), nearbyServants);
+        for (int i = 0; i < nearbyServants.size(); i++) {
+            Servant servant = nearbyServants.get(i);
+            // 有一定概率将英灵作为目标
+            if (Math.random() < chance) {
+                // 取消原目标,将怪物的仇恨转向英灵的主人
+                event.setCancelled(true);
+                monster.setTarget(servant.getOwner());
+                break;
             }
         }
+        nearbyServants.clear();
+    }
+
+    @EventHandler
+    public void onWorldUnload(WorldUnloadEvent event) {
+        servantIndex.removeWorld(event.getWorld());
     }
 }
@@ -11,6 +11,8 @@ import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 import cn.i7mc.fateservants.utils.DebugUtils;
 
+import java.util.Collections;
+
 public class PlayerJoinListener implements Listener {
     
     private final FateServants plugin;
@@ -22,44 +24,12 @@ public class PlayerJoinListener implements Listener {
     @EventHandler(priority = EventPriority.NORMAL)
     public void onPlayerJoin(PlayerJoinEvent event) {
         final Player player = event.getPlayer();
-        // 延迟10ticks后完全加载玩家英灵
+        // 延迟10ticks后完全加载玩家英灵，数据读取在异步线程中完成，英灵在主线程生成
         new BukkitRunnable() {
             @Override
             public void run() {
-                try {
-                    // 从数据库加载玩家英灵
-                    Servant servant = plugin.getDatabaseManager().loadServant(player);
-                    if (servant != null) {
-                        // 先移除如果已经有的英灵
-                        if (plugin.getServantManager().hasServant(player)) {
-                            plugin.getServantManager().removeServant(player);
-                        }
-                        
-                        // 直接添加数据库加载的英灵到管理器中，而不是创建新实例
-                        plugin.getServantManager().addServant(player, servant);
-                        
-                        // 确保英灵被正确生成
-                        servant.spawn();
-                        
-                        // 如果必要，更新英灵位置
-                        if (servant.getLocation() != null) {
-                            servant.teleport(servant.getLocation());
-                        }
-                        
-                        // 确保英灵AI控制器正确设置为跟随模式
-                        if (servant.getAIController() != null) {
-                            servant.getAIController().setBehavior(cn.i7mc.fateservants.ai.ServantBehavior.FOLLOW);
-                        }
-                        
-                        // 添加调试日志，确认AI控制器已设置
-                        DebugUtils.debug("servant.ai_controller_set", player.getName(), 
-                            servant.getServantClass() != null ? servant.getServantClass().getId() : "null");
-                        
-                        DebugUtils.debug("debug.servantdata.load.success", player.getName());
-                    }
-                } catch (Exception e) {
-                    plugin.getLogger().severe("加载 " + player.getName() + " 的英灵数据时发生错误: " + e.getMessage());
-                    DebugUtils.logException("debug.servantdata.load.error", e, player.getName());
+                if (player.isOnline()) {
+                    plugin.getServantManager().loadServants(Collections.singletonList(player));
                 }
             }
         }.runTaskLater(plugin, 10L);
@@ -68,6 +38,11 @@ public class PlayerJoinListener implements Listener {
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
+        // 从所有英灵的跟踪列表中移除该玩家
+        for (Servant trackedServant : plugin.getServantManager().getAllServants()) {
+            trackedServant.removeViewer(player);
+        }
+        
         if (plugin.getServantManager().hasServant(player)) {
             // 先获取玩家的英灵
             Servant servant = plugin.getServantManager().getServant(player);
@@ -0,0 +1,23 @@
+package cn.i7mc.fateservants.listeners;
+
+import cn.i7mc.fateservants.attributes.damage.NativeDamagePipeline;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+
+/**
+ * 恢复原生伤害结算的伤害数值
+ * 原生结算以主人的名义造成伤害，AttributePlus会按主人的属性重新计算这类伤害，
+ * 在最高优先级把伤害改回英灵属性计算出的数值
+ */
+public class ServantDamageListener implements Listener {
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onEntityDamageByEntity(EntityDamageByEntityEvent event) {
+        double damage = NativeDamagePipeline.getPendingDamage(event.getEntity());
+        if (damage >= 0) {
+            event.setDamage(damage);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package cn.i7mc.fateservants.manager;
+
+import cn.i7mc.fateservants.FateServants;
+import cn.i7mc.fateservants.attributes.damage.NativeDamagePipeline;
+import cn.i7mc.fateservants.attributes.damage.NativeDamagePipeline.AttackSnapshot;
+import cn.i7mc.fateservants.model.Servant;
+import cn.i7mc.fateservants.utils.DebugUtils;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+
+/**
+ * 英灵战斗批量结算
+ * 主线程在英灵攻击时记录双方属性的快照，本tick结束后把所有快照交给战斗线程池并行计算伤害，
+ * 下一tick开始时在主线程统一造成伤害、增加经验并触发被动技能
+ * 只有原生伤害结算可以批量处理，AttributePlus结算依赖伤害事件，仍在攻击时直接结算
+ */
+public class CombatResolver {
+    // 每个计算任务至少处理的攻击数，攻击较少时不拆分
+    private static final int MIN_CHUNK_SIZE = 32;
+
+    private final FateServants plugin;
+    private final int parallelism;
+    // 本tick记录的攻击
+    private List<AttackSnapshot> queued = new ArrayList<>();
+    // 已提交计算、等待下一tick应用的攻击
+    private List<AttackSnapshot> inFlight;
+    private double[] results;
+    private CompletableFuture<Void> pending;
+
+    // 统计信息
+    private int resolvedLastTick;
+
+    /**
+     * @param plugin 插件实例
+     * @param parallelism 战斗线程池的线程数量
+     */
+    public CombatResolver(FateServants plugin, int parallelism) {
+        this.plugin = plugin;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * 记录一次攻击，伤害在下一tick应用
+     * @param pipeline 原生伤害结算
+     * @param servant 发起攻击的英灵
+     * @param target 目标
+     */
+    public void queue(NativeDamagePipeline pipeline, Servant servant, LivingEntity target) {
+        queued.add(pipeline.snapshot(servant, target));
+    }
+
+    /**
+     * 应用上一tick提交的计算结果，每tick开始时调用
+     */
+    public void applyResults() {
+        List<AttackSnapshot> batch = inFlight;
+        if (batch == null) {
+            resolvedLastTick = 0;
+            return;
+        }
+        inFlight = null;
+
+        // 计算量很小，通常在下一tick前已经完成；未完成时等待，线程池出错时在主线程重新计算
+        double[] damages = results;
+        try {
+            pending.join();
+        } catch (CompletionException e) {
+            plugin.getLogger().log(Level.WARNING, "战斗线程池计算伤害失败，改在主线程计算", e.getCause());
+            compute(batch, damages, 0, batch.size());
+        }
+        pending = null;
+        results = null;
+
+        for (int i = 0; i < batch.size(); i++) {
+            AttackSnapshot snapshot = batch.get(i);
+            Servant servant = snapshot.getServant();
+            LivingEntity target = snapshot.getTarget();
+            Player owner = servant.getOwner();
+            // 跳过结算前已被收回的英灵、下线的主人和已死亡的目标
+            if (owner == null || !owner.isOnline() || plugin.getServantManager().getServant(owner) != servant
+                || target.isDead() || !target.isValid()) {
+                continue;
+            }
+
+            double actualDamage = NativeDamagePipeline.apply(snapshot, damages[i]);
+            if (actualDamage > 0) {
+                servant.addExperience(actualDamage);
+            }
+
+            // 尝试触发被动技能
+            servant.tryTriggerPassiveSkills(target);
+        }
+        resolvedLastTick = batch.size();
+    }
+
+    /**
+     * 把本tick记录的攻击提交到战斗线程池，每tick结束时调用
+     */
+    public void dispatch() {
+        if (queued.isEmpty()) {
+            return;
+        }
+        List<AttackSnapshot> batch = queued;
+        queued = new ArrayList<>();
+        double[] damages = new double[batch.size()];
+
+        int chunks = Math.min(parallelism, (batch.size() + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE);
+        int chunkSize = (batch.size() + chunks - 1) / chunks;
+        ExecutorService executor = plugin.getBattleExecutor();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks];
+        for (int c = 0; c < chunks; c++) {
+            int from = c * chunkSize;
+            int to = Math.min(batch.size(), from + chunkSize);
+            futures[c] = submit(executor, batch, damages, from, to);
+        }
+        pending = CompletableFuture.allOf(futures);
+        inFlight = batch;
+        results = damages;
+
+        DebugUtils.trace("scheduler.combat_batch", () -> new Object[]{batch.size(), chunks});
+    }
+
+    /**
+     * 在主线程结算所有尚未应用的攻击，插件关闭时在停止调度器后、关闭战斗线程池前调用
+     * 先应用已提交计算的攻击，再直接计算并应用本tick记录但尚未提交的攻击
+     */
+    public void drain() {
+        applyResults();
+        if (queued.isEmpty()) {
+            return;
+        }
+        List<AttackSnapshot> batch = queued;
+        queued = new ArrayList<>();
+        double[] damages = new double[batch.size()];
+        compute(batch, damages, 0, batch.size());
+        inFlight = batch;
+        results = damages;
+        pending = CompletableFuture.completedFuture(null);
+        applyResults();
+    }
+
+    private static CompletableFuture<Void> submit(ExecutorService executor, List<AttackSnapshot> batch,
+                                                  double[] damages, int from, int to) {
+        if (executor != null) {
+            try {
+                return CompletableFuture.runAsync(() -> compute(batch, damages, from, to), executor);
+            } catch (RejectedExecutionException ignored) {
+                // 线程池已关闭，改在主线程计算
+            }
+        }
+        compute(batch, damages, from, to);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static void compute(List<AttackSnapshot> batch, double[] damages, int from, int to) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = from; i < to; i++) {
+            damages[i] = batch.get(i).computeDamage(random);
+        }
+    }
+
+    /**
+     * 获取上一tick应用的攻击数量
+     * @return 攻击数量
+     */
+    public int getResolvedLastTick() {
+        return resolvedLastTick;
+    }
+}
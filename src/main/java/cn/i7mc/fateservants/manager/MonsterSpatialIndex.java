@@ -0,0 +1,177 @@
+package cn.i7mc.fateservants.manager;
+
+import cn.i7mc.fateservants.FateServants;
+import cn.i7mc.fateservants.utils.ChunkGrid;
+import cn.i7mc.fateservants.utils.DebugUtils;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Monster;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 敌对生物空间索引
+ * 按世界和区块划分怪物，每隔固定tick全量重建一次，生成和死亡事件在两次重建之间增量维护，
+ * 所有英灵的索敌查询都通过本索引完成，查询只做平方距离比较且不分配对象
+ * 非线程安全，只应在主线程使用
+ */
+public class MonsterSpatialIndex {
+    private final FateServants plugin;
+    private final Map<World, ChunkGrid<Monster>> grids = new HashMap<>();
+    // 复用的位置对象，避免每次读取实体位置都创建新对象
+    private final Location scratch = new Location(null, 0, 0, 0);
+    private int refreshInterval;
+    private long nextRefreshTick = 0;
+    private int indexedCount = 0;
+
+    public MonsterSpatialIndex(FateServants plugin) {
+        this.plugin = plugin;
+        reload();
+    }
+
+    /**
+     * 重新读取索引配置
+     */
+    public void reload() {
+        this.refreshInterval = Math.max(1, plugin.getConfig().getInt("performance.monster_index.refresh_interval", 10));
+        this.nextRefreshTick = 0;
+    }
+
+    /**
+     * 由调度器每tick调用，到达重建间隔时重建索引
+     * @param currentTick 当前tick
+     */
+    public void tick(long currentTick) {
+        if (currentTick < nextRefreshTick) {
+            return;
+        }
+        nextRefreshTick = currentTick + refreshInterval;
+        rebuild();
+    }
+
+    /**
+     * 全量重建索引，只索引有玩家的世界
+     */
+    public void rebuild() {
+        int count = 0;
+        for (World world : Bukkit.getWorlds()) {
+            ChunkGrid<Monster> grid = grids.get(world);
+            if (grid != null) {
+                grid.clear();
+            }
+            if (world.getPlayers().isEmpty()) {
+                continue;
+            }
+            if (grid == null) {
+                grid = new ChunkGrid<>();
+                grids.put(world, grid);
+            }
+
+            for (LivingEntity entity : world.getLivingEntities()) {
+                if (!(entity instanceof Monster) || entity.isDead() || !entity.isValid()) {
+                    continue;
+                }
+                entity.getLocation(scratch);
+                grid.add(scratch.getBlockX() >> 4, scratch.getBlockZ() >> 4, (Monster) entity);
+                count++;
+            }
+        }
+        indexedCount = count;
+        DebugUtils.debug("monster_index.rebuild", () -> new Object[]{indexedCount, grids.size()});
+    }
+
+    /**
+     * 添加新生成的怪物，世界尚未被索引时忽略，等待下次重建
+     * @param monster 怪物
+     */
+    public void add(Monster monster) {
+        ChunkGrid<Monster> grid = grids.get(monster.getWorld());
+        if (grid == null) {
+            return;
+        }
+        monster.getLocation(scratch);
+        grid.add(scratch.getBlockX() >> 4, scratch.getBlockZ() >> 4, monster);
+        indexedCount++;
+    }
+
+    /**
+     * 移除死亡的怪物
+     * 怪物在两次重建之间跨区块移动时可能移除失败，查询时会跳过已死亡的怪物，下次重建后清除
+     * @param monster 怪物
+     */
+    public void remove(Monster monster) {
+        ChunkGrid<Monster> grid = grids.get(monster.getWorld());
+        if (grid == null) {
+            return;
+        }
+        monster.getLocation(scratch);
+        if (grid.remove(scratch.getBlockX() >> 4, scratch.getBlockZ() >> 4, monster)) {
+            indexedCount--;
+        }
+    }
+
+    /**
+     * 移除世界的索引
+     * @param world 世界
+     */
+    public void removeWorld(World world) {
+        grids.remove(world);
+    }
+
+    /**
+     * 查找指定位置半径内最近的有效怪物
+     * @param center 中心位置
+     * @param radius 搜索半径
+     * @return 最近的怪物，没有则返回null
+     */
+    public Monster findNearest(Location center, double radius) {
+        ChunkGrid<Monster> grid = grids.get(center.getWorld());
+        if (grid == null) {
+            return null;
+        }
+
+        double x = center.getX();
+        double y = center.getY();
+        double z = center.getZ();
+        int minChunkX = (int) Math.floor(x - radius) >> 4;
+        int maxChunkX = (int) Math.floor(x + radius) >> 4;
+        int minChunkZ = (int) Math.floor(z - radius) >> 4;
+        int maxChunkZ = (int) Math.floor(z + radius) >> 4;
+
+        double closestDistanceSquared = radius * radius;
+        Monster closest = null;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                List<Monster> bucket = grid.get(chunkX, chunkZ);
+                for (int i = 0, size = bucket.size(); i < size; i++) {
+                    Monster monster = bucket.get(i);
+                    if (monster.isDead() || !monster.isValid()) {
+                        continue;
+                    }
+                    monster.getLocation(scratch);
+                    double dx = scratch.getX() - x;
+                    double dy = scratch.getY() - y;
+                    double dz = scratch.getZ() - z;
+                    double distanceSquared = dx * dx + dy * dy + dz * dz;
+                    if (distanceSquared < closestDistanceSquared) {
+                        closestDistanceSquared = distanceSquared;
+                        closest = monster;
+                    }
+                }
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * 获取当前索引的怪物数量
+     * @return 怪物数量
+     */
+    public int getIndexedCount() {
+        return indexedCount;
+    }
+}
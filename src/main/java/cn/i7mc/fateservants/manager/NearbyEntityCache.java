@@ -0,0 +1,168 @@
+package cn.i7mc.fateservants.manager;
+
+import cn.i7mc.fateservants.utils.DebugUtils;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 附近实体查询缓存
+ * 以（世界, 区块段, 半径）为键缓存本tick内的getNearbyEntities结果，
+ * 同一区域内的多个英灵共享一次扫描，缓存在每tick开始时清空
+ * 返回的是覆盖整个区块段的超集，调用方需要自行按精确距离过滤
+ * 非线程安全，只应在主线程使用
+ */
+public class NearbyEntityCache {
+    private final Map<CellKey, List<LivingEntity>> cache = new HashMap<>();
+    private final ArrayDeque<List<LivingEntity>> freeLists = new ArrayDeque<>();
+    // 查询时复用的键，只有未命中时才创建新的键对象
+    private final CellKey lookupKey = new CellKey();
+
+    // 统计信息
+    private long totalHits = 0;
+    private long totalMisses = 0;
+    private int hitsLastTick = 0;
+    private int missesLastTick = 0;
+    private int hitsThisTick = 0;
+    private int missesThisTick = 0;
+
+    /**
+     * 缓存键，由世界、区块段坐标和查询半径组成
+     */
+    private static final class CellKey {
+        private World world;
+        private int chunkX;
+        private int sectionY;
+        private int chunkZ;
+        private long radiusBits;
+
+        private CellKey set(World world, int chunkX, int sectionY, int chunkZ, double radius) {
+            this.world = world;
+            this.chunkX = chunkX;
+            this.sectionY = sectionY;
+            this.chunkZ = chunkZ;
+            this.radiusBits = Double.doubleToLongBits(radius);
+            return this;
+        }
+
+        private CellKey copy() {
+            return new CellKey().set(world, chunkX, sectionY, chunkZ, Double.longBitsToDouble(radiusBits));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CellKey)) return false;
+            CellKey other = (CellKey) o;
+            return world == other.world && chunkX == other.chunkX && sectionY == other.sectionY
+                && chunkZ == other.chunkZ && radiusBits == other.radiusBits;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(world);
+            result = 31 * result + chunkX;
+            result = 31 * result + sectionY;
+            result = 31 * result + chunkZ;
+            result = 31 * result + (int) (radiusBits ^ (radiusBits >>> 32));
+            return result;
+        }
+    }
+
+    /**
+     * 开始新的tick，清空上一tick的缓存并滚动统计信息
+     */
+    public void beginTick() {
+        if (hitsThisTick > 0 || missesThisTick > 0) {
+            DebugUtils.debug("nearby_cache.stats", () -> new Object[]{hitsThisTick, missesThisTick, cache.size()});
+        }
+        hitsLastTick = hitsThisTick;
+        missesLastTick = missesThisTick;
+        hitsThisTick = 0;
+        missesThisTick = 0;
+
+        for (List<LivingEntity> list : cache.values()) {
+            list.clear();
+            freeLists.push(list);
+        }
+        cache.clear();
+    }
+
+    /**
+     * 获取指定位置附近的生物
+     * 结果覆盖中心所在区块段向外扩展半径的范围，调用方需要按精确距离过滤，不应修改返回的列表
+     * @param center 中心位置
+     * @param radius 查询半径
+     * @return 附近生物列表
+     */
+    public List<LivingEntity> getNearbyLivingEntities(Location center, double radius) {
+        World world = center.getWorld();
+        int chunkX = center.getBlockX() >> 4;
+        int sectionY = center.getBlockY() >> 4;
+        int chunkZ = center.getBlockZ() >> 4;
+
+        List<LivingEntity> result = cache.get(lookupKey.set(world, chunkX, sectionY, chunkZ, radius));
+        if (result != null) {
+            hitsThisTick++;
+            totalHits++;
+            return result;
+        }
+
+        missesThisTick++;
+        totalMisses++;
+        result = freeLists.poll();
+        if (result == null) {
+            result = new ArrayList<>();
+        }
+
+        // 以区块段中心为原点扫描，范围扩展半个区块段，保证段内任意位置的查询都被覆盖
+        Location cellCenter = new Location(world, (chunkX << 4) + 8, (sectionY << 4) + 8, (chunkZ << 4) + 8);
+        double extent = radius + 8;
+        for (Entity entity : world.getNearbyEntities(cellCenter, extent, extent, extent)) {
+            if (entity instanceof LivingEntity && !entity.isDead()) {
+                result.add((LivingEntity) entity);
+            }
+        }
+        cache.put(lookupKey.copy(), result);
+        return result;
+    }
+
+    /**
+     * 获取上一tick的命中次数
+     * @return 命中次数
+     */
+    public int getHitsLastTick() {
+        return hitsLastTick;
+    }
+
+    /**
+     * 获取上一tick的未命中次数
+     * @return 未命中次数
+     */
+    public int getMissesLastTick() {
+        return missesLastTick;
+    }
+
+    /**
+     * 获取累计命中次数
+     * @return 命中次数
+     */
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * 获取累计未命中次数
+     * @return 未命中次数
+     */
+    public long getTotalMisses() {
+        return totalMisses;
+    }
+}
@@ -2,6 +2,7 @@ package cn.i7mc.fateservants.manager;
 
 import cn.i7mc.fateservants.FateServants;
 import cn.i7mc.fateservants.model.ServantClass;
+import cn.i7mc.fateservants.utils.DebugUtils;
 
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
@@ -60,7 +61,8 @@ public class ServantClassManager {
     public ServantClass getClass(String id) {
         String upperCaseId = id.toUpperCase();
         ServantClass result = classes.get(upperCaseId);
-        plugin.getLogger().info("Getting class " + upperCaseId + ": " + (result != null ? result.getDisplayName() : "null"));
+        DebugUtils.trace("servantclass.get_class", () -> new Object[]{
+            upperCaseId, result != null ? result.getDisplayName() : "null"});
         return result;
     }
 
@@ -79,7 +81,7 @@ public class ServantClassManager {
 
     public boolean hasClass(String id) {
         boolean result = classes.containsKey(id.toUpperCase());
-        plugin.getLogger().info("Checking if class " + id + " exists: " + result);
+        DebugUtils.trace("servantclass.has_class", () -> new Object[]{id, result});
         return result;
     }
 } 
\ No newline at end of file
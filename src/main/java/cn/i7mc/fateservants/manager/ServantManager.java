@@ -1,6 +1,7 @@
 package cn.i7mc.fateservants.manager;
 
 import cn.i7mc.fateservants.FateServants;
+import cn.i7mc.fateservants.database.ServantSnapshot;
 import cn.i7mc.fateservants.model.Servant;
 import cn.i7mc.fateservants.model.ServantClass;
 import cn.i7mc.fateservants.utils.DebugUtils;
@@ -116,6 +117,7 @@ public class ServantManager {
 
     /**
      * 保存所有英灵数据
+     * 只在主线程复制英灵状态并放入写入队列，实际写入由数据库线程批量完成
      */
     public void saveAll() {
         if (plugin.getDatabaseManager() == null) {
@@ -128,9 +130,7 @@ public class ServantManager {
             if (owner != null && owner.isOnline()) {
                 try {
                     plugin.getDatabaseManager().saveServant(owner, entry.getValue());
-                    if (plugin.getConfig().getBoolean("debug", false)) {
-                        plugin.getLogger().info("已保存 " + owner.getName() + " 的英灵数据");
-                    }
+                    DebugUtils.debug("database.save_queued", owner.getName());
                 } catch (Exception e) {
                     plugin.getLogger().warning("保存 " + owner.getName() + " 的英灵数据时出错: " + e.getMessage());
                 }
@@ -142,36 +142,73 @@ public class ServantManager {
      * 从数据库加载所有在线玩家的英灵数据
      */
     public void loadAll() {
+        // 为所有在线玩家加载英灵数据，所有玩家的数据通过一次批量查询读取
+        loadServants(Bukkit.getOnlinePlayers());
+    }
+
+    /**
+     * 加载一批玩家的英灵数据
+     * 数据库查询在异步线程中完成并生成不可变的快照，英灵的创建和生成回到主线程执行
+     * @param players 玩家列表
+     */
+    public void loadServants(Collection<? extends Player> players) {
         if (plugin.getDatabaseManager() == null) {
             plugin.getLogger().warning("无法加载英灵数据：数据库管理器未初始化");
             return;
         }
+        if (players.isEmpty()) {
+            return;
+        }
+        
+        Map<UUID, String> owners = new HashMap<>();
+        for (Player player : players) {
+            owners.put(player.getUniqueId(), player.getName());
+        }
         
-        // 为所有在线玩家加载英灵数据
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            try {
-                Servant servant = plugin.getDatabaseManager().loadServant(player);
-                if (servant != null) {
-                    // 移除现有的英灵（如果有）
-                    if (hasServant(player)) {
-                        removeServant(player);
+        plugin.getAsyncTaskManager().runAsync(() -> plugin.getDatabaseManager().loadSnapshots(owners))
+            .whenComplete((snapshots, error) -> {
+                if (error != null) {
+                    plugin.getLogger().warning("加载英灵数据时出错: " + error.getMessage());
+                    return;
+                }
+                for (Map.Entry<UUID, ServantSnapshot> entry : snapshots.entrySet()) {
+                    Player player = Bukkit.getPlayer(entry.getKey());
+                    // 读取期间已经退出的玩家不再生成英灵
+                    if (player == null || !player.isOnline()) {
+                        continue;
                     }
-                    
-                    // 直接使用从数据库加载的英灵
-                    activeServants.put(player.getUniqueId(), servant);
-                    ownerToServant.put(player.getUniqueId(), servant.getUuid());
-                    
-                    // 重新生成英灵的全息图和其他视觉元素
-                    servant.spawn();
-                    
-                    if (plugin.getConfig().getBoolean("debug", false)) {
-                        plugin.getLogger().info("已加载 " + player.getName() + " 的英灵数据");
+                    try {
+                        spawnLoadedServant(player, entry.getValue());
+                    } catch (Exception e) {
+                        plugin.getLogger().warning("加载 " + player.getName() + " 的英灵数据时出错: " + e.getMessage());
+                        DebugUtils.logException("debug.servantdata.load.error", e, player.getName());
                     }
                 }
-            } catch (Exception e) {
-                plugin.getLogger().warning("加载 " + player.getName() + " 的英灵数据时出错: " + e.getMessage());
-                DebugUtils.logException("debug.servantdata.load.error", e, player.getName());
-            }
+            });
+    }
+
+    /**
+     * 在主线程根据快照创建并生成英灵
+     */
+    private void spawnLoadedServant(Player player, ServantSnapshot snapshot) {
+        Servant servant = plugin.getDatabaseManager().createServant(player, snapshot);
+        if (servant == null) {
+            return;
+        }
+        
+        // 移除现有的英灵（如果有）
+        if (hasServant(player)) {
+            removeServant(player);
+        }
+        
+        // 直接使用加载的英灵，而不是创建新实例
+        addServant(player, servant);
+        
+        // 构造英灵时已经生成，这里只更新位置，再次生成会留下无法销毁的玩家实体
+        if (servant.getLocation() != null) {
+            servant.teleport(servant.getLocation());
         }
+        
+        DebugUtils.debug("debug.servantdata.load.success", player.getName());
     }
 } 
\ No newline at end of file
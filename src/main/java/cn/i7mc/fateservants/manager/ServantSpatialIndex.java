@@ -0,0 +1,142 @@
+package cn.i7mc.fateservants.manager;
+
+import cn.i7mc.fateservants.model.Servant;
+import cn.i7mc.fateservants.utils.ChunkGrid;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 战斗中英灵的空间索引
+ * 按世界和区块记录处于战斗模式的英灵，在英灵移动和切换行为模式时增量维护，
+ * 供怪物索敌事件按区块快速查找附近的英灵
+ * 非线程安全，只应在主线程使用
+ */
+public class ServantSpatialIndex {
+    private final Map<World, ChunkGrid<Servant>> grids = new HashMap<>();
+    private final Map<Servant, Cell> cells = new IdentityHashMap<>();
+
+    /**
+     * 英灵当前所在的索引区块
+     */
+    private static final class Cell {
+        private World world;
+        private int chunkX;
+        private int chunkZ;
+    }
+
+    /**
+     * 根据英灵当前的位置和行为模式更新索引
+     * 只有战斗模式的英灵会被索引，区块未变化时不做任何操作
+     * @param servant 英灵
+     */
+    public void update(Servant servant) {
+        Location location = servant.getLocation();
+        if (!servant.isAttacking() || location == null || location.getWorld() == null) {
+            remove(servant);
+            return;
+        }
+
+        World world = location.getWorld();
+        int chunkX = location.getBlockX() >> 4;
+        int chunkZ = location.getBlockZ() >> 4;
+
+        Cell cell = cells.get(servant);
+        if (cell != null) {
+            if (cell.world == world && cell.chunkX == chunkX && cell.chunkZ == chunkZ) {
+                return;
+            }
+            ChunkGrid<Servant> oldGrid = grids.get(cell.world);
+            if (oldGrid != null) {
+                oldGrid.remove(cell.chunkX, cell.chunkZ, servant);
+            }
+        } else {
+            cell = new Cell();
+            cells.put(servant, cell);
+        }
+
+        cell.world = world;
+        cell.chunkX = chunkX;
+        cell.chunkZ = chunkZ;
+        ChunkGrid<Servant> grid = grids.get(world);
+        if (grid == null) {
+            grid = new ChunkGrid<>();
+            grids.put(world, grid);
+        }
+        grid.add(chunkX, chunkZ, servant);
+    }
+
+    /**
+     * 从索引中移除英灵
+     * @param servant 英灵
+     */
+    public void remove(Servant servant) {
+        Cell cell = cells.remove(servant);
+        if (cell == null) {
+            return;
+        }
+        ChunkGrid<Servant> grid = grids.get(cell.world);
+        if (grid != null) {
+            grid.remove(cell.chunkX, cell.chunkZ, servant);
+        }
+    }
+
+    /**
+     * 移除世界的索引
+     * @param world 世界
+     */
+    public void removeWorld(World world) {
+        grids.remove(world);
+        cells.values().removeIf(cell -> cell.world == world);
+    }
+
+    /**
+     * 查找指定位置范围内的战斗中英灵
+     * @param center 中心位置
+     * @param range 范围
+     * @param result 用于接收结果的列表，调用前需自行清空
+     */
+    public void queryWithin(Location center, double range, List<Servant> result) {
+        ChunkGrid<Servant> grid = grids.get(center.getWorld());
+        if (grid == null) {
+            return;
+        }
+
+        double x = center.getX();
+        double y = center.getY();
+        double z = center.getZ();
+        double rangeSquared = range * range;
+        int minChunkX = (int) Math.floor(x - range) >> 4;
+        int maxChunkX = (int) Math.floor(x + range) >> 4;
+        int minChunkZ = (int) Math.floor(z - range) >> 4;
+        int maxChunkZ = (int) Math.floor(z + range) >> 4;
+
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                List<Servant> bucket = grid.get(chunkX, chunkZ);
+                for (int i = 0, size = bucket.size(); i < size; i++) {
+                    Servant servant = bucket.get(i);
+                    Location location = servant.getLocation();
+                    double dx = location.getX() - x;
+                    double dy = location.getY() - y;
+                    double dz = location.getZ() - z;
+                    if (dx * dx + dy * dy + dz * dz <= rangeSquared) {
+                        result.add(servant);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取当前索引的英灵数量
+     * @return 英灵数量
+     */
+    public int size() {
+        return cells.size();
+    }
+}
@@ -0,0 +1,503 @@
+package cn.i7mc.fateservants.manager;
+
+import cn.i7mc.fateservants.FateServants;
+import cn.i7mc.fateservants.ai.ServantBehavior;
+import cn.i7mc.fateservants.ai.ServantLodLevel;
+import cn.i7mc.fateservants.attributes.ModifierExpiryWheel;
+import cn.i7mc.fateservants.model.Servant;
+import cn.i7mc.fateservants.utils.DebugUtils;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * 英灵统一调度器
+ * 使用单个Bukkit定时任务驱动所有英灵的AI、跟随和主动技能检测，
+ * 按相位把英灵的周期任务错开到不同tick，并限制每tick的耗时
+ * 单个英灵出错时只跳过该英灵本阶段的任务，不影响其他英灵和本tick后续阶段
+ */
+public class ServantTickScheduler {
+    private final FateServants plugin;
+    private final Map<Servant, TickEntry> entries = new LinkedHashMap<>();
+    private final List<TickEntry> working = new ArrayList<>();
+    private final List<TickEntry> lowPriority = new ArrayList<>();
+    private BukkitTask task;
+    private long currentTick = 0;
+    private int nextPhase = 0;
+    private int aiCursor = 0;
+
+    // 调度配置
+    private long tickBudgetNanos;
+    private long aiBudgetNanos;
+    private int aiMaxStaleness;
+    private int followInterval;
+    private int skillCheckInterval;
+    private boolean lodEnabled;
+    private int lodEvaluateInterval;
+    private double lodObserverRangeSquared;
+    private int fullInterval;
+    private int reducedInterval;
+    private int frozenInterval;
+    private int viewerUpdateInterval;
+
+    // 统计信息
+    private long lastTickNanos = 0;
+    private int deferredLastTick = 0;
+    private int aiSkippedLastTick = 0;
+    private int aiMaxStalenessLastTick = 0;
+
+    // 超出最大跟随距离传送后，恢复原行为模式前保持跟随的tick数
+    private static final int FOLLOW_RESTORE_DELAY = 5;
+    // 同一英灵两次输出错误日志的最小间隔tick数
+    private static final int ERROR_LOG_INTERVAL = 200;
+
+    private static final Comparator<TickEntry> OVERDUE_FIRST =
+        Comparator.comparingLong(entry -> Math.min(entry.nextFollowTick, entry.nextSkillTick));
+
+    /**
+     * 调度条目
+     * 记录单个英灵的相位和下一次周期任务的执行tick
+     */
+    private static final class TickEntry {
+        private final Servant servant;
+        private final int phase;
+        private long nextFollowTick;
+        private long nextSkillTick;
+        private long lastAiTick;
+        private long nextLodTick;
+        private long nextViewerTick;
+        // 传送后待恢复的行为模式，为null时没有待恢复的行为
+        private ServantBehavior restoreBehavior;
+        private long restoreBehaviorTick;
+        private long nextErrorLogTick;
+        private int suppressedErrors;
+        private boolean removed;
+
+        private TickEntry(Servant servant, int phase) {
+            this.servant = servant;
+            this.phase = phase;
+        }
+    }
+
+    public ServantTickScheduler(FateServants plugin) {
+        this.plugin = plugin;
+        reload();
+    }
+
+    /**
+     * 重新读取调度配置
+     */
+    public void reload() {
+        FileConfiguration config = plugin.getConfig();
+        this.tickBudgetNanos = (long) (config.getDouble("performance.tick_budget_ms", 2.0) * 1_000_000L);
+        this.aiBudgetNanos = (long) (config.getDouble("performance.ai_budget_ms", 1.5) * 1_000_000L);
+        this.aiMaxStaleness = Math.max(1, config.getInt("performance.ai_max_staleness_ticks", 10));
+        this.followInterval = Math.max(1, config.getInt("performance.follow_interval", 5));
+        this.skillCheckInterval = Math.max(1, config.getInt("performance.skill_check_interval", 20));
+
+        this.lodEnabled = config.getBoolean("performance.ai_lod.enabled", true);
+        this.lodEvaluateInterval = Math.max(1, config.getInt("performance.ai_lod.evaluate_interval", 20));
+        double observerRange = config.getDouble("performance.ai_lod.observer_range", 32);
+        this.lodObserverRangeSquared = observerRange * observerRange;
+        this.fullInterval = Math.max(1, config.getInt("performance.ai_lod.full_interval", 1));
+        this.reducedInterval = Math.max(1, config.getInt("performance.ai_lod.reduced_interval", 4));
+        this.frozenInterval = config.getInt("performance.ai_lod.frozen_interval", 0);
+
+        this.viewerUpdateInterval = Math.max(1, config.getInt("performance.viewer_update_interval", 10));
+
+        if (!lodEnabled) {
+            for (TickEntry entry : entries.values()) {
+                entry.servant.getAIController().setLodLevel(ServantLodLevel.FULL);
+            }
+        }
+    }
+
+    public void start() {
+        if (task != null) return;
+
+        task = new BukkitRunnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }.runTaskTimer(plugin, 1L, 1L);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * 注册英灵，重复注册同一个英灵不会产生新的条目
+     * @param servant 英灵
+     */
+    public void register(Servant servant) {
+        if (servant == null || entries.containsKey(servant)) {
+            return;
+        }
+
+        TickEntry entry = new TickEntry(servant, nextPhase++);
+        // 与原先的跟随任务一致，注册后延迟10tick再开始跟随，之后按相位错开
+        entry.nextFollowTick = currentTick + 10 + (entry.phase % followInterval);
+        entry.nextSkillTick = currentTick + skillCheckInterval + (entry.phase % skillCheckInterval);
+        entry.lastAiTick = currentTick;
+        entry.nextLodTick = currentTick + 1 + (entry.phase % lodEvaluateInterval);
+        entry.nextViewerTick = currentTick + 1 + (entry.phase % viewerUpdateInterval);
+        entries.put(servant, entry);
+
+        DebugUtils.debug("scheduler.register", () -> new Object[]{servant.getName(), entry.phase, entries.size()});
+    }
+
+    /**
+     * 注销英灵
+     * @param servant 英灵
+     */
+    public void unregister(Servant servant) {
+        TickEntry entry = entries.remove(servant);
+        if (entry != null) {
+            entry.removed = true;
+            DebugUtils.debug("scheduler.unregister", () -> new Object[]{servant.getName(), entries.size()});
+        }
+    }
+
+    private void tick() {
+        currentTick++;
+        long start = System.nanoTime();
+        long deadline = start + tickBudgetNanos;
+        plugin.getNearbyEntityCache().beginTick();
+        // 移除本tick到期的临时属性修饰符
+        ModifierExpiryWheel.advance();
+        // 应用上一tick批量计算的攻击结果
+        plugin.getCombatResolver().applyResults();
+
+        // 复制一份快照，英灵在更新过程中可能被移除
+        working.clear();
+        working.addAll(entries.values());
+
+        if (!working.isEmpty()) {
+            plugin.getMonsterIndex().tick(currentTick);
+        }
+
+        updateAIWithinBudget(start);
+        restoreBehaviors();
+        updateViewers();
+
+        // 战斗中的英灵优先执行周期任务，不受时间预算限制
+        lowPriority.clear();
+        for (TickEntry entry : working) {
+            if (entry.removed || !isDue(entry)) {
+                continue;
+            }
+            if (isHighPriority(entry.servant)) {
+                runPeriodic(entry);
+            } else {
+                lowPriority.add(entry);
+            }
+        }
+
+        // 低优先级英灵按逾期程度排序，上一tick被顺延的英灵排在前面
+        Collections.sort(lowPriority, OVERDUE_FIRST);
+        int deferred = 0;
+        for (TickEntry entry : lowPriority) {
+            if (entry.removed) {
+                continue;
+            }
+            if (System.nanoTime() > deadline) {
+                deferred++;
+                continue;
+            }
+            runPeriodic(entry);
+        }
+
+        // 所有英灵逻辑执行完毕后合并发送本tick的全息图变化
+        flushHolograms();
+
+        // 把本tick记录的攻击交给战斗线程池计算
+        plugin.getCombatResolver().dispatch();
+
+        lastTickNanos = System.nanoTime() - start;
+        deferredLastTick = deferred;
+        if (deferred > 0) {
+            DebugUtils.debug("scheduler.deferred", () -> new Object[]{deferredLastTick, lastTickNanos / 1000});
+        }
+    }
+
+    /**
+     * 在AI时间预算内轮转更新英灵AI
+     * 从上一tick中断的位置继续，超出预算后剩余英灵顺延到下一tick，
+     * 但顺延超过最大陈旧tick数的英灵仍会强制更新，避免饿死
+     * @param start 本tick开始时间
+     */
+    private void updateAIWithinBudget(long start) {
+        int size = working.size();
+        if (size == 0) {
+            aiCursor = 0;
+            aiSkippedLastTick = 0;
+            aiMaxStalenessLastTick = 0;
+            return;
+        }
+
+        long aiDeadline = start + aiBudgetNanos;
+        int firstSkipped = -1;
+        int skipped = 0;
+        int maxStaleness = 0;
+        if (aiCursor >= size) {
+            aiCursor = 0;
+        }
+
+        for (int n = 0; n < size; n++) {
+            int index = (aiCursor + n) % size;
+            TickEntry entry = working.get(index);
+            if (entry.removed) {
+                continue;
+            }
+
+            int staleness = (int) (currentTick - entry.lastAiTick);
+            if (!isAiDue(entry, staleness)) {
+                continue;
+            }
+            if (staleness < aiMaxStaleness && System.nanoTime() > aiDeadline) {
+                if (firstSkipped < 0) {
+                    firstSkipped = index;
+                }
+                skipped++;
+                continue;
+            }
+
+            try {
+                entry.servant.updateAI(staleness);
+            } catch (RuntimeException e) {
+                handleError(entry, "AI", e);
+            }
+            entry.lastAiTick = currentTick;
+            maxStaleness = Math.max(maxStaleness, staleness);
+        }
+
+        // 下一tick从第一个被跳过的英灵开始
+        aiCursor = firstSkipped >= 0 ? firstSkipped : 0;
+        aiSkippedLastTick = skipped;
+        aiMaxStalenessLastTick = maxStaleness;
+        if (skipped > 0) {
+            int skippedCount = skipped;
+            int maxStalenessTicks = maxStaleness;
+            DebugUtils.debug("scheduler.ai_skipped", () -> new Object[]{skippedCount, size, maxStalenessTicks});
+        }
+    }
+
+    /**
+     * 按AI细节层级判断本tick是否需要更新AI，层级按评估间隔错峰重新计算
+     * @param entry 调度条目
+     * @param staleness 距离上次AI更新的tick数
+     * @return 是否需要更新
+     */
+    private boolean isAiDue(TickEntry entry, int staleness) {
+        if (!lodEnabled) {
+            return true;
+        }
+
+        ServantLodLevel lodLevel;
+        if (currentTick >= entry.nextLodTick) {
+            ServantLodLevel previous = entry.servant.getAIController().getLodLevel();
+            lodLevel = entry.servant.getAIController().evaluateLodLevel(lodObserverRangeSquared);
+            entry.nextLodTick = currentTick + lodEvaluateInterval;
+            if (lodLevel != previous) {
+                ServantLodLevel changed = lodLevel;
+                DebugUtils.debug("scheduler.lod_changed", () -> new Object[]{entry.servant.getName(),
+                    previous.getDisplayName(), changed.getDisplayName()});
+            }
+        } else {
+            lodLevel = entry.servant.getAIController().getLodLevel();
+        }
+
+        switch (lodLevel) {
+            case REDUCED:
+                return staleness >= reducedInterval;
+            case FROZEN:
+                // 冻结层级不更新AI，但陈旧tick数继续累积，解冻后一次性补偿冷却
+                return frozenInterval > 0 && staleness >= frozenInterval;
+            default:
+                return staleness >= fullInterval;
+        }
+    }
+
+    /**
+     * 恢复传送时临时切换为跟随的行为模式
+     */
+    private void restoreBehaviors() {
+        for (TickEntry entry : working) {
+            if (entry.removed || entry.restoreBehavior == null || currentTick < entry.restoreBehaviorTick) {
+                continue;
+            }
+            ServantBehavior behavior = entry.restoreBehavior;
+            entry.restoreBehavior = null;
+            try {
+                entry.servant.getAIController().setBehavior(behavior);
+            } catch (RuntimeException e) {
+                handleError(entry, "行为恢复", e);
+            }
+        }
+    }
+
+    /**
+     * 按间隔错峰重新计算英灵的跟踪玩家，不受时间预算限制，保证玩家进出范围时及时生成和销毁
+     */
+    private void updateViewers() {
+        double visibilityRangeSquared = plugin.getSettings().getVisibilityRangeSquared();
+        for (TickEntry entry : working) {
+            if (entry.removed || currentTick < entry.nextViewerTick) {
+                continue;
+            }
+            entry.nextViewerTick = currentTick + viewerUpdateInterval;
+            try {
+                entry.servant.updateViewers(visibilityRangeSquared);
+            } catch (RuntimeException e) {
+                handleError(entry, "跟踪玩家", e);
+            }
+        }
+    }
+
+    /**
+     * 发送所有英灵在本tick内累积的全息图变化
+     */
+    private void flushHolograms() {
+        for (TickEntry entry : working) {
+            if (entry.removed) {
+                continue;
+            }
+            try {
+                entry.servant.flushHologramChanges();
+            } catch (RuntimeException e) {
+                handleError(entry, "全息图", e);
+            }
+        }
+    }
+
+    private boolean isDue(TickEntry entry) {
+        return currentTick >= entry.nextFollowTick || currentTick >= entry.nextSkillTick;
+    }
+
+    private boolean isHighPriority(Servant servant) {
+        return servant.isAttacking() || servant.isDefending();
+    }
+
+    private void runPeriodic(TickEntry entry) {
+        if (currentTick >= entry.nextFollowTick) {
+            entry.nextFollowTick = currentTick + followInterval;
+            try {
+                ServantBehavior previous = entry.servant.tickFollow();
+                // 连续传送时保留最初的行为模式，只顺延恢复时间
+                if (previous != null) {
+                    if (entry.restoreBehavior == null) {
+                        entry.restoreBehavior = previous;
+                    }
+                    entry.restoreBehaviorTick = currentTick + FOLLOW_RESTORE_DELAY;
+                }
+                if (plugin.getSettings().isHeadRotation()) {
+                    entry.servant.tickHeadRotation();
+                }
+            } catch (RuntimeException e) {
+                handleError(entry, "跟随", e);
+            }
+        }
+        if (currentTick >= entry.nextSkillTick) {
+            entry.nextSkillTick = currentTick + skillCheckInterval;
+            try {
+                checkActiveSkills(entry.servant);
+            } catch (RuntimeException e) {
+                handleError(entry, "主动技能", e);
+            }
+        }
+    }
+
+    /**
+     * 记录英灵在某个阶段抛出的异常，同一英灵每ERROR_LOG_INTERVAL个tick最多输出一次
+     * @param entry 调度条目
+     * @param phase 出错的阶段
+     * @param e 异常
+     */
+    private void handleError(TickEntry entry, String phase, RuntimeException e) {
+        if (currentTick < entry.nextErrorLogTick) {
+            entry.suppressedErrors++;
+            return;
+        }
+        entry.nextErrorLogTick = currentTick + ERROR_LOG_INTERVAL;
+        String suppressed = entry.suppressedErrors > 0 ? "，期间另有" + entry.suppressedErrors + "次错误未输出" : "";
+        entry.suppressedErrors = 0;
+        plugin.getLogger().log(Level.WARNING,
+            "英灵 " + entry.servant.getName() + " 在" + phase + "阶段出错，已跳过" + suppressed, e);
+    }
+
+    /**
+     * 主动技能检测，只在战斗或防御状态下检测
+     * @param servant 英灵
+     */
+    private void checkActiveSkills(Servant servant) {
+        if (!isHighPriority(servant)) {
+            return;
+        }
+        LivingEntity target = servant.getAIController().getCurrentTarget();
+        if (target != null && !target.isDead() && target.isValid()) {
+            servant.checkAndTriggerActiveSkills(target);
+        }
+    }
+
+    /**
+     * 获取当前调度的英灵数量
+     * @return 英灵数量
+     */
+    public int getServantCount() {
+        return entries.size();
+    }
+
+    /**
+     * 获取上一tick调度耗时
+     * @return 耗时（纳秒）
+     */
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    /**
+     * 获取上一tick因超出时间预算而顺延的英灵数量
+     * @return 顺延数量
+     */
+    public int getDeferredLastTick() {
+        return deferredLastTick;
+    }
+
+    /**
+     * 获取上一tick因超出AI时间预算而顺延AI更新的英灵数量
+     * @return 顺延数量
+     */
+    public int getAiSkippedLastTick() {
+        return aiSkippedLastTick;
+    }
+
+    /**
+     * 获取上一tick中被更新英灵的最大陈旧tick数
+     * @return 最大陈旧tick数
+     */
+    public int getAiMaxStalenessLastTick() {
+        return aiMaxStalenessLastTick;
+    }
+
+    /**
+     * 获取调度器当前tick计数
+     * @return tick计数
+     */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+}
@@ -0,0 +1,50 @@
+package cn.i7mc.fateservants.model;
+
+/**
+ * 全息图字段枚举
+ * 每个字段对应一组占位符（见ServantPlaceholder），全息图行只在其依赖的字段变化时才重新渲染
+ */
+public enum HologramField {
+    /**
+     * 职阶名称
+     */
+    CLASS_NAME,
+
+    /**
+     * 等级
+     */
+    LEVEL,
+
+    /**
+     * 品质
+     */
+    QUALITY,
+
+    /**
+     * 主人名称
+     */
+    OWNER,
+
+    /**
+     * 生命值相关
+     */
+    HEALTH,
+
+    /**
+     * 魔法值相关
+     */
+    MANA;
+
+    /**
+     * 所有字段的掩码
+     */
+    public static final int ALL = (1 << values().length) - 1;
+
+    /**
+     * 获取字段的位掩码
+     * @return 位掩码
+     */
+    public int mask() {
+        return 1 << ordinal();
+    }
+}
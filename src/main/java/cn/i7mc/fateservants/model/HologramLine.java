@@ -0,0 +1,61 @@
+package cn.i7mc.fateservants.model;
+
+import cn.i7mc.fateservants.utils.PlaceholderTemplate;
+
+/**
+ * 全息图行
+ * 记录一行文本的编译模板、依赖的字段以及最后一次发送给客户端的文本
+ */
+public class HologramLine {
+    private final String id;
+    private final PlaceholderTemplate<ServantPlaceholder> template;
+    private final int dependencies;
+    private String lastSent;
+
+    /**
+     * 创建全息图行
+     * @param id 全息图ID（msg1~msg4，玩家实体名称为player）
+     * @param template 编译后的格式模板
+     * @param lastSent 已经发送给客户端的文本
+     */
+    public HologramLine(String id, PlaceholderTemplate<ServantPlaceholder> template, String lastSent) {
+        this.id = id;
+        this.template = template;
+        this.dependencies = ServantPlaceholder.dependenciesOf(template);
+        this.lastSent = lastSent;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public PlaceholderTemplate<ServantPlaceholder> getTemplate() {
+        return template;
+    }
+
+    public String getLastSent() {
+        return lastSent;
+    }
+
+    /**
+     * 检查该行是否依赖任一已变化的字段
+     * @param dirtyFields 已变化字段的位掩码
+     * @return 是否依赖
+     */
+    public boolean dependsOn(int dirtyFields) {
+        return (dependencies & dirtyFields) != 0;
+    }
+
+    /**
+     * 记录新渲染的文本
+     * @param text 新文本
+     * @return 文本与上次发送的不同时返回true
+     */
+    public boolean update(String text) {
+        if (text.equals(lastSent)) {
+            return false;
+        }
+        lastSent = text;
+        return true;
+    }
+}
@@ -3,11 +3,18 @@ package cn.i7mc.fateservants.model;
 import cn.i7mc.fateservants.FateServants;
 import cn.i7mc.fateservants.attributes.AttributeContainer;
 import cn.i7mc.fateservants.attributes.ServantQuality;
-import cn.i7mc.fateservants.attributes.provider.AttributePlusProvider;
+import cn.i7mc.fateservants.attributes.damage.DamagePipeline;
+import cn.i7mc.fateservants.attributes.damage.NativeDamagePipeline;
+import cn.i7mc.fateservants.attributes.provider.ServantAttributeSource;
 import cn.i7mc.fateservants.ai.ServantAIController;
 import cn.i7mc.fateservants.ai.ServantBehavior;
+import cn.i7mc.fateservants.config.ExperienceCurve;
+import cn.i7mc.fateservants.config.LevelFormulas;
+import cn.i7mc.fateservants.config.RuntimeSettings;
 import cn.i7mc.fateservants.manager.SkinManager;
 import cn.i7mc.fateservants.model.handlers.*;
+import cn.i7mc.fateservants.packets.MovementEncoder;
+import cn.i7mc.fateservants.packets.PacketQueue;
 
 import org.serverct.ersha.api.AttributeAPI;
 import org.serverct.ersha.attribute.data.AttributeData;
@@ -18,7 +25,6 @@ import com.comphenix.protocol.ProtocolLibrary;
 import com.comphenix.protocol.events.PacketContainer;
 import com.comphenix.protocol.wrappers.*;
 import org.bukkit.Location;
-import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Monster;
 import org.bukkit.entity.Player;
 import org.bukkit.util.Vector;
@@ -27,12 +33,14 @@ import cn.i7mc.fateservants.skills.Skill;
 import java.util.List;
 import org.bukkit.entity.LivingEntity;
 import cn.i7mc.fateservants.utils.DebugUtils;
+import cn.i7mc.fateservants.utils.PlaceholderTemplate;
 
 public class Servant {
     private UUID uuid;
     private final Player owner;
     private final ServantClass servantClass;
     private final AttributeContainer attributes;
+    private final ServantAttributeSource attributeSource;  // 攻击时加到主人身上的属性源缓存
     private Map<String, Double> attributeGrowths;  // 移除final关键字
     private ServantQuality quality;
     private double level = 1;  // 初始等级为1
@@ -43,6 +51,18 @@ public class Servant {
     private Location location;
     private Location lastOwnerLocation;  // 记录主人上一次的位置
     private final Map<String, Integer> hologramEntityIds;
+    // 能看到英灵的玩家，类似原版EntityTracker的跟踪列表，所有数据包只发给这些玩家
+    private final Set<Player> viewers = new HashSet<>();
+    // 各全息图相对英灵的高度，移动时按此计算全息图位置
+    private final Map<String, Double> hologramHeights = new HashMap<>();
+    // 移动数据包编码器，小位移发送相对移动数据包
+    private final MovementEncoder movementEncoder = new MovementEncoder();
+    // 全息图是否作为乘客叠放在玩家实体上，由客户端随英灵一起移动
+    private boolean passengerHolograms = false;
+    // 全息图行模型（包括玩家实体的显示名称），记录每行依赖的字段和最后发送的文本
+    private final Map<String, HologramLine> hologramLines = new LinkedHashMap<>();
+    // 自上次发送后发生变化的全息图字段
+    private int dirtyHologramFields = 0;
     private final ServantAIController aiController;  // 添加AI控制器
     private Monster target = null;  // 修改为 Monster 类型
     private static final double HEAD_TURN_SPEED = 2.0; // 头部转动速度
@@ -72,6 +92,7 @@ public class Servant {
         this.owner = owner;
         this.servantClass = servantClass;
         this.attributes = new AttributeContainer(servantClass.getAttributes());
+        this.attributeSource = new ServantAttributeSource(attributes);
         this.attributeGrowths = new HashMap<>();
         this.hologramEntityIds = new HashMap<>();
         this.aiController = new ServantAIController(this);  // 初始化AI控制器
@@ -100,7 +121,7 @@ public class Servant {
         this.lastOwnerLocation = owner.getLocation().clone();
         
         // 设置英灵初始位置为主人背后指定距离
-        double followDistance = FateServants.getInstance().getConfig().getDouble("servants.follow_distance", 3.0);
+        double followDistance = FateServants.getInstance().getSettings().getFollowDistance();
         Location ownerLoc = owner.getLocation().clone();
         Vector direction = ownerLoc.getDirection().normalize();
         this.location = ownerLoc.subtract(direction.multiply(followDistance));
@@ -142,100 +163,99 @@ public class Servant {
         this.aiHandler = new ServantAIHandler(this, combatHandler, movementHandler);
     }
 
-    private void startFollowTask() {
-        FateServants.getInstance().getServer().getScheduler().runTaskTimer(
-            FateServants.getInstance(),
-            () -> {
-                if (owner == null || !owner.isOnline()) return;
-                
-                // 添加调试日志，确认跟随任务正在执行
-                DebugUtils.debug("servant.follow_task", 
-                    owner != null ? owner.getName() : "null",
-                    servantClass != null ? servantClass.getId() : "null");
-                
-                Location currentOwnerLoc = owner.getLocation();
-                double followDistance = FateServants.getInstance().getConfig().getDouble("servants.follow_distance", 3.0);
-                
-                // 检查主人位置是否发生显著变化（添加阈值）
-                if (lastOwnerLocation != null && 
-                    Math.abs(lastOwnerLocation.getX() - currentOwnerLoc.getX()) < 0.1 &&
-                    Math.abs(lastOwnerLocation.getY() - currentOwnerLoc.getY()) < 0.1 &&
-                    Math.abs(lastOwnerLocation.getZ() - currentOwnerLoc.getZ()) < 0.1) {
-                    // 位置变化很小，跳过更新
-                    DebugUtils.debug("servant.follow_skip", 
-                        owner.getName(), 
-                        String.format("%.2f,%.2f,%.2f", currentOwnerLoc.getX(), currentOwnerLoc.getY(), currentOwnerLoc.getZ()));
-                    return;
-                }
-                
-                // 添加调试日志，记录位置更新
-                DebugUtils.debug("servant.follow_update", 
-                    owner.getName(), 
-                    String.format("%.2f,%.2f,%.2f -> %.2f,%.2f,%.2f", 
-                        lastOwnerLocation != null ? lastOwnerLocation.getX() : 0, 
-                        lastOwnerLocation != null ? lastOwnerLocation.getY() : 0, 
-                        lastOwnerLocation != null ? lastOwnerLocation.getZ() : 0,
-                        currentOwnerLoc.getX(), 
-                        currentOwnerLoc.getY(), 
-                        currentOwnerLoc.getZ()));
-                
-                // 更新上一次位置记录
-                lastOwnerLocation = currentOwnerLoc.clone();
-                
-                // 检查是否超出最大跟随距离
-                double maxFollowDistance = FateServants.getInstance().getConfig().getDouble("servants.max_follow_distance", 16);
-                if (currentOwnerLoc.distance(location) > maxFollowDistance) {
-                    // 记录当前行为模式
-                    ServantBehavior previousBehavior = aiController.getCurrentBehavior();
-                    
-                    // 临时切换到跟随模式并传送
-                    aiController.setBehavior(ServantBehavior.FOLLOW);
-                    Location targetLoc = currentOwnerLoc.clone();
-                    teleport(targetLoc);
-                    
-                    // 5tick后恢复之前的模式
-                    FateServants.getInstance().getServer().getScheduler().runTaskLater(
-                        FateServants.getInstance(),
-                        () -> aiController.setBehavior(previousBehavior),
-                        5L
-                    );
-                    return;
-                }
-                
-                // 计算主人背后指定距离的目标位置
-                Vector direction = currentOwnerLoc.getDirection().normalize();
-                Location targetLoc = currentOwnerLoc.clone().subtract(direction.multiply(followDistance));
-                
-                // 获取目标位置的地面高度
-                targetLoc.setY(targetLoc.getWorld().getHighestBlockYAt(targetLoc));
-                
-                // 计算英灵到目标位置的距离
-                double distance = location.distance(targetLoc);
-                
-                if (distance > 0.5) {
-                    // 如果距离大于0.5格，使用自然移动
-                    Vector moveDirection = targetLoc.toVector().subtract(location.toVector()).normalize();
-                    Location newLoc = location.clone().add(moveDirection.multiply(getMovementSpeed()));
-                    
-                    // 获取新位置的地面高度
-                    newLoc.setY(newLoc.getWorld().getHighestBlockYAt(newLoc));
-                    
-                    teleport(newLoc);
-                }
-            },
-            10L, // 延迟10tick开始执行
-            5L   // 每5tick执行一次
-        );
+    /**
+     * 执行一次跟随步进
+     * 由ServantTickScheduler按跟随间隔调度
+     * @return 超出最大跟随距离而传送时返回传送前的行为模式，由调度器稍后恢复；否则返回null
+     */
+    public ServantBehavior tickFollow() {
+        if (owner == null || !owner.isOnline()) return null;
         
-        // 添加日志记录跟随任务启动
-        DebugUtils.debug("servant.follow_task_started", 
-            owner != null ? owner.getName() : "null", 
-            servantClass != null ? servantClass.getId() : "null");
+        // 添加调试日志，确认跟随任务正在执行
+        DebugUtils.trace("servant.follow_task", () -> new Object[]{
+            owner != null ? owner.getName() : "null",
+            servantClass != null ? servantClass.getId() : "null"});
+        
+        Location currentOwnerLoc = owner.getLocation();
+        RuntimeSettings settings = FateServants.getInstance().getSettings();
+        double followDistance = settings.getFollowDistance();
+        
+        // 检查主人位置是否发生显著变化（添加阈值）
+        if (lastOwnerLocation != null && 
+            Math.abs(lastOwnerLocation.getX() - currentOwnerLoc.getX()) < 0.1 &&
+            Math.abs(lastOwnerLocation.getY() - currentOwnerLoc.getY()) < 0.1 &&
+            Math.abs(lastOwnerLocation.getZ() - currentOwnerLoc.getZ()) < 0.1) {
+            // 位置变化很小，跳过更新
+            DebugUtils.trace("servant.follow_skip", () -> new Object[]{
+                owner.getName(), 
+                String.format("%.2f,%.2f,%.2f", currentOwnerLoc.getX(), currentOwnerLoc.getY(), currentOwnerLoc.getZ())});
+            return null;
+        }
+        
+        // 添加调试日志，记录位置更新
+        DebugUtils.trace("servant.follow_update", () -> new Object[]{
+            owner.getName(), 
+            String.format("%.2f,%.2f,%.2f -> %.2f,%.2f,%.2f", 
+                lastOwnerLocation != null ? lastOwnerLocation.getX() : 0, 
+                lastOwnerLocation != null ? lastOwnerLocation.getY() : 0, 
+                lastOwnerLocation != null ? lastOwnerLocation.getZ() : 0,
+                currentOwnerLoc.getX(), 
+                currentOwnerLoc.getY(), 
+                currentOwnerLoc.getZ())});
+        
+        // 更新上一次位置记录
+        lastOwnerLocation = currentOwnerLoc.clone();
+        
+        // 检查是否超出最大跟随距离
+        if (currentOwnerLoc.distanceSquared(location) > settings.getMaxFollowDistanceSquared()) {
+            // 记录当前行为模式
+            ServantBehavior previousBehavior = aiController.getCurrentBehavior();
+            
+            // 临时切换到跟随模式并传送
+            aiController.setBehavior(ServantBehavior.FOLLOW);
+            Location targetLoc = currentOwnerLoc.clone();
+            teleport(targetLoc);
+            
+            // 由调度器在5tick后恢复之前的模式
+            return previousBehavior;
+        }
+        
+        // 计算主人背后指定距离的目标位置
+        Vector direction = currentOwnerLoc.getDirection().normalize();
+        Location targetLoc = currentOwnerLoc.clone().subtract(direction.multiply(followDistance));
+        
+        // 获取目标位置的地面高度
+        targetLoc.setY(targetLoc.getWorld().getHighestBlockYAt(targetLoc));
+        
+        // 计算英灵到目标位置的距离
+        double distance = location.distance(targetLoc);
+        
+        if (distance > 0.5) {
+            // 如果距离大于0.5格，使用自然移动
+            Vector moveDirection = targetLoc.toVector().subtract(location.toVector()).normalize();
+            Location newLoc = location.clone().add(moveDirection.multiply(getMovementSpeed()));
+            
+            // 获取新位置的地面高度
+            newLoc.setY(newLoc.getWorld().getHighestBlockYAt(newLoc));
+            
+            teleport(newLoc);
+        }
+        return null;
+    }
+
+    /**
+     * 没有攻击目标时转头看向附近的生物
+     * 由ServantTickScheduler在启用servants.head_rotation时按跟随间隔调度
+     */
+    public void tickHeadRotation() {
+        if (location != null) {
+            updateHeadRotation(location);
+        }
     }
 
     private void updateHeadRotation(Location currentLoc) {
-        // 如果有目标,朝向目标
-        if (target != null) {
+        // 如果有目标,朝向目标；英灵实体尚未生成时跳过
+        if (target != null || !hologramEntityIds.containsKey("player")) {
             return;
         }
         
@@ -246,26 +266,22 @@ public class Servant {
         }
         lastHeadUpdateTime = currentTime;
         
-        // 寻找最近的实体
-        double closestDistance = Double.MAX_VALUE;
-        Location targetLocation = null;
+        // 寻找16格内最近的生物，同一区域的英灵共享本tick的扫描结果
+        double closestDistanceSquared = 16 * 16;
+        LivingEntity closestEntity = null;
         
-        // 获取附近16格范围内的所有实体
-        for (org.bukkit.entity.Entity entity : currentLoc.getWorld().getNearbyEntities(currentLoc, 16, 16, 16)) {
-            if (isHologramEntity(entity.getEntityId()) || entity.equals(owner)) {
+        for (LivingEntity entity : FateServants.getInstance().getNearbyEntityCache().getNearbyLivingEntities(currentLoc, 16)) {
+            if (entity.equals(owner) || isHologramEntity(entity.getEntityId())) {
                 continue;
             }
             
-            if (!(entity instanceof org.bukkit.entity.LivingEntity)) {
-                continue;
-            }
-            
-            double distance = entity.getLocation().distance(currentLoc);
-            if (distance < closestDistance) {
-                closestDistance = distance;
-                targetLocation = entity.getLocation();
+            double distanceSquared = entity.getLocation().distanceSquared(currentLoc);
+            if (distanceSquared < closestDistanceSquared) {
+                closestDistanceSquared = distanceSquared;
+                closestEntity = entity;
             }
         }
+        Location targetLocation = closestEntity != null ? closestEntity.getLocation() : null;
         
         if (targetLocation != null) {
             Vector direction = targetLocation.toVector().subtract(currentLoc.toVector());
@@ -320,34 +336,16 @@ public class Servant {
     }
 
     private void broadcastPacketToNearbyPlayers(PacketContainer packet) {
-        final int visibilityRange = FateServants.getInstance().getConfig().getInt("performance.servant_visibility_range", 32);
-        final int squaredRange = visibilityRange * visibilityRange;
-        
-        // 获取范围内的所有玩家，包括主人
-        location.getWorld().getPlayers().forEach(player -> {
-            if (player.getLocation().distanceSquared(location) <= squaredRange) {
-                try {
-                    // 添加延迟发送机制
-                    FateServants.getInstance().getServer().getScheduler().runTaskLater(
-                        FateServants.getInstance(),
-                        () -> {
-                            try {
-                                FateServants.getInstance().getProtocolManager().sendServerPacket(player, packet);
-                            } catch (Exception e) {
-                                FateServants.getInstance().getLogger().severe("发送数据包时发生错误: " + e.getMessage());
-                            }
-                        },
-                        1L
-                    );
-                } catch (Exception e) {
-                    FateServants.getInstance().getLogger().severe("发送数据包时发生错误: " + e.getMessage());
-                }
-            }
-        });
+        // 只发送给跟踪列表中的玩家，包括主人，数据包进入发送队列后在本tick末统一发出
+        PacketQueue packetQueue = FateServants.getInstance().getPacketQueue();
+        for (Player player : viewers) {
+            packetQueue.enqueue(player, packet);
+        }
     }
 
     public void spawn() {
-        FateServants.getInstance().getMessageConfig();
+        // 先确定初始的跟踪玩家，生成数据包只发送给他们
+        initViewers(FateServants.getInstance().getSettings().getVisibilityRangeSquared());
         
         // 创建玩家实体
         spawnPlayerEntity();
@@ -355,21 +353,13 @@ public class Servant {
         // 初始化全息图显示
         updateHolograms();
         
-        // 启动跟随任务和AI处理
-        startFollowTask();
-        
         // 确保AI控制器设置为跟随模式
         if (aiController != null) {
             aiController.setBehavior(ServantBehavior.FOLLOW);
         }
         
-        // 启动英灵AI处理任务
-        FateServants.getInstance().getServer().getScheduler().runTaskTimer(
-            FateServants.getInstance(),
-            this::updateAI,
-            20L, // 1秒后开始
-            5L   // 每5tick (0.25秒) 更新一次AI
-        );
+        // 交由统一调度器处理跟随、AI和技能检测
+        FateServants.getInstance().getTickScheduler().register(this);
         
         DebugUtils.debug("servant.spawn_complete", 
             owner != null ? owner.getName() : "null", 
@@ -380,20 +370,13 @@ public class Servant {
         try {
             int entityId = FateServants.getInstance().getPacketHandler().getNextEntityId();
             hologramEntityIds.put("player", entityId);
+            movementEncoder.reset(entityId, location.getX(), location.getY(), location.getZ());
             
             UUID playerUUID = UUID.randomUUID();
             String skinName = servantClass.getSkinName();
             
-            // 从message.yml读取display配置
-            FileConfiguration config = FateServants.getInstance().getMessageConfig();
-            boolean displayEnabled = config.getBoolean("messages.display.enabled", true);
-            String displayFormat = config.getString("messages.display.format", "{quality} {class_name}");
-            
-            // 替换变量获取显示名称
-            String displayName = displayEnabled ? displayFormat
-                .replace("{class_name}", servantClass.getDisplayName())
-                .replace("{quality}", quality.getDisplayName())
-                .replace("{level}", String.valueOf(level)) : "";
+            // 使用配置快照中预编译的模板获取显示名称
+            String displayName = render(FateServants.getInstance().getSettings().getDisplayTemplate());
             
             // 创建GameProfile - 使用自定义displayName
             WrappedGameProfile profile = new WrappedGameProfile(playerUUID, displayName);
@@ -491,7 +474,9 @@ public class Servant {
 
     private void createHologram(String id, String text, double heightOffset, double horizontalOffset, Player targetPlayer) {
         try {
-            int entityId = FateServants.getInstance().getPacketHandler().getNextEntityId();
+            // 已存在的全息图（为新进入范围的玩家生成时）沿用原有实体ID
+            Integer existingId = hologramEntityIds.get(id);
+            int entityId = existingId != null ? existingId : FateServants.getInstance().getPacketHandler().getNextEntityId();
             hologramEntityIds.put(id, entityId);
             
             // 创建盔甲架实体
@@ -506,6 +491,8 @@ public class Servant {
                 loc.add(right);
             }
             loc.add(0, heightOffset, 0);
+            hologramHeights.put(id, heightOffset);
+            movementEncoder.reset(entityId, loc.getX(), loc.getY(), loc.getZ());
             
             packet.getDoubles()
                 .write(0, loc.getX())
@@ -545,7 +532,8 @@ public class Servant {
             
             metadata.add(new WrappedWatchableObject(
                 new WrappedDataWatcher.WrappedDataWatcherObject(11, WrappedDataWatcher.Registry.get(Byte.class)),
-                (byte) (0x01 | 0x08 | 0x10)
+                // 乘客模式不使用标记（marker）标志，让盔甲架保留高度，叠放时每行之间留出间距
+                passengerHolograms ? (byte) (0x01 | 0x08) : (byte) (0x01 | 0x08 | 0x10)
             ));
             
             metadataPacket.getWatchableCollectionModifier().write(0, metadata);
@@ -553,8 +541,8 @@ public class Servant {
             // 发送数据包
             if (targetPlayer != null) {
                 // 发送给特定玩家
-                FateServants.getInstance().getProtocolManager().sendServerPacket(targetPlayer, packet);
-                FateServants.getInstance().getProtocolManager().sendServerPacket(targetPlayer, metadataPacket);
+                FateServants.getInstance().getPacketQueue().enqueue(targetPlayer, packet);
+                FateServants.getInstance().getPacketQueue().enqueue(targetPlayer, metadataPacket);
             } else {
                 // 广播给所有范围内的玩家
                 broadcastPacketToNearbyPlayers(packet);
@@ -590,24 +578,46 @@ public class Servant {
 
     public void updateHealth(double newHealth) {
         this.currentHealth = Math.min(Math.max(0, newHealth), maxHealth);
-        // 更新所有全息图，因为它们可能包含血量相关的变量
-        updateHolograms();
+        // 只标记血量相关的全息图行，由调度器在本tick末统一发送
+        markHologramDirty(HologramField.HEALTH.mask());
     }
 
     public void updateHolograms() {
-        // 重新获取最新的配置
-        FileConfiguration config = FateServants.getInstance().getMessageConfig();
+        // 使用当前的配置快照
+        RuntimeSettings settings = FateServants.getInstance().getSettings();
         
         // 更新玩家实体的显示名称
-        boolean displayEnabled = config.getBoolean("messages.display.enabled", true);
-        String displayFormat = config.getString("messages.display.format", "{quality} {class_name}");
-        String displayName = displayEnabled ? displayFormat
-            .replace("{class_name}", servantClass.getDisplayName())
-            .replace("{quality}", quality.getDisplayName())
-            .replace("{level}", String.valueOf(level)) : "";
+        boolean displayEnabled = settings.isDisplayEnabled();
+        PlaceholderTemplate<ServantPlaceholder> displayTemplate = settings.getDisplayTemplate();
+        String displayName = render(displayTemplate);
             
         // 收集所有需要发送的数据包
         List<PacketContainer> packets = new ArrayList<>();
+        
+        // 重建全息图行模型，此后只有依赖字段变化的行才会重新发送
+        hologramLines.clear();
+        dirtyHologramFields = 0;
+        hologramLines.put("player", new HologramLine("player", displayTemplate, displayName));
+        
+        // 全息图渲染模式变化时（如重载配置后）销毁现有全息图，按新模式重新创建
+        boolean passengerMode = settings.isPassengerHolograms();
+        if (passengerMode != passengerHolograms) {
+            passengerHolograms = passengerMode;
+            List<Integer> oldHolograms = new ArrayList<>();
+            new ArrayList<>(hologramEntityIds.keySet()).forEach(id -> {
+                if (!id.equals("player")) {
+                    oldHolograms.add(hologramEntityIds.remove(id));
+                    hologramHeights.remove(id);
+                }
+            });
+            if (!oldHolograms.isEmpty()) {
+                oldHolograms.forEach(movementEncoder::remove);
+                PacketContainer destroyPacket = new PacketContainer(PacketType.Play.Server.ENTITY_DESTROY);
+                destroyPacket.getIntegerArrays().write(0, oldHolograms.stream().mapToInt(Integer::intValue).toArray());
+                broadcastPacketToNearbyPlayers(destroyPacket);
+            }
+        }
+        boolean layoutChanged = false;
             
         // 更新玩家实体的显示名称
         Integer playerEntityId = hologramEntityIds.get("player");
@@ -629,38 +639,17 @@ public class Servant {
             packets.add(metadataPacket);
         }
         
-        // 获取所有启用的消息配置
-        List<Map<String, Object>> enabledMessages = new ArrayList<>();
-        
-        // 获取高度设置
-        double baseHeight = config.getDouble("messages.height.base", 2.0);
-        double heightInterval = config.getDouble("messages.height.interval", 0.25);
-        
-        // 收集所有启用的消息
-        for (int i = 1; i <= 4; i++) {
-            String msgKey = "msg" + i;
-            if (config.getBoolean("messages." + msgKey + ".enabled", false)) {
-                Map<String, Object> msgConfig = new HashMap<>();
-                msgConfig.put("id", msgKey);
-                msgConfig.put("format", config.getString("messages." + msgKey + ".format", ""));
-                enabledMessages.add(msgConfig);
-            }
-        }
-        
-        // 为每个启用的消息分配高度
+        // 更新或创建所有启用的消息，按启用顺序分配高度
+        List<RuntimeSettings.HologramMessage> enabledMessages = settings.getHologramMessages();
         for (int i = 0; i < enabledMessages.size(); i++) {
-            Map<String, Object> msgConfig = enabledMessages.get(i);
-            msgConfig.put("height", baseHeight + (heightInterval * i));
-        }
-        
-        // 更新或创建全息图
-        for (Map<String, Object> msgConfig : enabledMessages) {
-            String msgId = (String) msgConfig.get("id");
-            String format = (String) msgConfig.get("format");
-            double height = (Double) msgConfig.get("height");
+            RuntimeSettings.HologramMessage message = enabledMessages.get(i);
+            String msgId = message.getId();
+            double height = settings.getHologramBaseHeight() + (settings.getHologramHeightInterval() * i);
             
-            // 替换变量
-            String text = replaceVariables(format);
+            // 使用预编译的模板渲染变量
+            PlaceholderTemplate<ServantPlaceholder> template = message.getTemplate();
+            String text = render(template);
+            hologramLines.put(msgId, new HologramLine(msgId, template, text));
             
             // 如果已存在此ID的全息图，更新它
             if (hologramEntityIds.containsKey(msgId)) {
@@ -676,31 +665,30 @@ public class Servant {
                 metadataPacket.getWatchableCollectionModifier().write(0, dataValues);
                 packets.add(metadataPacket);
                 
-                // 更新位置
-                Location hologramLoc = location.clone().add(0, height, 0);
-                PacketContainer teleportPacket = new PacketContainer(PacketType.Play.Server.ENTITY_TELEPORT);
-                teleportPacket.getIntegers().write(0, hologramEntityIds.get(msgId));
-                teleportPacket.getDoubles()
-                    .write(0, hologramLoc.getX())
-                    .write(1, hologramLoc.getY())
-                    .write(2, hologramLoc.getZ());
-                packets.add(teleportPacket);
+                // 更新位置，高度可能因启用的消息变化而改变，直接传送并重置编码基准
+                Double oldHeight = hologramHeights.put(msgId, height);
+                if (passengerHolograms) {
+                    // 乘客模式下由客户端跟随玩家实体移动，只在叠放顺序变化时重新挂载
+                    layoutChanged |= oldHeight == null || oldHeight != height;
+                } else {
+                    packets.add(movementEncoder.teleport(hologramEntityIds.get(msgId),
+                        location.getX(), location.getY() + height, location.getZ(), 0, 0));
+                }
             } else {
                 // 否则创建新的全息图
                 createHologram(msgId, text, height, 0);
+                layoutChanged = true;
             }
         }
         
-        // 移除已禁用的消息的全息图
-        List<String> activeIds = enabledMessages.stream()
-            .map(m -> (String)m.get("id"))
-            .collect(java.util.stream.Collectors.toList());
-            
+        // 移除已禁用的消息的全息图（重建后的行模型只包含启用的消息）
         List<Integer> entitiesToRemove = new ArrayList<>();
         new ArrayList<>(hologramEntityIds.keySet()).forEach(id -> {
-            if (!id.equals("player") && !activeIds.contains(id)) {
+            if (!id.equals("player") && !hologramLines.containsKey(id)) {
                 entitiesToRemove.add(hologramEntityIds.get(id));
+                movementEncoder.remove(hologramEntityIds.get(id));
                 hologramEntityIds.remove(id);
+                hologramHeights.remove(id);
             }
         });
         
@@ -708,41 +696,160 @@ public class Servant {
             PacketContainer destroyPacket = new PacketContainer(PacketType.Play.Server.ENTITY_DESTROY);
             destroyPacket.getIntegerArrays().write(0, entitiesToRemove.stream().mapToInt(Integer::intValue).toArray());
             packets.add(destroyPacket);
+            layoutChanged = true;
+        }
+        
+        if (passengerHolograms && layoutChanged) {
+            packets.addAll(createMountPackets());
         }
         
         // 批量发送所有数据包
-        FateServants.getInstance().getServer().getScheduler().runTaskLater(
-            FateServants.getInstance(),
-            () -> packets.forEach(this::broadcastPacketToNearbyPlayers),
-            1L
-        );
+        packets.forEach(this::broadcastPacketToNearbyPlayers);
+    }
+    
+    /**
+     * 创建全息图叠放的挂载数据包
+     * 按高度从低到高依次挂载：玩家实体 ← 最低一行 ← 上一行 ...，最后一行清空乘客
+     * @return 挂载数据包列表
+     */
+    private List<PacketContainer> createMountPackets() {
+        List<PacketContainer> mountPackets = new ArrayList<>();
+        Integer playerEntityId = hologramEntityIds.get("player");
+        if (playerEntityId == null) {
+            return mountPackets;
+        }
+        
+        List<String> ids = new ArrayList<>(hologramHeights.keySet());
+        ids.sort(Comparator.comparingDouble(hologramHeights::get));
+        
+        int vehicleId = playerEntityId;
+        for (String id : ids) {
+            Integer entityId = hologramEntityIds.get(id);
+            if (entityId == null) {
+                continue;
+            }
+            mountPackets.add(createMountPacket(vehicleId, new int[]{entityId}));
+            vehicleId = entityId;
+        }
+        mountPackets.add(createMountPacket(vehicleId, new int[0]));
+        return mountPackets;
+    }
+    
+    private PacketContainer createMountPacket(int vehicleId, int[] passengerIds) {
+        PacketContainer mountPacket = new PacketContainer(PacketType.Play.Server.MOUNT);
+        mountPacket.getIntegers().write(0, vehicleId);
+        mountPacket.getIntegerArrays().write(0, passengerIds);
+        return mountPacket;
+    }
+    
+    /**
+     * 标记全息图字段已变化，依赖这些字段的行会在下次发送时重新渲染
+     * @param fields 已变化字段的位掩码
+     */
+    public void markHologramDirty(int fields) {
+        dirtyHologramFields |= fields;
+    }
+
+    /**
+     * 发送本tick内累积的全息图变化
+     * 只重新渲染依赖已变化字段的行，文本与上次发送的相同时不发送，每行最多一个元数据包
+     */
+    public void flushHologramChanges() {
+        int dirtyFields = dirtyHologramFields;
+        if (dirtyFields == 0) {
+            return;
+        }
+        dirtyHologramFields = 0;
+        
+        for (HologramLine line : hologramLines.values()) {
+            if (!line.dependsOn(dirtyFields)) {
+                continue;
+            }
+            Integer entityId = hologramEntityIds.get(line.getId());
+            if (entityId == null) {
+                continue;
+            }
+            
+            String text = render(line.getTemplate());
+            if (!line.update(text)) {
+                continue;
+            }
+            
+            PacketContainer metadataPacket = new PacketContainer(PacketType.Play.Server.ENTITY_METADATA);
+            metadataPacket.getIntegers().write(0, entityId);
+            List<WrappedWatchableObject> dataValues = new ArrayList<>();
+            dataValues.add(new WrappedWatchableObject(
+                new WrappedDataWatcher.WrappedDataWatcherObject(2, WrappedDataWatcher.Registry.get(String.class)),
+                text
+            ));
+            metadataPacket.getWatchableCollectionModifier().write(0, dataValues);
+            broadcastPacketToNearbyPlayers(metadataPacket);
+        }
     }
     
-    private String replaceVariables(String format) {
-        // 替换所有可用变量
-        return format.replace("{class_name}", servantClass.getDisplayName())
-                    .replace("{level}", String.valueOf(level))
-                    .replace("{quality}", quality.getDisplayName())
-                    .replace("{owner}", owner.getName())
-                    .replace("{health}", String.format("%.1f", currentHealth))
-                    .replace("{max_health}", String.format("%.1f", maxHealth))
-                    .replace("{health_percentage}", String.format("%.1f", (currentHealth / maxHealth) * 100))
-                    .replace("{health_bar}", generateHealthBar())
-                    .replace("{mana}", String.format("%.1f", currentMana))
-                    .replace("{max_mana}", String.format("%.1f", maxMana))
-                    .replace("{mana_percentage}", String.format("%.1f", (currentMana / maxMana) * 100));
+    /**
+     * 使用预编译的模板渲染英灵的格式字符串
+     * @param template 编译后的模板
+     * @return 渲染结果
+     */
+    public String render(PlaceholderTemplate<ServantPlaceholder> template) {
+        return template.render(ServantPlaceholder.RESOLVER, this);
     }
     
-    private String generateHealthBar() {
-        FileConfiguration config = FateServants.getInstance().getMessageConfig();
+    /**
+     * 把占位符的当前值追加到缓冲区
+     * @param placeholder 占位符
+     * @param out 输出缓冲区
+     */
+    void appendPlaceholder(ServantPlaceholder placeholder, StringBuilder out) {
+        switch (placeholder) {
+            case CLASS_NAME:
+                out.append(servantClass.getDisplayName());
+                break;
+            case LEVEL:
+                out.append(level);
+                break;
+            case QUALITY:
+                out.append(quality.getDisplayName());
+                break;
+            case OWNER:
+                out.append(owner.getName());
+                break;
+            case HEALTH:
+                PlaceholderTemplate.appendFixed1(out, currentHealth);
+                break;
+            case MAX_HEALTH:
+                PlaceholderTemplate.appendFixed1(out, maxHealth);
+                break;
+            case HEALTH_PERCENTAGE:
+                PlaceholderTemplate.appendFixed1(out, (currentHealth / maxHealth) * 100);
+                break;
+            case HEALTH_BAR:
+                appendHealthBar(out);
+                break;
+            case MANA:
+                PlaceholderTemplate.appendFixed1(out, currentMana);
+                break;
+            case MAX_MANA:
+                PlaceholderTemplate.appendFixed1(out, maxMana);
+                break;
+            case MANA_PERCENTAGE:
+                PlaceholderTemplate.appendFixed1(out, (currentMana / maxMana) * 100);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    private void appendHealthBar(StringBuilder bar) {
+        RuntimeSettings settings = FateServants.getInstance().getSettings();
         double healthPercentage = currentHealth / maxHealth;
         
-        String filledColor = config.getString("health_bar.filled_color", "§4");
-        String emptyColor = config.getString("health_bar.empty_color", "§8");
-        String heartSymbol = config.getString("health_bar.heart_symbol", "❤");
-        int totalHearts = config.getInt("health_bar.total_hearts", 10);
+        String filledColor = settings.getHealthBarFilledColor();
+        String emptyColor = settings.getHealthBarEmptyColor();
+        String heartSymbol = settings.getHealthBarHeartSymbol();
+        int totalHearts = settings.getHealthBarTotalHearts();
         
-        StringBuilder bar = new StringBuilder();
         int filledHearts = (int) Math.ceil(healthPercentage * totalHearts);
         
         // 添加已有血量的心形
@@ -758,89 +865,68 @@ public class Servant {
                 bar.append(heartSymbol);
             }
         }
-        
-        return bar.toString();
     }
 
     public void teleport(Location newLocation) {
         // 保存新位置
         this.location = newLocation.clone();
+        FateServants.getInstance().getServantIndex().update(this);
         
         // 收集所有需要发送的数据包
         List<PacketContainer> packets = new ArrayList<>();
         
-        // 传送玩家实体
+        // 移动玩家实体，小位移发送相对移动数据包，大位移或到达校正间隔时发送传送数据包
         Integer playerEntityId = hologramEntityIds.get("player");
         if (playerEntityId != null) {
-            PacketContainer teleportPacket = new PacketContainer(PacketType.Play.Server.ENTITY_TELEPORT);
-            teleportPacket.getIntegers().write(0, playerEntityId);
-            teleportPacket.getDoubles()
-                .write(0, location.getX())
-                .write(1, location.getY())
-                .write(2, location.getZ());
-            teleportPacket.getBytes()
-                .write(0, (byte) (location.getYaw() * 256.0F / 360.0F))
-                .write(1, (byte) (location.getPitch() * 256.0F / 360.0F));
-            
-            packets.add(teleportPacket);
+            PacketContainer movePacket = movementEncoder.encode(playerEntityId,
+                location.getX(), location.getY(), location.getZ(),
+                location.getYaw(), location.getPitch(), true);
+            if (movePacket != null) {
+                packets.add(movePacket);
+            }
         }
         
-        // 获取当前启用的消息配置并按顺序排列
-        FileConfiguration config = FateServants.getInstance().getMessageConfig();
-        
-        // 获取高度设置
-        double baseHeight = config.getDouble("messages.height.base", 2.0);
-        double heightInterval = config.getDouble("messages.height.interval", 0.25);
-        
-        // 为每个全息图创建传送数据包
-        int index = 0;
+        // 按各全息图创建时的高度移动全息图，乘客模式下全息图由客户端随玩家实体移动
         for (Map.Entry<String, Integer> entry : hologramEntityIds.entrySet()) {
-            if (!entry.getKey().equals("player")) {
-                Location hologramLoc = location.clone().add(0, baseHeight + (heightInterval * index), 0);
+            if (!passengerHolograms && !entry.getKey().equals("player")) {
+                Double height = hologramHeights.get(entry.getKey());
+                if (height == null) {
+                    continue;
+                }
                 
-                PacketContainer teleportPacket = new PacketContainer(PacketType.Play.Server.ENTITY_TELEPORT);
-                teleportPacket.getIntegers().write(0, entry.getValue());
-                teleportPacket.getDoubles()
-                    .write(0, hologramLoc.getX())
-                    .write(1, hologramLoc.getY())
-                    .write(2, hologramLoc.getZ());
-                    
-                packets.add(teleportPacket);
-                index++;
+                PacketContainer movePacket = movementEncoder.encode(entry.getValue(),
+                    location.getX(), location.getY() + height, location.getZ(), 0, 0, false);
+                if (movePacket != null) {
+                    packets.add(movePacket);
+                }
             }
         }
         
         // 批量发送所有数据包
-        FateServants.getInstance().getServer().getScheduler().runTaskLater(
-            FateServants.getInstance(),
-            () -> packets.forEach(this::broadcastPacketToNearbyPlayers),
-            1L
-        );
+        packets.forEach(this::broadcastPacketToNearbyPlayers);
     }
 
     public void remove() {
         try {
-            // 1. 停止所有任务
-            FateServants.getInstance().getServer().getScheduler().cancelTasks(FateServants.getInstance());
+            // 1. 从统一调度器和空间索引中注销
+            FateServants.getInstance().getTickScheduler().unregister(this);
+            FateServants.getInstance().getServantIndex().remove(this);
             
             // 2. 移除所有实体
             PacketContainer destroyPacket = new PacketContainer(PacketType.Play.Server.ENTITY_DESTROY);
             destroyPacket.getIntegerArrays().write(0, hologramEntityIds.values().stream().mapToInt(Integer::intValue).toArray());
             
-            // 获取范围内的所有玩家
-            final int visibilityRange = FateServants.getInstance().getConfig().getInt("performance.servant_visibility_range", 32);
-            final int squaredRange = visibilityRange * visibilityRange;
-            
-            location.getWorld().getPlayers().forEach(player -> {
-                if (player.getLocation().distanceSquared(location) <= squaredRange) {
+            // 发送给所有跟踪玩家
+            viewers.forEach(player -> {
+                if (player.isOnline()) {
                     try {
                         // 3. 移除玩家信息
                         PacketContainer removeInfo = new PacketContainer(PacketType.Play.Server.PLAYER_INFO);
                         removeInfo.getPlayerInfoAction().write(0, EnumWrappers.PlayerInfoAction.REMOVE_PLAYER);
-                        FateServants.getInstance().getProtocolManager().sendServerPacket(player, removeInfo);
+                        FateServants.getInstance().getPacketQueue().enqueue(player, removeInfo);
                         
                         // 4. 发送销毁实体数据包
-                        FateServants.getInstance().getProtocolManager().sendServerPacket(player, destroyPacket);
+                        FateServants.getInstance().getPacketQueue().enqueue(player, destroyPacket);
                     } catch (Exception e) {
                         FateServants.getInstance().getLogger().severe("移除英灵数据包发送失败: " + e.getMessage());
                     }
@@ -866,7 +952,10 @@ public class Servant {
             }
             
             // 6. 清除内存数据
+            viewers.clear();
             hologramEntityIds.clear();
+            hologramHeights.clear();
+            movementEncoder.clear();
             attributeGrowths.clear();
             skills.clear();
             
@@ -888,8 +977,8 @@ public class Servant {
 
     public void setHealth(double health) {
         this.currentHealth = Math.min(Math.max(0, health), maxHealth);
-        // 更新所有全息图，因为它们可能包含血量相关的变量
-        updateHolograms();
+        // 只标记血量相关的全息图行
+        markHologramDirty(HologramField.HEALTH.mask());
     }
 
     /**
@@ -898,12 +987,12 @@ public class Servant {
      */
     public void setCurrentHealth(double newHealth) {
         this.currentHealth = Math.max(0, Math.min(newHealth, maxHealth));
-        updateHolograms();
+        markHologramDirty(HologramField.HEALTH.mask());
     }
 
     public void setCurrentMana(double currentMana) {
         this.currentMana = Math.min(currentMana, maxMana);
-        updateHolograms();
+        markHologramDirty(HologramField.MANA.mask());
     }
 
     public void setMaxMana(double maxMana) {
@@ -911,7 +1000,7 @@ public class Servant {
         if (currentMana > maxMana) {
             currentMana = maxMana;
         }
-        updateHolograms();
+        markHologramDirty(HologramField.MANA.mask());
     }
 
     public void setTarget(Monster target) {
@@ -927,7 +1016,7 @@ public class Servant {
         // 修改为使用枚举类型
         this.quality = quality;
         // 更新显示
-        updateHolograms();
+        markHologramDirty(HologramField.QUALITY.mask());
     }
     
     // Getters
@@ -935,6 +1024,14 @@ public class Servant {
     public Player getOwner() { return owner; }
     public ServantClass getServantClass() { return servantClass; }
     public AttributeContainer getAttributes() { return attributes; }
+
+    /**
+     * 获取英灵属性对应的AttributePlus属性源缓存
+     * @return 属性源缓存
+     */
+    public ServantAttributeSource getAttributeSource() {
+        return attributeSource;
+    }
     public double getCurrentHealth() { return currentHealth; }
     public double getCurrentMana() { return currentMana; }
     public Location getLocation() { return location; }
@@ -986,21 +1083,18 @@ public class Servant {
         Integer entityId = hologramEntityIds.get(id);
         if (entityId == null) return;
         
-        Location hologramLoc = location.clone().add(0, height, 0);
-        
-        PacketContainer teleportPacket = new PacketContainer(PacketType.Play.Server.ENTITY_TELEPORT);
-        teleportPacket.getIntegers().write(0, entityId);
-        teleportPacket.getDoubles()
-            .write(0, hologramLoc.getX())
-            .write(1, hologramLoc.getY())
-            .write(2, hologramLoc.getZ());
+        hologramHeights.put(id, height);
+        PacketContainer teleportPacket = movementEncoder.teleport(entityId,
+            location.getX(), location.getY() + height, location.getZ(), 0, 0);
             
         broadcastPacketToNearbyPlayers(teleportPacket);
     }
     
     private void removeHologram(String id) {
         Integer entityId = hologramEntityIds.remove(id);
+        hologramHeights.remove(id);
         if (entityId != null) {
+            movementEncoder.remove(entityId);
             PacketContainer destroyPacket = new PacketContainer(PacketType.Play.Server.ENTITY_DESTROY);
             destroyPacket.getIntegerArrays().write(0, new int[]{entityId});
             broadcastPacketToNearbyPlayers(destroyPacket);
@@ -1054,32 +1148,11 @@ public class Servant {
         // 完全清除主人当前的所有属性源
         ownerData.clearApiAttribute();
 
-        // 准备英灵属性
-        FateServants.getInstance().getLogger().info("Preparing servant attributes for addition:");
-        Map<String, Number[]> servantAttributes = new HashMap<>();
-        AttributePlusProvider provider = FateServants.getInstance().getAttributePlusProvider();
-        
-        // 映射英灵属性到AttributePlus属性
-        attributes.getAll().forEach((key, value) -> {
-            String mappedAttr = provider.getMappedAttributeName(key);
-            if (mappedAttr != null) {
-                double attrValue = value;
-                servantAttributes.put(mappedAttr, new Number[]{attrValue, 0.0});
-                FateServants.getInstance().getLogger().info(String.format(
-                    "Setting attribute %s to %f", mappedAttr, attrValue
-                ));
-            }
-        });
-
-        // 创建属性源
-        FateServants.getInstance().getLogger().info("Creating AttributeSource...");
-        AttributeSource servantSource = AttributeAPI.createStaticAttributeSource(
-            new HashMap<>(servantAttributes), 
-            new HashMap<>()
-        );
+        // 使用与攻击时相同的缓存属性源，属性未变化时不重新生成
+        AttributeSource servantSource = attributeSource.get(FateServants.getInstance().getAttributePlusProvider());
 
         // 添加英灵属性到主人
-        FateServants.getInstance().getLogger().info("Adding attributes to owner...");
+        DebugUtils.debug("attribute.owner_sync", () -> new Object[]{owner.getName(), attributeSource.size()});
         ownerData.operationApiAttribute("servant_attributes", servantSource, 
             AttributeSource.OperationType.ADD, true);
 
@@ -1118,8 +1191,18 @@ public class Servant {
      * @return 所需经验值
      */
     public int getRequiredExperience() {
-        // 计算下一级所需经验，这里使用一个简单的公式：基础经验100，每级增加50
-        return 100 + ((int)level - 1) * 50;
+        // 与升级检查使用同一条经验曲线
+        return getExperienceCurve().getRequiredExperience((int) level);
+    }
+    
+    /**
+     * 获取英灵当前适用的经验曲线
+     * 实际最大等级由全局限制（level_system.max_level）和职阶限制共同决定
+     * @return 经验曲线
+     */
+    public ExperienceCurve getExperienceCurve() {
+        int globalMaxLevel = FateServants.getInstance().getSettings().getGlobalMaxLevel();
+        return ExperienceCurve.forMaxLevel(ExperienceCurve.effectiveMaxLevel(globalMaxLevel, servantClass.getMaxLevel()));
     }
 
     // 添加AI控制器相关方法
@@ -1128,39 +1211,47 @@ public class Servant {
     }
 
     public void updateAI() {
+        updateAI(1);
+    }
+
+    /**
+     * 更新AI
+     * @param elapsedTicks 距离上次AI更新经过的tick数，调度器顺延更新时大于1
+     */
+    public void updateAI(int elapsedTicks) {
         // 添加调试日志，确认AI更新正在执行
-        DebugUtils.debug("servant.update_ai", 
+        DebugUtils.trace("servant.update_ai", () -> new Object[]{
             owner != null ? owner.getName() : "null", 
-            servantClass != null ? servantClass.getId() : "null");
+            servantClass != null ? servantClass.getId() : "null"});
             
         // 减少技能冷却
         if (attackCooldown > 0) {
-            attackCooldown--;
+            attackCooldown = Math.max(0, attackCooldown - elapsedTicks);
         }
         // 减少普通攻击冷却
         if (normalAttackCooldown > 0) {
-            normalAttackCooldown--;
+            normalAttackCooldown = Math.max(0, normalAttackCooldown - elapsedTicks);
             if (normalAttackCooldown == 0) {
-                DebugUtils.debug("servant.attack_cooldown_end", 
-                    servantClass != null ? servantClass.getDisplayName() : "null");
+                DebugUtils.trace("servant.attack_cooldown_end", () -> new Object[]{
+                    servantClass != null ? servantClass.getDisplayName() : "null"});
             }
         }
         
         // 确保AI控制器存在
         if (aiController == null) {
-            DebugUtils.debug("servant.ai_controller_null",
+            DebugUtils.trace("servant.ai_controller_null", () -> new Object[]{
                 owner != null ? owner.getName() : "null",
-                servantClass != null ? servantClass.getId() : "null");
+                servantClass != null ? servantClass.getId() : "null"});
             return;
         }
         
         // 更新AI行为
-        aiController.tick();
+        aiController.tick(elapsedTicks);
         
         // 记录当前行为状态
-        DebugUtils.debug("servant.ai_behavior",
+        DebugUtils.trace("servant.ai_behavior", () -> new Object[]{
             owner != null ? owner.getName() : "null",
-            aiController.getCurrentBehavior().toString());
+            aiController.getCurrentBehavior()});
     }
 
     // AI相关方法
@@ -1172,11 +1263,9 @@ public class Servant {
 
         // 检查普通攻击冷却
         if (normalAttackCooldown > 0) {
-            FateServants.getInstance().getLogger().info(String.format(
-                "[Servant Debug] %s 普通攻击冷却中: 剩余 %d ticks",
+            DebugUtils.trace("servant.attack_cooldown", () -> new Object[]{
                 servantClass.getDisplayName(),
-                normalAttackCooldown
-            ));
+                normalAttackCooldown});
             return;
         }
 
@@ -1187,130 +1276,22 @@ public class Servant {
             return;
         }
 
-        try {
-            // 获取主人的AttributePlus数据
-            AttributeData ownerData = AttributeAPI.getAttrData(owner);
-            if (ownerData == null) {
-                // 如果无法获取属性数据，直接使用基础伤害
-                double attackDamage = attributes.getValue("attack");
-                FateServants.getInstance().getLogger().info(String.format(
-                    "[Servant Debug] %s 使用基础伤害攻击: %.2f (AttributePlus数据不可用)",
-                    servantClass.getDisplayName(),
-                    attackDamage
-                ));
-                
-                // 获取目标初始血量用于计算实际伤害
-                double initialHealth = targetMonster.getHealth();
-                
-                // 造成伤害
-                targetMonster.damage(attackDamage, owner);
-                
-                // 计算实际伤害并添加经验
-                double finalHealth = targetMonster.getHealth();
-                double actualDamage = initialHealth - finalHealth;
-                if (actualDamage > 0) {
-                    addExperience(actualDamage);
-                }
-                
-                // 尝试触发被动技能
-                tryTriggerPassiveSkills(targetMonster);
-                return;
-            }
-            
-            // 检查是否禁用属性叠加
-            boolean disableStacking = FateServants.getInstance().getConfig().getBoolean("servants.disable_attribute_stacking", true);
-            
-            // 保存主人原有的属性源（如果需要的话）
-            final Map<String, AttributeSource> originalSources = !disableStacking ? 
-                new HashMap<>(ownerData.getApiSourceAttribute()) : null;
-            
-            try {
-                // 如果禁用属性叠加,则清除主人当前所有属性
-                if (disableStacking) {
-                    // 先更新属性，确保所有属性都被计算
-                    ownerData.updateAttribute(true);
-                    // 然后清除API属性，这样装备属性就不会被重新计算
-                    ownerData.clearApiAttribute();
-                }
-
-                // 创建英灵属性源
-                Map<String, Number[]> servantAttributes = new HashMap<>();
-                AttributePlusProvider provider = FateServants.getInstance().getAttributePlusProvider();
-                
-                // 映射英灵属性到AttributePlus属性
-                attributes.getAll().forEach((key, value) -> {
-                    String mappedAttr = provider.getMappedAttributeName(key);
-                    if (mappedAttr != null) {
-                        // 只设置基础值，增益值设置为0，避免重复计算
-                        servantAttributes.put(mappedAttr, new Number[]{value, 0.0});
-                    }
-                });
-
-                AttributeSource servantSource = AttributeAPI.createStaticAttributeSource(
-                    new HashMap<>(servantAttributes), 
-                    new HashMap<>()
-                );
-                ownerData.operationApiAttribute("servant_attributes", servantSource, 
-                    AttributeSource.OperationType.ADD, true);
+        // 原生伤害结算在本tick结束后批量计算，下一tick统一造成伤害、增加经验并触发被动技能
+        FateServants plugin = FateServants.getInstance();
+        DamagePipeline pipeline = plugin.getDamagePipeline();
+        if (pipeline instanceof NativeDamagePipeline && plugin.getSettings().isBatchCombat()) {
+            plugin.getCombatResolver().queue((NativeDamagePipeline) pipeline, this, targetMonster);
+            return;
+        }
 
-                // 获取目标初始血量用于计算实际伤害
-                double initialHealth = targetMonster.getHealth();
-                
-                // 造成伤害
-                targetMonster.damage(1, owner);
-                
-                // 清除属性并更新
-                ownerData.clearApiAttribute();
-                ownerData.updateAttribute(true);
-                
-                // 计算实际伤害并添加经验
-                double finalHealth = targetMonster.getHealth();
-                double actualDamage = initialHealth - finalHealth;
-                if (actualDamage > 0) {
-                    addExperience(actualDamage);
-                }
-                
-                // 尝试触发被动技能
-                tryTriggerPassiveSkills(targetMonster);
-                
-            } finally {
-                // 只有在不禁用属性叠加时才恢复主人原有属性
-                if (!disableStacking && originalSources != null) {
-                    ownerData.clearApiAttribute();
-                    originalSources.forEach((source, attr) -> {
-                        ownerData.operationApiAttribute(source, attr, 
-                            AttributeSource.OperationType.ADD, true);
-                    });
-                    ownerData.updateAttribute(true);
-                    AttributeAPI.updateAttribute(owner);
-                }
-            }
-        } catch (NoClassDefFoundError | Exception e) {
-            // AttributePlus 未加载或出错，使用基础伤害
-            double attackDamage = attributes.getValue("attack");
-            FateServants.getInstance().getLogger().info(String.format(
-                "[Servant Debug] %s 使用基础伤害攻击: %.2f (AttributePlus异常: %s)",
-                servantClass.getDisplayName(),
-                attackDamage,
-                e.getMessage()
-            ));
-            
-            // 获取目标初始血量用于计算实际伤害
-            double initialHealth = targetMonster.getHealth();
-            
-            // 造成伤害
-            targetMonster.damage(attackDamage, owner);
-            
-            // 计算实际伤害并添加经验
-            double finalHealth = targetMonster.getHealth();
-            double actualDamage = initialHealth - finalHealth;
-            if (actualDamage > 0) {
-                addExperience(actualDamage);
-            }
-            
-            // 尝试触发被动技能
-            tryTriggerPassiveSkills(targetMonster);
+        // 按配置的伤害结算流程造成伤害
+        double actualDamage = pipeline.attack(this, targetMonster);
+        if (actualDamage > 0) {
+            addExperience(actualDamage);
         }
+
+        // 尝试触发被动技能
+        tryTriggerPassiveSkills(targetMonster);
     }
     
     public void setRotation(float yaw, float pitch) {
@@ -1380,189 +1361,88 @@ public class Servant {
         for (int i = 0; i < skills.size(); i++) {
             Skill skill = skills.get(i);
             if (skill.getCastType().equals("active")) {
-                FateServants.getInstance().getLogger().info("[Servant Debug] 检查主动技能: " + skill.getName());
+                DebugUtils.trace("skill.active_check", () -> new Object[]{skill.getName()});
                 if (skill.canCast(this)) {
-                    FateServants.getInstance().getLogger().info("[Servant Debug] 尝试释放主动技能: " + skill.getName());
+                    DebugUtils.debug("skill.active_cast", () -> new Object[]{skill.getName()});
                     boolean success = castSkill(i, target);
-                    FateServants.getInstance().getLogger().info("[Servant Debug] 技能释放" + (success ? "成功" : "失败"));
+                    DebugUtils.debug("skill.active_result", () -> new Object[]{skill.getName(), success ? "成功" : "失败"});
                 }
             }
         }
     }
 
     public void addExperience(double damage) {
-        // 从配置中获取经验获取公式
-        String expFormula = FateServants.getInstance().getConfig().getString("level_system.exp_gain_formula", "{damage}/10");
+        // 使用加载配置时编译好的经验获取公式计算经验值（四舍五入）
+        int gainedExp = LevelFormulas.getExperienceGain(damage);
+        this.experience += gainedExp;
         
-        // 替换变量并计算经验值
-        expFormula = expFormula.replace("{damage}", String.valueOf(damage));
-        try {
-            javax.script.ScriptEngineManager manager = new javax.script.ScriptEngineManager();
-            javax.script.ScriptEngine engine = manager.getEngineByName("js");
-            double exp = Double.parseDouble(engine.eval(expFormula).toString());
-            
-            // 添加经验值（使用Math.round进行四舍五入）
-            int gainedExp = (int)Math.round(exp);
-            this.experience += gainedExp;
-            
-            // 输出调试信息
-            FateServants.getInstance().getLogger().info(String.format(
-                "[Experience Debug] 经验获取:\n" +
-                "造成伤害: %.2f\n" +
-                "获得经验: %d\n" +
-                "当前等级: %d\n" +
-                "当前经验: %d",
-                damage,
-                gainedExp,
-                level,
-                experience
-            ));
-            
-            // 检查是否可以升级
-            checkLevelUp();
-            
-            // 更新显示
-            updateHolograms();
-        } catch (Exception e) {
-            FateServants.getInstance().getLogger().warning("计算经验值时发生错误: " + e.getMessage());
-        }
+        // 输出调试信息
+        DebugUtils.trace("servant.exp_gain", () -> new Object[]{
+            servantClass.getDisplayName(),
+            String.format("%.2f", damage),
+            gainedExp,
+            (int) level,
+            experience});
+        
+        // 检查是否可以升级（升级时会标记等级相关的全息图行）
+        checkLevelUp();
     }
     
     public void checkLevelUp() {
         // 获取配置
-        FileConfiguration config = FateServants.getInstance().getConfig();
-        int globalMaxLevel = config.getInt("level_system.max_level", -1);
-        int classMaxLevel = servantClass.getMaxLevel();
-        
-        // 确定实际的最大等级限制
-        int effectiveMaxLevel;
-        if (globalMaxLevel == -1) {
-            // 如果全局限制是-1（无限制），则使用职阶限制
-            effectiveMaxLevel = classMaxLevel;
-        } else if (classMaxLevel == 0) {
-            // 如果职阶限制是0（无限制），则使用全局限制
-            effectiveMaxLevel = globalMaxLevel;
-        } else {
-            // 两者都有限制时，使用较小的值
-            effectiveMaxLevel = Math.min(globalMaxLevel, classMaxLevel);
-        }
+        RuntimeSettings settings = FateServants.getInstance().getSettings();
+        ExperienceCurve curve = getExperienceCurve();
+        int effectiveMaxLevel = curve.getMaxLevel();
+        int oldLevel = (int) level;
         
         // 输出等级限制调试信息
-        FateServants.getInstance().getLogger().info(String.format(
-            "[LevelUp Debug] 等级限制检查:\n" +
-            "全局最大等级: %d\n" +
-            "职阶最大等级: %d\n" +
-            "实际最大等级: %d\n" +
-            "当前等级: %d",
-            globalMaxLevel,
-            classMaxLevel,
+        DebugUtils.trace("servant.level_check", () -> new Object[]{
+            settings.getGlobalMaxLevel(),
+            servantClass.getMaxLevel(),
             effectiveMaxLevel,
-            level
-        ));
+            oldLevel});
         
         // 如果已达到最大等级，则不再升级
-        if (effectiveMaxLevel > 0 && level >= effectiveMaxLevel) {
-            FateServants.getInstance().getLogger().info("[LevelUp Debug] 已达到最大等级，停止升级检查");
+        if (curve.isMaxLevel(oldLevel)) {
+            DebugUtils.trace("servant.level_max", () -> new Object[]{oldLevel});
             return;
         }
         
-        // 获取升级经验公式
-        String levelUpFormula = config.getString("level_system.level_up_formula", "100+({level}*240)");
-        javax.script.ScriptEngineManager manager = new javax.script.ScriptEngineManager();
-        javax.script.ScriptEngine engine = manager.getEngineByName("js");
+        // 把当前经验换算为累计经验，在经验曲线上一次查找到新等级
+        long totalExperience = curve.getCumulativeExperience(oldLevel) + experience;
+        int newLevel = curve.getLevel(totalExperience);
+        if (newLevel <= oldLevel) {
+            return;
+        }
         
-        // 计算所需经验
-        int requiredExp;
-        if (level == 1) {
-            // 1级使用默认值
-            requiredExp = config.getInt("level_system.default_required_exp", 100);
-            FateServants.getInstance().getLogger().info(String.format(
-                "[LevelUp Debug] 使用1级默认经验值: %d",
-                requiredExp
-            ));
-        } else {
-            // 2级及以上使用公式
-            String formula = levelUpFormula.replace("{level}", String.valueOf(level));
-            
-            try {
-                // 替换变量并计算
-                requiredExp = (int)Math.round(Double.parseDouble(engine.eval(formula).toString()));
-                
-                // 输出调试信息到后台
-                FateServants.getInstance().getLogger().info(String.format(
-                    "[LevelUp Debug] 经验计算详细过程:\n" +
-                    "1. 原始公式: %s\n" +
-                    "2. 当前等级: %d\n" +
-                    "3. 替换变量后的公式: %s\n" +
-                    "4. 计算结果: %d",
-                    levelUpFormula,
-                    level,
-                    formula,
-                    requiredExp
-                ));
-            } catch (Exception e) {
-                FateServants.getInstance().getLogger().warning("计算升级经验时发生错误: " + e.getMessage());
-                e.printStackTrace();
-                requiredExp = config.getInt("level_system.default_required_exp", 100); // 出错时使用默认值
-            }
+        int remainingExp = (int) (totalExperience - curve.getCumulativeExperience(newLevel));
+        DebugUtils.debug("servant.level_up", () -> new Object[]{
+            oldLevel,
+            newLevel,
+            experience - remainingExp,
+            remainingExp,
+            curve.getRequiredExperience(newLevel)});
+        
+        // 升级
+        level = newLevel;
+        experience = remainingExp;
+        
+        // 应用等级奖励（按新等级计算，一次升多级也只应用一次）
+        applyLevelUpRewards();
+        
+        // 发送升级消息
+        if (settings.isLevelUpMessage()) {
+            String maxLevelInfo = effectiveMaxLevel > 0 ? String.format(" (最大等级: %d)", effectiveMaxLevel) : "";
+            owner.sendMessage("§a你的英灵升级了！当前等级: §6" + newLevel + maxLevelInfo);
         }
         
-        // 检查是否可以升级
-        while (experience >= requiredExp && (effectiveMaxLevel <= 0 || level < effectiveMaxLevel)) {
-            // 输出升级前状态
-            FateServants.getInstance().getLogger().info(String.format(
-                "[LevelUp Debug] 准备升级:\n" +
-                "当前等级: %d\n" +
-                "当前经验: %d\n" +
-                "消耗经验: %d\n" +
-                "剩余经验: %d",
-                level,
-                experience,
-                requiredExp,
-                experience - requiredExp
-            ));
-            
-            // 升级
-            level++;
-            experience -= requiredExp;
-            
-            // 应用等级奖励
-            applyLevelUpRewards();
-            
-            // 发送升级消息
-            if (config.getBoolean("level_system.level_up_message", true)) {
-                String maxLevelInfo = effectiveMaxLevel > 0 ? String.format(" (最大等级: %d)", effectiveMaxLevel) : "";
-                owner.sendMessage("§a你的英灵升级了！当前等级: §6" + level + maxLevelInfo);
-            }
-            
-            // 播放升级音效
-            if (config.getBoolean("level_system.level_up_sound", true)) {
-                owner.playSound(owner.getLocation(), "entity.player.levelup", 1.0f, 1.0f);
-            }
-            
-            // 更新显示
-            updateHolograms();
-            
-            // 重新计算下一级所需经验
-            try {
-                String newFormula = levelUpFormula.replace("{level}", String.valueOf(level));
-                requiredExp = (int)Math.round(Double.parseDouble(engine.eval(newFormula).toString()));
-                
-                // 输出升级后状态
-                FateServants.getInstance().getLogger().info(String.format(
-                    "[LevelUp Debug] 升级完成:\n" +
-                    "新等级: %d\n" +
-                    "剩余经验: %d\n" +
-                    "下一级所需经验: %d",
-                    level,
-                    experience,
-                    requiredExp
-                ));
-            } catch (Exception e) {
-                FateServants.getInstance().getLogger().warning("计算下一级经验时发生错误: " + e.getMessage());
-                break; // 出错时退出循环
-            }
+        // 播放升级音效
+        if (settings.isLevelUpSound()) {
+            owner.playSound(owner.getLocation(), "entity.player.levelup", 1.0f, 1.0f);
         }
+        
+        // 更新显示
+        markHologramDirty(HologramField.LEVEL.mask());
     }
     
     /**
@@ -1630,36 +1510,94 @@ public class Servant {
         return calculateAttributeValue("max_mana", servantClass.getBaseMana());
     }
 
+    /**
+     * 初始化跟踪玩家列表，只记录范围内的玩家而不发送数据包
+     * @param rangeSquared 可见范围的平方
+     */
+    private void initViewers(double rangeSquared) {
+        viewers.clear();
+        if (location == null || location.getWorld() == null) return;
+        for (Player player : location.getWorld().getPlayers()) {
+            if (player.getLocation().distanceSquared(location) <= rangeSquared) {
+                viewers.add(player);
+            }
+        }
+    }
+
+    /**
+     * 重新计算跟踪玩家列表
+     * 新进入范围的玩家会收到生成数据包，离开范围的玩家会收到销毁数据包
+     * @param rangeSquared 可见范围的平方
+     */
+    public void updateViewers(double rangeSquared) {
+        if (location == null || location.getWorld() == null || hologramEntityIds.isEmpty()) return;
+
+        Iterator<Player> iterator = viewers.iterator();
+        while (iterator.hasNext()) {
+            Player viewer = iterator.next();
+            if (!viewer.isOnline()) {
+                iterator.remove();
+                continue;
+            }
+            if (viewer.getWorld() != location.getWorld()
+                || viewer.getLocation().distanceSquared(location) > rangeSquared) {
+                iterator.remove();
+                destroyForPlayer(viewer);
+            }
+        }
+
+        for (Player player : location.getWorld().getPlayers()) {
+            if (!viewers.contains(player) && player.getLocation().distanceSquared(location) <= rangeSquared) {
+                viewers.add(player);
+                spawnForPlayer(player);
+            }
+        }
+    }
+
+    /**
+     * 将玩家从跟踪列表中移除，用于玩家退出服务器时
+     * @param player 玩家
+     */
+    public void removeViewer(Player player) {
+        viewers.remove(player);
+    }
+
+    /**
+     * 获取跟踪玩家数量
+     * @return 跟踪玩家数量
+     */
+    public int getViewerCount() {
+        return viewers.size();
+    }
+
+    /**
+     * 为离开范围的玩家销毁英灵及其全息图
+     * @param player 目标玩家
+     */
+    private void destroyForPlayer(Player player) {
+        try {
+            PacketContainer destroyPacket = new PacketContainer(PacketType.Play.Server.ENTITY_DESTROY);
+            destroyPacket.getIntegerArrays().write(0, hologramEntityIds.values().stream().mapToInt(Integer::intValue).toArray());
+            FateServants.getInstance().getPacketQueue().enqueue(player, destroyPacket);
+        } catch (Exception e) {
+            FateServants.getInstance().getLogger().severe("为玩家 " + player.getName() + " 销毁英灵时发生错误: " + e.getMessage());
+        }
+    }
+
     /**
      * 为指定玩家发送英灵的生成数据包
      * @param player 目标玩家
      */
     public void spawnForPlayer(Player player) {
         if (player == null || !player.isOnline()) return;
-        
-        // 检查玩家是否在可见范围内
-        final int visibilityRange = FateServants.getInstance().getConfig().getInt("performance.servant_visibility_range", 32);
-        final int squaredRange = visibilityRange * visibilityRange;
-        
-        if (player.getLocation().distanceSquared(location) > squaredRange) {
-            return;
-        }
 
         try {
             // 获取皮肤数据
             String skinName = servantClass.getSkinName();
             SkinManager.SkinData skinData = FateServants.getInstance().getSkinManager().getSkin(skinName);
             
-            // 从message.yml读取display配置
-            FileConfiguration config = FateServants.getInstance().getMessageConfig();
-            boolean displayEnabled = config.getBoolean("messages.display.enabled", true);
-            String displayFormat = config.getString("messages.display.format", "{quality} {class_name}");
-            
-            // 替换变量获取显示名称
-            String displayName = displayEnabled ? displayFormat
-                .replace("{class_name}", servantClass.getDisplayName())
-                .replace("{quality}", quality.getDisplayName())
-                .replace("{level}", String.valueOf(level)) : "";
+            // 使用配置快照中预编译的模板获取显示名称
+            String displayName = render(FateServants.getInstance().getSettings().getDisplayTemplate());
 
             // 创建GameProfile
             WrappedGameProfile profile = new WrappedGameProfile(UUID.randomUUID(), displayName);
@@ -1722,24 +1660,29 @@ public class Servant {
             spawnPacket.getDataWatcherModifier().write(0, new WrappedDataWatcher(dataValues));
 
             // 4. 发送数据包
-            FateServants.getInstance().getProtocolManager().sendServerPacket(player, infoPacket);
-            FateServants.getInstance().getProtocolManager().sendServerPacket(player, spawnPacket);
-            FateServants.getInstance().getProtocolManager().sendServerPacket(player, metadataPacket);
+            FateServants.getInstance().getPacketQueue().enqueue(player, infoPacket);
+            FateServants.getInstance().getPacketQueue().enqueue(player, spawnPacket);
+            FateServants.getInstance().getPacketQueue().enqueue(player, metadataPacket);
 
             // 5. 为玩家生成全息图
-            FileConfiguration messageConfig = FateServants.getInstance().getMessageConfig();
-            double baseHeight = messageConfig.getDouble("messages.height.base", 2.0);
-            double heightInterval = messageConfig.getDouble("messages.height.interval", 0.25);
-            
-            // 收集所有启用的消息
-            for (int i = 1; i <= 4; i++) {
-                String msgKey = "msg" + i;
-                if (messageConfig.getBoolean("messages." + msgKey + ".enabled", false)) {
-                    String format = messageConfig.getString("messages." + msgKey + ".format", "");
-                    double height = baseHeight + (heightInterval * (i - 1));
-                    
-                    // 使用修改后的createHologram方法,指定目标玩家
-                    createHologram(msgKey, replaceVariables(format), height, 0, player);
+            RuntimeSettings settings = FateServants.getInstance().getSettings();
+            List<RuntimeSettings.HologramMessage> messages = settings.getHologramMessages();
+            
+            // 高度分配与updateHolograms保持一致，已渲染过的行直接使用最后发送的文本
+            for (int i = 0; i < messages.size(); i++) {
+                RuntimeSettings.HologramMessage message = messages.get(i);
+                double height = settings.getHologramBaseHeight() + (settings.getHologramHeightInterval() * i);
+                HologramLine line = hologramLines.get(message.getId());
+                String text = line != null ? line.getLastSent() : render(message.getTemplate());
+                
+                // 使用修改后的createHologram方法,指定目标玩家
+                createHologram(message.getId(), text, height, 0, player);
+            }
+            
+            // 乘客模式下把全息图叠放到玩家实体上
+            if (passengerHolograms) {
+                for (PacketContainer mountPacket : createMountPackets()) {
+                    FateServants.getInstance().getPacketQueue().enqueue(player, mountPacket);
                 }
             }
 
@@ -1751,7 +1694,7 @@ public class Servant {
                         PacketContainer removeInfo = new PacketContainer(PacketType.Play.Server.PLAYER_INFO);
                         removeInfo.getPlayerInfoAction().write(0, EnumWrappers.PlayerInfoAction.REMOVE_PLAYER);
                         removeInfo.getPlayerInfoDataLists().write(0, Collections.singletonList(playerInfoData));
-                        FateServants.getInstance().getProtocolManager().sendServerPacket(player, removeInfo);
+                        FateServants.getInstance().getPacketQueue().enqueue(player, removeInfo);
                     } catch (Exception e) {
                         FateServants.getInstance().getLogger().severe("移除玩家信息时发生错误: " + e.getMessage());
                     }
@@ -1924,8 +1867,8 @@ public class Servant {
             this.currentMana = this.maxMana;
         }
         
-        // 更新全息图
-        updateHolograms();
+        // 更新全息图，属性随等级和品质变化，生命值和魔法值上限可能改变
+        markHologramDirty(HologramField.LEVEL.mask() | HologramField.HEALTH.mask() | HologramField.MANA.mask());
     }
 
     /**
@@ -1948,11 +1891,12 @@ public class Servant {
     public void setLocation(Location newLocation) {
         if (newLocation != null) {
             this.location = newLocation.clone();
-            DebugUtils.debug("servant.set_location", 
+            FateServants.getInstance().getServantIndex().update(this);
+            DebugUtils.debug("servant.set_location", () -> new Object[]{
                 newLocation.getWorld().getName(),
                 newLocation.getX(),
                 newLocation.getY(),
-                newLocation.getZ());
+                newLocation.getZ()});
         }
     }
     
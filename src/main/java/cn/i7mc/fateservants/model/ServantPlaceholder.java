@@ -0,0 +1,91 @@
+package cn.i7mc.fateservants.model;
+
+import cn.i7mc.fateservants.utils.PlaceholderTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 英灵占位符枚举
+ * 全息图和显示名称中可用的占位符，每个占位符属于一个全息图字段，
+ * 格式字符串编译时绑定为枚举常量，渲染时直接从英灵读取数值追加到缓冲区
+ */
+public enum ServantPlaceholder {
+    CLASS_NAME("class_name", HologramField.CLASS_NAME),
+    LEVEL("level", HologramField.LEVEL),
+    QUALITY("quality", HologramField.QUALITY),
+    OWNER("owner", HologramField.OWNER),
+    HEALTH("health", HologramField.HEALTH),
+    MAX_HEALTH("max_health", HologramField.HEALTH),
+    HEALTH_PERCENTAGE("health_percentage", HologramField.HEALTH),
+    HEALTH_BAR("health_bar", HologramField.HEALTH),
+    MANA("mana", HologramField.MANA),
+    MAX_MANA("max_mana", HologramField.MANA),
+    MANA_PERCENTAGE("mana_percentage", HologramField.MANA);
+
+    private static final Map<String, ServantPlaceholder> BY_NAME = new HashMap<>();
+
+    /**
+     * 英灵格式字符串的模板缓存
+     */
+    public static final PlaceholderTemplate.Cache<ServantPlaceholder> TEMPLATES =
+        new PlaceholderTemplate.Cache<>(ServantPlaceholder::byName);
+
+    /**
+     * 英灵占位符解析器
+     */
+    public static final PlaceholderTemplate.Resolver<ServantPlaceholder, Servant> RESOLVER =
+        (key, servant, out) -> servant.appendPlaceholder(key, out);
+
+    static {
+        for (ServantPlaceholder placeholder : values()) {
+            BY_NAME.put(placeholder.name, placeholder);
+        }
+    }
+
+    private final String name;
+    private final HologramField field;
+
+    ServantPlaceholder(String name, HologramField field) {
+        this.name = name;
+        this.field = field;
+    }
+
+    /**
+     * 获取占位符名称（不含花括号）
+     * @return 占位符名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 获取占位符所属的全息图字段
+     * @return 全息图字段
+     */
+    public HologramField getField() {
+        return field;
+    }
+
+    /**
+     * 根据名称查找占位符
+     * @param name 占位符名称
+     * @return 占位符，不存在时返回null
+     */
+    public static ServantPlaceholder byName(String name) {
+        return BY_NAME.get(name);
+    }
+
+    /**
+     * 分析模板依赖的全息图字段
+     * @param template 编译后的模板
+     * @return 依赖字段的位掩码
+     */
+    public static int dependenciesOf(PlaceholderTemplate<ServantPlaceholder> template) {
+        int dependencies = 0;
+        for (int i = 0; i < template.getSlotCount(); i++) {
+            dependencies |= template.getKey(i).field.mask();
+        }
+        return dependencies;
+    }
+}
@@ -153,7 +153,7 @@ public class ServantAttributeHandler {
             // 创建英灵属性源的映射
             Map<String, Number[]> servantAttributes = new HashMap<>();
             // 映射英灵属性到AttributePlus属性
-            attributes.getAll().forEach((key, value) -> {
+            attributes.forEach((key, value) -> {
                 String mappedAttr = provider.getMappedAttributeName(key);
                 if (mappedAttr != null) {
                     double attrValue = value;
@@ -10,7 +10,6 @@ import org.bukkit.entity.Monster;
 import org.bukkit.entity.Player;
 import org.bukkit.util.Vector;
 
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,10 +25,6 @@ public class ServantCombatHandler {
     private int normalAttackCooldown = 0;
     private final Map<String, Integer> skillCooldowns = new HashMap<>();
     
-    // 战斗距离配置
-    private static final double ATTACK_RANGE = 2.0;
-    private static final double TARGET_SEARCH_RANGE = 10.0;
-    
     /**
      * 构造函数
      * @param servant 所属的英灵
@@ -107,8 +102,11 @@ public class ServantCombatHandler {
      * @return 是否在攻击范围内
      */
     public boolean isInAttackRange() {
-        double distance = getDistanceToTarget();
-        return distance >= 0 && distance <= ATTACK_RANGE;
+        if (target == null || servant.getLocation() == null) {
+            return false;
+        }
+        double attackRange = FateServants.getInstance().getSettings().getAttackRange();
+        return servant.getLocation().distanceSquared(target.getLocation()) <= attackRange * attackRange;
     }
     
     /**
@@ -120,25 +118,13 @@ public class ServantCombatHandler {
             return false;
         }
         
-        Collection<Monster> nearbyMonsters = servant.getLocation().getWorld().getEntitiesByClass(Monster.class);
-        Monster closest = null;
-        double minDistance = TARGET_SEARCH_RANGE;
-        
-        for (Monster monster : nearbyMonsters) {
-            if (monster.isDead() || !monster.isValid()) {
-                continue;
-            }
-            
-            double distance = servant.getLocation().distance(monster.getLocation());
-            if (distance < minDistance) {
-                minDistance = distance;
-                closest = monster;
-            }
-        }
+        Monster closest = FateServants.getInstance().getMonsterIndex().findNearest(servant.getLocation(),
+            FateServants.getInstance().getSettings().getCombatSearchRange());
         
         if (closest != null) {
             setTarget(closest);
-            DebugUtils.log("combat.target_found", closest.getType().name(), minDistance);
+            DebugUtils.debug("combat.target_found", () -> new Object[]{
+                closest.getType().name(), servant.getLocation().distance(closest.getLocation())});
             return true;
         }
         
@@ -168,10 +154,10 @@ public class ServantCombatHandler {
         
         // 设置普通攻击冷却
         normalAttackCooldown = servant.getServantClass().getAttackSpeed();
-        DebugUtils.log("combat.normal_attack", 
+        DebugUtils.debug("combat.normal_attack", () -> new Object[]{
             servant.getServantClass().getDisplayName(), 
             target.getType().name(), 
-            normalAttackCooldown);
+            normalAttackCooldown});
             
         // 计算基础伤害
         double damage = servant.getAttributeHandler().calculateAttackDamage();
@@ -217,16 +203,17 @@ public class ServantCombatHandler {
         
         if (success) {
             // 设置技能冷却
+            String skillName = selectedSkill.getName();
             int cooldown = selectedSkill.getCooldown();
-            skillCooldowns.put(selectedSkill.getName(), cooldown);
+            skillCooldowns.put(skillName, cooldown);
             
             // 设置全局攻击冷却
             attackCooldown = 20; // 1秒的全局冷却
             
-            DebugUtils.log("combat.skill_cast", 
-                selectedSkill.getName(), 
+            DebugUtils.debug("combat.skill_cast", () -> new Object[]{
+                skillName, 
                 target.getType().name(),
-                cooldown);
+                cooldown});
                 
             return true;
         }
@@ -280,10 +267,10 @@ public class ServantCombatHandler {
         if (attacker instanceof Monster && target == null) {
             // 如果攻击者是怪物且当前没有目标，将其设为目标
             setTarget((Monster) attacker);
-            DebugUtils.log("combat.attacked", 
+            DebugUtils.debug("combat.attacked", () -> new Object[]{
                 servant.getServantClass().getDisplayName(), 
                 attacker.getType().name(), 
-                damage);
+                damage});
         }
         
         // 减少生命值
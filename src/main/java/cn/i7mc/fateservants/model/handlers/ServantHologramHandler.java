@@ -2,6 +2,7 @@ package cn.i7mc.fateservants.model.handlers;
 
 import cn.i7mc.fateservants.FateServants;
 import cn.i7mc.fateservants.model.Servant;
+import cn.i7mc.fateservants.model.ServantPlaceholder;
 import cn.i7mc.fateservants.utils.DebugUtils;
 import cn.i7mc.fateservants.utils.MessageManager;
 import com.comphenix.protocol.PacketType;
@@ -295,21 +296,6 @@ public class ServantHologramHandler {
         // 从message.yml读取配置
         FileConfiguration config = FateServants.getInstance().getMessageConfig();
         
-        // 获取血条设置
-        String filledColor = config.getString("health_bar.filled_color", "§4");
-        String emptyColor = config.getString("health_bar.empty_color", "§8");
-        String heartSymbol = config.getString("health_bar.heart_symbol", "❤");
-        int totalHearts = config.getInt("health_bar.total_hearts", 10);
-        
-        // 计算血条
-        int filledHearts = (int) Math.ceil((servant.getCurrentHealth() / servant.getMaxHealth()) * totalHearts);
-        filledHearts = Math.max(0, Math.min(totalHearts, filledHearts));
-        
-        StringBuilder healthBar = new StringBuilder();
-        for (int i = 0; i < totalHearts; i++) {
-            healthBar.append(i < filledHearts ? filledColor : emptyColor).append(heartSymbol);
-        }
-        
         // 获取高度设置
         double baseHeight = config.getDouble("messages.height.base", 2.0);
         double heightInterval = config.getDouble("messages.height.interval", 0.25);
@@ -321,7 +307,7 @@ public class ServantHologramHandler {
             
             if (enabled) {
                 String format = config.getString("messages." + msgKey + ".format", "");
-                String text = replaceVariables(format, healthBar.toString());
+                String text = servant.render(ServantPlaceholder.TEMPLATES.get(format));
                 
                 double height = baseHeight + ((i - 1) * heightInterval);
                 String holoId = "msg" + i;
@@ -352,24 +338,6 @@ public class ServantHologramHandler {
         hologramEntityIds.clear();
     }
 
-    /**
-     * 替换变量
-     * @param text 带变量的文本
-     * @param healthBar 预生成的血条字符串
-     * @return 替换后的文本
-     */
-    private String replaceVariables(String text, String healthBar) {
-        return text
-            .replace("{class_name}", servant.getServantClass().getDisplayName())
-            .replace("{level}", String.valueOf(servant.getLevel()))
-            .replace("{quality}", servant.getQuality().getDisplayName())
-            .replace("{owner}", servant.getOwner().getName())
-            .replace("{health}", String.format("%.1f", servant.getCurrentHealth()))
-            .replace("{max_health}", String.format("%.1f", servant.getMaxHealth()))
-            .replace("{health_percentage}", String.format("%.1f", (servant.getCurrentHealth() / servant.getMaxHealth() * 100)))
-            .replace("{health_bar}", healthBar);
-    }
-    
     /**
      * 检查是否为全息图实体
      * @param entityId 实体ID
@@ -0,0 +1,173 @@
+package cn.i7mc.fateservants.packets;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.events.PacketContainer;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 实体移动数据包编码器
+ * 记录每个虚拟实体最后发送给客户端的定点坐标（坐标×4096），
+ * 位移在1.12相对移动数据包的short范围内（小于8格）时发送REL_ENTITY_MOVE或REL_ENTITY_MOVE_LOOK，
+ * 位移过大、首次发送或连续相对移动达到校正间隔时发送ENTITY_TELEPORT
+ * 非线程安全，只应在主线程使用
+ */
+public class MovementEncoder {
+    private static final double FIXED_POINT_SCALE = 4096.0;
+
+    // 连续相对移动多少次后强制发送一次传送数据包，校正客户端累积误差
+    private static int teleportInterval = 20;
+
+    private final Map<Integer, EntityState> states = new HashMap<>();
+
+    /**
+     * 单个实体最后发送的位置
+     */
+    private static final class EntityState {
+        private long x;
+        private long y;
+        private long z;
+        private int relativeMoves;
+    }
+
+    /**
+     * 从配置重新读取编码参数
+     * @param config 插件配置
+     */
+    public static void reload(FileConfiguration config) {
+        teleportInterval = Math.max(1, config.getInt("performance.movement.teleport_interval", 20));
+    }
+
+    /**
+     * 编码实体移动
+     * @param entityId 实体ID
+     * @param x 目标X坐标
+     * @param y 目标Y坐标
+     * @param z 目标Z坐标
+     * @param yaw 偏航角
+     * @param pitch 俯仰角
+     * @param look 是否同时发送朝向
+     * @return 移动数据包，位置未变化且不需要朝向时返回null
+     */
+    public PacketContainer encode(int entityId, double x, double y, double z, float yaw, float pitch, boolean look) {
+        EntityState state = states.get(entityId);
+        if (state == null || state.relativeMoves >= teleportInterval) {
+            return teleport(entityId, x, y, z, yaw, pitch);
+        }
+
+        long newX = toFixed(x);
+        long newY = toFixed(y);
+        long newZ = toFixed(z);
+        long dx = newX - state.x;
+        long dy = newY - state.y;
+        long dz = newZ - state.z;
+        if (!fitsShort(dx) || !fitsShort(dy) || !fitsShort(dz)) {
+            return teleport(entityId, x, y, z, yaw, pitch);
+        }
+        if (dx == 0 && dy == 0 && dz == 0 && !look) {
+            return null;
+        }
+
+        PacketContainer packet = new PacketContainer(look
+            ? PacketType.Play.Server.REL_ENTITY_MOVE_LOOK
+            : PacketType.Play.Server.REL_ENTITY_MOVE);
+        packet.getIntegers()
+            .write(0, entityId)
+            .write(1, (int) dx)
+            .write(2, (int) dy)
+            .write(3, (int) dz);
+        if (look) {
+            packet.getBytes()
+                .write(0, toAngle(yaw))
+                .write(1, toAngle(pitch));
+        }
+        packet.getBooleans().write(0, true);
+
+        state.x = newX;
+        state.y = newY;
+        state.z = newZ;
+        state.relativeMoves++;
+        return packet;
+    }
+
+    /**
+     * 编码实体传送，并以传送后的位置作为后续相对移动的基准
+     * @param entityId 实体ID
+     * @param x 目标X坐标
+     * @param y 目标Y坐标
+     * @param z 目标Z坐标
+     * @param yaw 偏航角
+     * @param pitch 俯仰角
+     * @return 传送数据包
+     */
+    public PacketContainer teleport(int entityId, double x, double y, double z, float yaw, float pitch) {
+        PacketContainer packet = new PacketContainer(PacketType.Play.Server.ENTITY_TELEPORT);
+        packet.getIntegers().write(0, entityId);
+        packet.getDoubles()
+            .write(0, x)
+            .write(1, y)
+            .write(2, z);
+        packet.getBytes()
+            .write(0, toAngle(yaw))
+            .write(1, toAngle(pitch));
+
+        EntityState state = states.get(entityId);
+        if (state == null) {
+            state = new EntityState();
+            states.put(entityId, state);
+        }
+        state.x = toFixed(x);
+        state.y = toFixed(y);
+        state.z = toFixed(z);
+        state.relativeMoves = 0;
+        return packet;
+    }
+
+    /**
+     * 记录实体的生成位置，生成数据包已经把实体放在该位置
+     * @param entityId 实体ID
+     * @param x X坐标
+     * @param y Y坐标
+     * @param z Z坐标
+     */
+    public void reset(int entityId, double x, double y, double z) {
+        EntityState state = states.get(entityId);
+        if (state == null) {
+            state = new EntityState();
+            states.put(entityId, state);
+        }
+        state.x = toFixed(x);
+        state.y = toFixed(y);
+        state.z = toFixed(z);
+        state.relativeMoves = 0;
+    }
+
+    /**
+     * 移除实体的编码状态
+     * @param entityId 实体ID
+     */
+    public void remove(int entityId) {
+        states.remove(entityId);
+    }
+
+    /**
+     * 清空所有实体的编码状态
+     */
+    public void clear() {
+        states.clear();
+    }
+
+    private static long toFixed(double value) {
+        return (long) Math.floor(value * FIXED_POINT_SCALE);
+    }
+
+    private static boolean fitsShort(long delta) {
+        return delta >= Short.MIN_VALUE && delta <= Short.MAX_VALUE;
+    }
+
+    private static byte toAngle(float degrees) {
+        return (byte) (degrees * 256.0F / 360.0F);
+    }
+}
@@ -0,0 +1,136 @@
+package cn.i7mc.fateservants.packets;
+
+import cn.i7mc.fateservants.FateServants;
+import cn.i7mc.fateservants.utils.DebugUtils;
+import com.comphenix.protocol.events.PacketContainer;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 英灵数据包发送队列
+ * 每个玩家一个先进先出队列，所有英灵数据包先入队，每tick统一发送一次，
+ * 同一玩家的数据包按入队顺序发送，从而保证同一实体的数据包顺序不变
+ * 非线程安全，只应在主线程使用
+ */
+public class PacketQueue {
+    private final FateServants plugin;
+    private final Map<Player, List<PacketContainer>> queues = new HashMap<>();
+    private final ArrayDeque<List<PacketContainer>> freeLists = new ArrayDeque<>();
+    private BukkitTask task;
+
+    // 统计信息
+    private int queuedThisTick = 0;
+    private int queuedLastTick = 0;
+    private int maxQueuedPerTick = 0;
+    private long totalQueued = 0;
+
+    public PacketQueue(FateServants plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 启动发送任务
+     * 需要在英灵调度器启动之后调用，同一tick内先执行的调度器产生的数据包会在本tick发出
+     */
+    public void start() {
+        if (task != null) return;
+
+        task = new BukkitRunnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }.runTaskTimer(plugin, 1L, 1L);
+    }
+
+    /**
+     * 停止发送任务，并发出所有剩余的数据包
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        flush();
+    }
+
+    /**
+     * 将数据包加入玩家的发送队列
+     * @param player 目标玩家
+     * @param packet 数据包
+     */
+    public void enqueue(Player player, PacketContainer packet) {
+        List<PacketContainer> queue = queues.get(player);
+        if (queue == null) {
+            queue = freeLists.poll();
+            if (queue == null) {
+                queue = new ArrayList<>();
+            }
+            queues.put(player, queue);
+        }
+        queue.add(packet);
+        queuedThisTick++;
+    }
+
+    /**
+     * 发送所有玩家队列中的数据包
+     */
+    public void flush() {
+        for (Map.Entry<Player, List<PacketContainer>> entry : queues.entrySet()) {
+            Player player = entry.getKey();
+            List<PacketContainer> queue = entry.getValue();
+            if (player.isOnline()) {
+                for (int i = 0, size = queue.size(); i < size; i++) {
+                    try {
+                        plugin.getProtocolManager().sendServerPacket(player, queue.get(i));
+                    } catch (Exception e) {
+                        plugin.getLogger().severe("发送数据包时发生错误: " + e.getMessage());
+                    }
+                }
+            }
+            queue.clear();
+            freeLists.push(queue);
+        }
+        int players = queues.size();
+        queues.clear();
+
+        queuedLastTick = queuedThisTick;
+        maxQueuedPerTick = Math.max(maxQueuedPerTick, queuedThisTick);
+        totalQueued += queuedThisTick;
+        queuedThisTick = 0;
+        if (queuedLastTick > 0) {
+            DebugUtils.debug("packet_queue.flush", () -> new Object[]{queuedLastTick, players});
+        }
+    }
+
+    /**
+     * 获取上一tick发送的数据包数量
+     * @return 数据包数量
+     */
+    public int getQueuedLastTick() {
+        return queuedLastTick;
+    }
+
+    /**
+     * 获取单tick发送数据包数量的峰值
+     * @return 数据包数量
+     */
+    public int getMaxQueuedPerTick() {
+        return maxQueuedPerTick;
+    }
+
+    /**
+     * 获取累计发送的数据包数量
+     * @return 数据包数量
+     */
+    public long getTotalQueued() {
+        return totalQueued;
+    }
+}
@@ -0,0 +1,185 @@
+package cn.i7mc.fateservants.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 以区块坐标为键的空间网格
+ * 使用开放寻址的long键哈希表存储每个区块的对象列表，查询时不装箱、不分配对象，
+ * 区块变空或清空时回收列表以便复用
+ * 非线程安全，只应在主线程使用
+ * @param <T> 对象类型
+ */
+public class ChunkGrid<T> {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] keys;
+    private boolean[] used;
+    private List<T>[] buckets;
+    private int size;
+    private int mask;
+    private final ArrayDeque<List<T>> freeBuckets = new ArrayDeque<>();
+
+    public ChunkGrid() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.used = new boolean[capacity];
+        this.buckets = new List[capacity];
+        this.mask = capacity - 1;
+        this.size = 0;
+    }
+
+    private static long key(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private int find(long key) {
+        int index = slot(key);
+        while (used[index]) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * 向指定区块添加对象
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     * @param value 对象
+     */
+    public void add(int chunkX, int chunkZ, T value) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+
+        long key = key(chunkX, chunkZ);
+        int index = slot(key);
+        while (used[index]) {
+            if (keys[index] == key) {
+                buckets[index].add(value);
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+
+        List<T> bucket = freeBuckets.poll();
+        if (bucket == null) {
+            bucket = new ArrayList<>(4);
+        }
+        bucket.add(value);
+        used[index] = true;
+        keys[index] = key;
+        buckets[index] = bucket;
+        size++;
+    }
+
+    /**
+     * 从指定区块移除对象，区块变空时释放其槽位，长期运行时表中只保留有对象的区块
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     * @param value 对象
+     * @return 是否移除成功
+     */
+    public boolean remove(int chunkX, int chunkZ, T value) {
+        int index = find(key(chunkX, chunkZ));
+        if (index < 0 || !buckets[index].remove(value)) {
+            return false;
+        }
+        if (buckets[index].isEmpty()) {
+            delete(index);
+        }
+        return true;
+    }
+
+    /**
+     * 删除槽位并回收其列表
+     * 线性探测不能直接留空，把后续探测链上可以前移的键依次移入空位（backward-shift），不留墓碑
+     */
+    private void delete(int index) {
+        freeBuckets.push(buckets[index]);
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (used[next]) {
+            int home = slot(keys[next]);
+            // 键的初始槽位到当前位置的距离不小于空位到当前位置的距离时，前移后仍能被探测到
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                buckets[hole] = buckets[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[hole] = false;
+        buckets[hole] = null;
+        size--;
+    }
+
+    /**
+     * 获取指定区块内的对象
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     * @return 对象列表，区块为空时返回空列表，不应修改返回的列表
+     */
+    public List<T> get(int chunkX, int chunkZ) {
+        int index = find(key(chunkX, chunkZ));
+        return index >= 0 ? buckets[index] : Collections.<T>emptyList();
+    }
+
+    /**
+     * 清空网格，回收所有区块列表
+     */
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                buckets[i].clear();
+                freeBuckets.push(buckets[i]);
+                buckets[i] = null;
+                used[i] = false;
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * 获取非空区块数量
+     * @return 区块数量
+     */
+    public int getCellCount() {
+        return size;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        List<T>[] oldBuckets = buckets;
+        allocate(oldKeys.length * 2);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (!oldUsed[i]) {
+                continue;
+            }
+            int index = slot(oldKeys[i]);
+            while (used[index]) {
+                index = (index + 1) & mask;
+            }
+            used[index] = true;
+            keys[index] = oldKeys[i];
+            buckets[index] = oldBuckets[i];
+            size++;
+        }
+    }
+}
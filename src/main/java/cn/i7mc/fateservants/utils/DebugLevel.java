@@ -0,0 +1,48 @@
+package cn.i7mc.fateservants.utils;
+
+/**
+ * 调试输出等级
+ * 调试分类配置一个等级作为门槛，每条调试消息也带有一个等级，
+ * 只有消息等级不高于分类门槛时才会输出
+ */
+public enum DebugLevel {
+    /**
+     * 关闭，分类不输出任何调试消息
+     */
+    OFF,
+    /**
+     * 一般事件，如召唤、升级、加载数据
+     */
+    INFO,
+    /**
+     * 高频事件，如每tick的AI更新、每次攻击和获得经验
+     */
+    TRACE;
+
+    /**
+     * 检查该门槛是否允许输出指定等级的消息
+     * @param messageLevel 消息等级
+     * @return 是否允许输出
+     */
+    public boolean allows(DebugLevel messageLevel) {
+        return messageLevel != OFF && ordinal() >= messageLevel.ordinal();
+    }
+
+    /**
+     * 解析配置中的等级名称（不区分大小写）
+     * @param name 等级名称
+     * @param def 名称无效时使用的默认等级
+     * @return 调试等级
+     */
+    public static DebugLevel parse(String name, DebugLevel def) {
+        if (name == null) {
+            return def;
+        }
+        for (DebugLevel level : values()) {
+            if (level.name().equalsIgnoreCase(name.trim())) {
+                return level;
+            }
+        }
+        return def;
+    }
+}
@@ -0,0 +1,314 @@
+package cn.i7mc.fateservants.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * 异步调试日志写入器
+ * 调用线程（通常是主线程）把消息放入有界无锁环形缓冲区后立即返回，
+ * 后台线程批量取出消息写入插件目录下的日志文件，文件超过大小上限后轮转
+ * 缓冲区已满时新消息被丢弃并计数，写入线程在日志中注明丢弃数量
+ */
+public final class DebugLogWriter {
+    // 缓冲区为空时写入线程的等待时间
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    // 关闭时等待写入线程写完剩余消息的最长时间
+    private static final long SHUTDOWN_TIMEOUT_MS = 2000;
+
+    private final File directory;
+    private final String baseName;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final Logger logger;
+
+    // 环形缓冲区：每个槽位的序号表示槽位状态，生产者通过CAS争抢写入位置，只有写入线程消费
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final String[] messages;
+    private final long[] timestamps;
+    private final String[] threadNames;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // 已经在日志中注明过的丢弃数量
+    private long reportedDropped;
+
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private CountingOutputStream output;
+    private Writer writer;
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    private final Date date = new Date();
+
+    /**
+     * 创建写入器并启动后台线程
+     * @param directory 日志目录
+     * @param baseName 日志文件名（不含扩展名）
+     * @param bufferSize 缓冲区容量，向上取整为2的幂
+     * @param maxFileSize 单个文件的最大字节数
+     * @param maxFiles 保留的历史文件数量
+     * @param logger 写入失败时使用的日志记录器
+     */
+    public DebugLogWriter(File directory, String baseName, int bufferSize, long maxFileSize, int maxFiles, Logger logger) {
+        this.directory = directory;
+        this.baseName = baseName;
+        this.maxFileSize = Math.max(1024, maxFileSize);
+        this.maxFiles = Math.max(0, maxFiles);
+        this.logger = logger;
+
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize) - 1) << 1;
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.messages = new String[capacity];
+        this.timestamps = new long[capacity];
+        this.threadNames = new String[capacity];
+
+        this.thread = new Thread(this::run, "FateServants-DebugLog");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 放入一条消息，不阻塞
+     * @param message 消息
+     * @return 缓冲区已满时返回false，消息被丢弃
+     */
+    public boolean offer(String message) {
+        long position = tail.get();
+        int index;
+        while (true) {
+            index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // 写入线程尚未取走这个槽位的消息，缓冲区已满
+                dropped.incrementAndGet();
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+        messages[index] = message;
+        timestamps[index] = System.currentTimeMillis();
+        threadNames[index] = Thread.currentThread().getName();
+        // 发布槽位，写入线程看到新序号时也能看到上面写入的内容
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     * 停止后台线程，等待剩余消息写完
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 获取缓冲区中等待写入的消息数量
+     * @return 消息数量
+     */
+    public int getPending() {
+        return (int) Math.max(0, tail.get() - written.get());
+    }
+
+    /**
+     * 获取已写入文件的消息数量
+     * @return 消息数量
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * 获取因缓冲区已满被丢弃的消息数量
+     * @return 消息数量
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * 获取缓冲区容量
+     * @return 容量
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 获取当前日志文件
+     * @return 日志文件
+     */
+    public File getFile() {
+        return new File(directory, baseName + ".log");
+    }
+
+    private void run() {
+        try {
+            open();
+            while (true) {
+                int count = drain();
+                reportDropped();
+                if (count > 0) {
+                    writer.flush();
+                    continue;
+                }
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        } catch (IOException e) {
+            logger.warning("写入调试日志文件失败，异步调试日志已停止: " + e.getMessage());
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    /**
+     * 取出缓冲区中当前所有的消息并写入文件
+     * @return 写入的消息数量
+     */
+    private int drain() throws IOException {
+        int count = 0;
+        while (true) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                return count;
+            }
+            String message = messages[index];
+            long timestamp = timestamps[index];
+            String threadName = threadNames[index];
+            messages[index] = null;
+            threadNames[index] = null;
+            // 释放槽位给下一轮的生产者
+            sequences.lazySet(index, head + mask + 1);
+            head++;
+
+            writeLine(timestamp, threadName, message);
+            written.incrementAndGet();
+            count++;
+        }
+    }
+
+    private void reportDropped() throws IOException {
+        long total = dropped.get();
+        if (total > reportedDropped) {
+            writeLine(System.currentTimeMillis(), thread.getName(),
+                "[DEBUG-LOG] 缓冲区已满，丢弃了 " + (total - reportedDropped) + " 条调试消息");
+            reportedDropped = total;
+            writer.flush();
+        }
+    }
+
+    private void writeLine(long timestamp, String threadName, String message) throws IOException {
+        if (output.getCount() >= maxFileSize) {
+            rotate();
+        }
+        date.setTime(timestamp);
+        writer.write(timeFormat.format(date));
+        writer.write(" [");
+        writer.write(threadName);
+        writer.write("] ");
+        writer.write(message);
+        writer.write(System.lineSeparator());
+    }
+
+    private void open() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("无法创建日志目录 " + directory.getPath());
+        }
+        File file = getFile();
+        output = new CountingOutputStream(new FileOutputStream(file, true), file.length());
+        writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 轮转日志文件：debug.log -> debug.1.log -> debug.2.log ...，超出保留数量的文件被删除
+     */
+    private void rotate() throws IOException {
+        writer.flush();
+        writer.close();
+        File current = getFile();
+        if (maxFiles == 0) {
+            current.delete();
+        } else {
+            new File(directory, baseName + "." + maxFiles + ".log").delete();
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                File source = new File(directory, baseName + "." + i + ".log");
+                if (source.exists()) {
+                    source.renameTo(new File(directory, baseName + "." + (i + 1) + ".log"));
+                }
+            }
+            current.renameTo(new File(directory, baseName + ".1.log"));
+        }
+        open();
+    }
+
+    private void closeQuietly() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 统计已写入字节数的输出流，用于判断是否需要轮转
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out, long initialCount) {
+            super(out);
+            this.count = initialCount;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
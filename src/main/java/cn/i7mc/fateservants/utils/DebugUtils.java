@@ -1,20 +1,89 @@
 package cn.i7mc.fateservants.utils;
 
 import cn.i7mc.fateservants.FateServants;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 /**
  * 调试工具类，用于统一处理插件中的调试信息
+ * 每条调试消息按键的一级名称归入一个分类（如servant.update_ai属于servant分类），
+ * 分类的输出等级由config.yml中的debug_levels配置，同一条消息的输出频率受debug_rate_limit限制
+ * 调试关闭时调用只检查一个开关，高频路径使用Supplier传入参数，只有确定输出时才计算参数
+ * debug_log.output为file时调试消息交给DebugLogWriter异步写入文件，不在主线程写控制台
  */
 public class DebugUtils {
     private static FateServants plugin;
     private static FileConfiguration debugMessageConfig;
-    private static boolean debugEnabled = false;
+    // 是否有任何分类可能输出，关闭时所有调用只检查这一个开关
+    private static volatile boolean debugEnabled = false;
+    // config.yml中的debug开关，关闭时只有通过/fs debug开启的分类会输出
+    private static volatile boolean configDebug = false;
     private static Logger logger;
+    // 各分类的输出等级，未配置的分类使用defaultLevel
+    private static volatile Map<String, DebugLevel> categoryLevels = Collections.emptyMap();
+    private static volatile DebugLevel defaultLevel = DebugLevel.INFO;
+    // 通过/fs debug临时设置的分类等级，优先于配置，重载时清空
+    private static final Map<String, DebugLevel> OVERRIDES = new ConcurrentHashMap<>();
+    // 异步文件输出
+    private static boolean fileOutput;
+    private static int logBufferSize;
+    private static long logMaxFileSize;
+    private static int logMaxFiles;
+    private static volatile DebugLogWriter logWriter;
+    // 同一条消息每秒最多输出的次数，0表示不限制
+    private static volatile int rateLimit = 20;
+    // 每个消息键的编译结果和限流状态，重载时清空
+    private static final Map<String, DebugEntry> ENTRIES = new ConcurrentHashMap<>();
+    private static final Object[] NO_ARGS = new Object[0];
+    
+    /**
+     * 单个调试消息键的状态
+     */
+    private static final class DebugEntry {
+        // 所属分类的输出等级
+        private final DebugLevel threshold;
+        // 编译后的消息模板，未配置时为null
+        private final PlaceholderTemplate<Integer> template;
+        private long windowStart;
+        private int count;
+        private int suppressed;
+        
+        private DebugEntry(DebugLevel threshold, PlaceholderTemplate<Integer> template) {
+            this.threshold = threshold;
+            this.template = template;
+        }
+        
+        /**
+         * 申请一次输出
+         * @param now 当前时间（毫秒）
+         * @param limit 每秒最多输出次数
+         * @return 允许输出时返回上一个时间窗口内被省略的消息数，不允许时返回-1
+         */
+        private synchronized int acquire(long now, int limit) {
+            if (now - windowStart >= 1000) {
+                windowStart = now;
+                count = 0;
+            }
+            if (limit > 0 && count >= limit) {
+                suppressed++;
+                return -1;
+            }
+            count++;
+            int dropped = suppressed;
+            suppressed = 0;
+            return dropped;
+        }
+    }
     
     /**
      * 初始化调试工具类
@@ -31,7 +100,34 @@ public class DebugUtils {
      */
     public static void reload() {
         // 读取config.yml中的debug设置
-        debugEnabled = plugin.getConfig().getBoolean("debug", false);
+        FileConfiguration config = plugin.getConfig();
+        configDebug = config.getBoolean("debug", false);
+        rateLimit = Math.max(0, config.getInt("debug_rate_limit", 20));
+        
+        // 读取各分类的输出等级
+        Map<String, DebugLevel> levels = new HashMap<>();
+        DebugLevel fallback = DebugLevel.INFO;
+        ConfigurationSection section = config.getConfigurationSection("debug_levels");
+        if (section != null) {
+            for (String category : section.getKeys(false)) {
+                DebugLevel level = DebugLevel.parse(section.getString(category), DebugLevel.INFO);
+                if (category.equals("default")) {
+                    fallback = level;
+                } else {
+                    levels.put(category, level);
+                }
+            }
+        }
+        categoryLevels = levels;
+        defaultLevel = fallback;
+        OVERRIDES.clear();
+        
+        // 读取异步日志设置，设置变化后重新创建写入器
+        closeLogWriter();
+        fileOutput = "file".equalsIgnoreCase(config.getString("debug_log.output", "file"));
+        logBufferSize = Math.max(64, config.getInt("debug_log.buffer_size", 8192));
+        logMaxFileSize = Math.max(1, config.getLong("debug_log.max_file_size_kb", 10240)) * 1024L;
+        logMaxFiles = Math.max(0, config.getInt("debug_log.max_files", 5));
         
         // 加载debugmessage.yml
         File debugFile = new File(plugin.getDataFolder(), "debugmessage.yml");
@@ -39,10 +135,110 @@ public class DebugUtils {
             plugin.saveResource("debugmessage.yml", false);
         }
         debugMessageConfig = YamlConfiguration.loadConfiguration(debugFile);
+        updateEnabled();
+    }
+    
+    /**
+     * 获取debugmessage.yml中定义的所有调试分类，用于命令补全
+     * @return 分类名称
+     */
+    public static Set<String> getCategories() {
+        FileConfiguration config = debugMessageConfig;
+        return config == null ? Collections.emptySet() : config.getKeys(false);
+    }
+    
+    /**
+     * 获取分类当前的输出等级
+     * @param category 分类
+     * @return 输出等级
+     */
+    public static DebugLevel getCategoryLevel(String category) {
+        DebugLevel override = OVERRIDES.get(category);
+        if (override != null) {
+            return override;
+        }
+        if (!configDebug) {
+            return DebugLevel.OFF;
+        }
+        return categoryLevels.getOrDefault(category, defaultLevel);
+    }
+    
+    /**
+     * 临时设置分类的输出等级，不写入配置，重载后恢复为配置中的等级
+     * @param category 分类
+     * @param level 输出等级
+     */
+    public static void setCategoryLevel(String category, DebugLevel level) {
+        OVERRIDES.put(category, level);
+        updateEnabled();
+    }
+    
+    /**
+     * 切换分类的调试输出：已开启时关闭，已关闭时以TRACE等级开启
+     * @param category 分类
+     * @return 切换后的输出等级
+     */
+    public static DebugLevel toggleCategory(String category) {
+        DebugLevel level = getCategoryLevel(category).allows(DebugLevel.INFO) ? DebugLevel.OFF : DebugLevel.TRACE;
+        setCategoryLevel(category, level);
+        return level;
+    }
+    
+    /**
+     * 获取异步日志写入器，未使用文件输出或调试未开启过时为null
+     * @return 写入器
+     */
+    public static DebugLogWriter getLogWriter() {
+        return logWriter;
+    }
+    
+    /**
+     * 停止异步日志写入器，等待缓冲区中的消息写完，插件关闭时调用
+     */
+    public static void shutdown() {
+        debugEnabled = false;
+        closeLogWriter();
+    }
+    
+    /**
+     * 分类等级变化后重新计算总开关，清空按键缓存的分类等级
+     */
+    private static synchronized void updateEnabled() {
+        boolean enabled = configDebug;
+        for (DebugLevel level : OVERRIDES.values()) {
+            if (level != DebugLevel.OFF) {
+                enabled = true;
+                break;
+            }
+        }
+        if (enabled && fileOutput && logWriter == null) {
+            logWriter = new DebugLogWriter(new File(plugin.getDataFolder(), "logs"), "debug",
+                logBufferSize, logMaxFileSize, logMaxFiles, logger);
+        }
+        ENTRIES.clear();
+        debugEnabled = enabled;
+    }
+    
+    private static synchronized void closeLogWriter() {
+        DebugLogWriter writer = logWriter;
+        logWriter = null;
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+    
+    /**
+     * 检查指定等级的调试消息是否会输出，用于在构造开销较大的参数前判断
+     * @param key 调试消息键
+     * @param level 消息等级
+     * @return 是否会输出
+     */
+    public static boolean isEnabled(String key, DebugLevel level) {
+        return debugEnabled && entry(key).threshold.allows(level);
     }
     
     /**
-     * 输出调试信息，仅在debug=true时生效
+     * 输出调试信息，仅在debug=true且分类等级不低于INFO时生效
      * @param key 调试消息键
      * @param args 参数
      */
@@ -50,18 +246,111 @@ public class DebugUtils {
         if (!debugEnabled) {
             return;
         }
-        
-        String message = debugMessageConfig.getString(key);
-        if (message == null) {
-            message = "调试消息未配置：" + key;
+        write(key, DebugLevel.INFO, args);
+    }
+    
+    /**
+     * 输出调试信息，参数只在确定输出时计算
+     * @param key 调试消息键
+     * @param args 参数提供者
+     */
+    public static void debug(String key, Supplier<Object[]> args) {
+        if (!debugEnabled) {
+            return;
+        }
+        write(key, DebugLevel.INFO, args);
+    }
+    
+    /**
+     * 输出高频调试信息，仅在分类等级为TRACE时生效
+     * @param key 调试消息键
+     * @param args 参数
+     */
+    public static void trace(String key, Object... args) {
+        if (!debugEnabled) {
+            return;
+        }
+        write(key, DebugLevel.TRACE, args);
+    }
+    
+    /**
+     * 输出高频调试信息，参数只在确定输出时计算
+     * 每tick或每次攻击执行的调用点应使用此方法，避免在调试关闭时格式化坐标、拼接字符串
+     * @param key 调试消息键
+     * @param args 参数提供者
+     */
+    public static void trace(String key, Supplier<Object[]> args) {
+        if (!debugEnabled) {
+            return;
+        }
+        write(key, DebugLevel.TRACE, args);
+    }
+    
+    private static void write(String key, DebugLevel level, Object[] args) {
+        DebugEntry entry = entry(key);
+        int dropped = admit(entry, level);
+        if (dropped >= 0) {
+            emit(entry, key, args, dropped);
+        }
+    }
+    
+    private static void write(String key, DebugLevel level, Supplier<Object[]> args) {
+        DebugEntry entry = entry(key);
+        int dropped = admit(entry, level);
+        if (dropped >= 0) {
+            emit(entry, key, args.get(), dropped);
+        }
+    }
+    
+    /**
+     * 检查分类等级和输出频率
+     * @return 允许输出时返回被省略的消息数，否则返回-1
+     */
+    private static int admit(DebugEntry entry, DebugLevel level) {
+        if (!entry.threshold.allows(level)) {
+            return -1;
+        }
+        return entry.acquire(System.currentTimeMillis(), rateLimit);
+    }
+    
+    private static void emit(DebugEntry entry, String key, Object[] args, int dropped) {
+        StringBuilder message = new StringBuilder("[DEBUG] ");
+        if (entry.template == null) {
+            message.append("调试消息未配置：").append(key);
         } else {
-            // 替换参数
-            for (int i = 0; i < args.length; i++) {
-                message = message.replace("{" + i + "}", String.valueOf(args[i]));
-            }
+            entry.template.appendTo(message, MessageManager.ARGUMENTS, args == null ? NO_ARGS : args);
         }
-        
-        logger.info("[DEBUG] " + message);
+        if (dropped > 0) {
+            message.append(" (已省略 ").append(dropped).append(" 条相同消息)");
+        }
+        output(message.toString());
+    }
+    
+    /**
+     * 输出一行调试信息，使用文件输出时放入异步写入器的缓冲区
+     * @param message 消息
+     */
+    private static void output(String message) {
+        DebugLogWriter writer = logWriter;
+        if (writer != null) {
+            writer.offer(message);
+        } else {
+            logger.info(message);
+        }
+    }
+    
+    private static DebugEntry entry(String key) {
+        DebugEntry entry = ENTRIES.get(key);
+        if (entry == null) {
+            int dot = key.indexOf('.');
+            String category = dot < 0 ? key : key.substring(0, dot);
+            DebugLevel threshold = getCategoryLevel(category);
+            String message = debugMessageConfig.getString(key);
+            entry = new DebugEntry(threshold,
+                message == null ? null : PlaceholderTemplate.compile(message, MessageManager::parseIndex));
+            ENTRIES.put(key, entry);
+        }
+        return entry;
     }
     
     /**
@@ -95,7 +384,7 @@ public class DebugUtils {
         }
         
         long duration = System.currentTimeMillis() - startTime;
-        logger.info("[PERF] " + operation + " - 耗时: " + duration + "ms");
+        output("[PERF] " + operation + " - 耗时: " + duration + "ms");
     }
     
     /**
@@ -136,7 +425,7 @@ public class DebugUtils {
         }
         
         String params = paramsStr.length() > 0 ? paramsStr.substring(0, paramsStr.length() - 2) : "";
-        logger.info("[DEBUG-ASYNC] " + operation + " - 参数: [" + params + "]");
+        output("[DEBUG-ASYNC] " + operation + " - 参数: [" + params + "]");
     }
     
     /**
@@ -150,7 +439,7 @@ public class DebugUtils {
             return;
         }
         
-        logger.info("[DEBUG-CACHE] " + cacheName + " - " + operation + ": " + key);
+        output("[DEBUG-CACHE] " + cacheName + " - " + operation + ": " + key);
     }
     
     /**
@@ -172,7 +461,7 @@ public class DebugUtils {
             return;
         }
         
-        logger.info("[DEBUG] " + label + ": " + (obj == null ? "null" : obj.toString()));
+        output("[DEBUG] " + label + ": " + (obj == null ? "null" : obj.toString()));
     }
     
     /**
@@ -0,0 +1,488 @@
+package cn.i7mc.fateservants.utils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * 预编译的算术表达式
+ * 配置中的公式在加载时解析为表达式树，变量写作{name}并在编译时绑定为序号，求值时不创建任何对象
+ * 支持 + - * / % ^（乘方）、括号、一元正负号、常量PI和E，
+ * 以及函数abs、sqrt、floor、ceil、round、log、exp、min、max、pow（可带Math.前缀）
+ * 编译后的表达式是不可变的，可在多个线程中同时求值
+ */
+public final class Expression {
+    private final String source;
+    private final List<String> variables;
+    private final Node root;
+    // 单变量求值时使用的变量数组，每个线程一份
+    private final ThreadLocal<double[]> scratch;
+
+    private Expression(String source, List<String> variables, Node root) {
+        this.source = source;
+        this.variables = variables;
+        this.root = root;
+        int size = Math.max(1, variables.size());
+        this.scratch = ThreadLocal.withInitial(() -> new double[size]);
+    }
+
+    /**
+     * 编译表达式
+     * @param formula 公式
+     * @param variables 可用的变量名称（不含花括号），求值时按相同顺序传入变量值
+     * @return 编译后的表达式
+     * @throws IllegalArgumentException 公式为空、语法错误或使用了未声明的变量
+     */
+    public static Expression compile(String formula, String... variables) {
+        if (formula == null || formula.trim().isEmpty()) {
+            throw new IllegalArgumentException("公式不能为空");
+        }
+        List<String> names = Arrays.asList(variables.clone());
+        Parser parser = new Parser(formula, names);
+        Node root = parser.parseExpression();
+        parser.skipWhitespace();
+        if (parser.pos < formula.length()) {
+            throw parser.error("无法识别的字符 '" + formula.charAt(parser.pos) + "'");
+        }
+        return new Expression(formula, names, root);
+    }
+
+    /**
+     * 求值
+     * @param values 变量值，顺序与编译时声明的变量相同
+     * @return 计算结果
+     */
+    public double evaluate(double[] values) {
+        return root.eval(values);
+    }
+
+    /**
+     * 以单个变量求值，适用于只声明了一个变量的表达式
+     * @param value 变量值
+     * @return 计算结果
+     */
+    public double evaluate(double value) {
+        double[] values = scratch.get();
+        values[0] = value;
+        return root.eval(values);
+    }
+
+    /**
+     * 获取原始公式
+     * @return 公式
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 获取声明的变量名称
+     * @return 变量名称列表
+     */
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * 表达式树节点
+     */
+    private abstract static class Node {
+        abstract double eval(double[] values);
+
+        boolean isConstant() {
+            return false;
+        }
+    }
+
+    private static final class Constant extends Node {
+        private final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        double eval(double[] values) {
+            return value;
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+    }
+
+    private static final class Variable extends Node {
+        private final int index;
+
+        Variable(int index) {
+            this.index = index;
+        }
+
+        @Override
+        double eval(double[] values) {
+            return values[index];
+        }
+    }
+
+    private static final class Negate extends Node {
+        private final Node operand;
+
+        Negate(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        double eval(double[] values) {
+            return -operand.eval(values);
+        }
+    }
+
+    private static final class Binary extends Node {
+        private final char operator;
+        private final Node left;
+        private final Node right;
+
+        Binary(char operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double eval(double[] values) {
+            double a = left.eval(values);
+            double b = right.eval(values);
+            switch (operator) {
+                case '+':
+                    return a + b;
+                case '-':
+                    return a - b;
+                case '*':
+                    return a * b;
+                case '/':
+                    return a / b;
+                case '%':
+                    return a % b;
+                default:
+                    return Math.pow(a, b);
+            }
+        }
+    }
+
+    private static final class UnaryFunction extends Node {
+        private final DoubleUnaryOperator function;
+        private final Node argument;
+
+        UnaryFunction(DoubleUnaryOperator function, Node argument) {
+            this.function = function;
+            this.argument = argument;
+        }
+
+        @Override
+        double eval(double[] values) {
+            return function.applyAsDouble(argument.eval(values));
+        }
+    }
+
+    private static final class BinaryFunction extends Node {
+        private final DoubleBinaryOperator function;
+        private final Node first;
+        private final Node second;
+
+        BinaryFunction(DoubleBinaryOperator function, Node first, Node second) {
+            this.function = function;
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        double eval(double[] values) {
+            return function.applyAsDouble(first.eval(values), second.eval(values));
+        }
+    }
+
+    /**
+     * 递归下降解析器
+     * expression := term (('+' | '-') term)*
+     * term       := unary (('*' | '/' | '%') unary)*
+     * unary      := ('+' | '-') unary | power
+     * power      := primary ('^' unary)?
+     * primary    := number | '{' name '}' | name | name '(' arguments ')' | '(' expression ')'
+     */
+    private static final class Parser {
+        private final String formula;
+        private final List<String> variables;
+        private int pos;
+
+        Parser(String formula, List<String> variables) {
+            this.formula = formula;
+            this.variables = variables;
+        }
+
+        Node parseExpression() {
+            Node node = parseTerm();
+            while (true) {
+                if (consume('+')) {
+                    node = fold(new Binary('+', node, parseTerm()));
+                } else if (consume('-')) {
+                    node = fold(new Binary('-', node, parseTerm()));
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node parseTerm() {
+            Node node = parseUnary();
+            while (true) {
+                if (consume('*')) {
+                    node = fold(new Binary('*', node, parseUnary()));
+                } else if (consume('/')) {
+                    node = fold(new Binary('/', node, parseUnary()));
+                } else if (consume('%')) {
+                    node = fold(new Binary('%', node, parseUnary()));
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node parseUnary() {
+            if (consume('+')) {
+                return parseUnary();
+            }
+            if (consume('-')) {
+                return fold(new Negate(parseUnary()));
+            }
+            return parsePower();
+        }
+
+        private Node parsePower() {
+            Node base = parsePrimary();
+            if (consume('^')) {
+                return fold(new Binary('^', base, parseUnary()));
+            }
+            return base;
+        }
+
+        private Node parsePrimary() {
+            skipWhitespace();
+            if (pos >= formula.length()) {
+                throw error("公式意外结束");
+            }
+
+            char c = formula.charAt(pos);
+            if (c == '(') {
+                pos++;
+                Node node = parseExpression();
+                expect(')');
+                return node;
+            }
+            if (c == '{') {
+                return parseVariable();
+            }
+            if (isDigit(c) || c == '.') {
+                return parseNumber();
+            }
+            if (Character.isLetter(c)) {
+                return parseName();
+            }
+            throw error("无法识别的字符 '" + c + "'");
+        }
+
+        private Node parseVariable() {
+            int start = pos;
+            int end = formula.indexOf('}', start);
+            if (end < 0) {
+                throw error("变量缺少右花括号");
+            }
+            String name = formula.substring(start + 1, end).trim();
+            int index = variables.indexOf(name);
+            if (index < 0) {
+                throw error("未知变量 {" + name + "}，可用变量: " + describeVariables());
+            }
+            pos = end + 1;
+            return new Variable(index);
+        }
+
+        private Node parseNumber() {
+            int start = pos;
+            while (pos < formula.length() && (isDigit(formula.charAt(pos)) || formula.charAt(pos) == '.')) {
+                pos++;
+            }
+            // 科学计数法
+            if (pos < formula.length() && (formula.charAt(pos) == 'e' || formula.charAt(pos) == 'E')) {
+                int mark = pos;
+                pos++;
+                if (pos < formula.length() && (formula.charAt(pos) == '+' || formula.charAt(pos) == '-')) {
+                    pos++;
+                }
+                if (pos < formula.length() && isDigit(formula.charAt(pos))) {
+                    while (pos < formula.length() && isDigit(formula.charAt(pos))) {
+                        pos++;
+                    }
+                } else {
+                    pos = mark;
+                }
+            }
+            String text = formula.substring(start, pos);
+            try {
+                return new Constant(Double.parseDouble(text));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("无效的数字 '" + text + "'");
+            }
+        }
+
+        private Node parseName() {
+            int start = pos;
+            while (pos < formula.length()
+                && (Character.isLetterOrDigit(formula.charAt(pos)) || formula.charAt(pos) == '_' || formula.charAt(pos) == '.')) {
+                pos++;
+            }
+            String name = formula.substring(start, pos);
+            String key = name.startsWith("Math.") ? name.substring(5) : name;
+
+            skipWhitespace();
+            if (pos >= formula.length() || formula.charAt(pos) != '(') {
+                switch (key) {
+                    case "PI":
+                        return new Constant(Math.PI);
+                    case "E":
+                        return new Constant(Math.E);
+                    default:
+                        pos = start;
+                        throw error("未知名称 '" + name + "'，变量需要写成{变量名}的形式");
+                }
+            }
+
+            pos++;
+            Node first = parseExpression();
+            Node second = null;
+            if (consume(',')) {
+                second = parseExpression();
+            }
+            expect(')');
+
+            DoubleUnaryOperator unary = null;
+            DoubleBinaryOperator binary = null;
+            switch (key) {
+                case "abs":
+                    unary = Math::abs;
+                    break;
+                case "sqrt":
+                    unary = Math::sqrt;
+                    break;
+                case "floor":
+                    unary = Math::floor;
+                    break;
+                case "ceil":
+                    unary = Math::ceil;
+                    break;
+                case "round":
+                    unary = value -> (double) Math.round(value);
+                    break;
+                case "log":
+                    unary = Math::log;
+                    break;
+                case "exp":
+                    unary = Math::exp;
+                    break;
+                case "min":
+                    binary = Math::min;
+                    break;
+                case "max":
+                    binary = Math::max;
+                    break;
+                case "pow":
+                    binary = Math::pow;
+                    break;
+                default:
+                    pos = start;
+                    throw error("未知函数 '" + name + "'");
+            }
+
+            if (unary != null) {
+                if (second != null) {
+                    pos = start;
+                    throw error("函数 '" + name + "' 只接受一个参数");
+                }
+                return fold(new UnaryFunction(unary, first));
+            }
+            if (second == null) {
+                pos = start;
+                throw error("函数 '" + name + "' 需要两个参数");
+            }
+            return fold(new BinaryFunction(binary, first, second));
+        }
+
+        /**
+         * 常量折叠：所有子节点都是常量时直接计算结果
+         */
+        private Node fold(Node node) {
+            boolean constant;
+            if (node instanceof Binary) {
+                constant = ((Binary) node).left.isConstant() && ((Binary) node).right.isConstant();
+            } else if (node instanceof Negate) {
+                constant = ((Negate) node).operand.isConstant();
+            } else if (node instanceof UnaryFunction) {
+                constant = ((UnaryFunction) node).argument.isConstant();
+            } else if (node instanceof BinaryFunction) {
+                constant = ((BinaryFunction) node).first.isConstant() && ((BinaryFunction) node).second.isConstant();
+            } else {
+                constant = false;
+            }
+            return constant ? new Constant(node.eval(null)) : node;
+        }
+
+        private boolean consume(char expected) {
+            skipWhitespace();
+            if (pos < formula.length() && formula.charAt(pos) == expected) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char expected) {
+            if (!consume(expected)) {
+                throw error("缺少 '" + expected + "'");
+            }
+        }
+
+        void skipWhitespace() {
+            while (pos < formula.length() && Character.isWhitespace(formula.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private String describeVariables() {
+            if (variables.isEmpty()) {
+                return "无";
+            }
+            StringBuilder builder = new StringBuilder();
+            for (String variable : variables) {
+                if (builder.length() > 0) {
+                    builder.append(", ");
+                }
+                builder.append('{').append(variable).append('}');
+            }
+            return builder.toString();
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("公式 \"" + formula + "\" 第" + (pos + 1) + "个字符处" + message);
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package cn.i7mc.fateservants.utils;
 
 import cn.i7mc.fateservants.FateServants;
+import cn.i7mc.fateservants.attributes.AttributeInfo;
 import cn.i7mc.fateservants.attributes.ServantQuality;
 import cn.i7mc.fateservants.config.ConfigManager;
 import cn.i7mc.fateservants.model.Servant;
@@ -13,8 +14,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * 格式化工具类，用于处理各种显示格式化
@@ -22,7 +21,16 @@ import java.util.regex.Pattern;
 public class FormatUtils {
     private static FateServants plugin;
     private static ConfigManager configManager;
-    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\{([^{}]+)\\}");
+    // 按模板字符串缓存的编译模板，占位符名称直接作为键
+    private static final PlaceholderTemplate.Cache<String> TEMPLATES = new PlaceholderTemplate.Cache<>(name -> name);
+    private static final PlaceholderTemplate.Resolver<String, Map<String, Object>> MAP_RESOLVER = (key, values, out) -> {
+        Object value = values.get(key);
+        if (value != null) {
+            out.append(value);
+        }
+    };
+    private static final PlaceholderTemplate.Cache<AttributeSlot> ATTRIBUTE_TEMPLATES =
+        new PlaceholderTemplate.Cache<>(AttributeSlot::byName);
     private static final Map<String, DecimalFormat> numberFormatCache = new HashMap<>();
     
     /**
@@ -317,21 +325,12 @@ public class FormatUtils {
             return "";
         }
         
-        Matcher matcher = PLACEHOLDER_PATTERN.matcher(template);
-        StringBuffer result = new StringBuffer();
-        
-        while (matcher.find()) {
-            String key = matcher.group(1);
-            Object value = values.get(key);
-            String replacement = (value == null) ? "" : value.toString();
-            // 替换特殊字符
-            replacement = replacement.replace("\\", "\\\\").replace("$", "\\$");
-            matcher.appendReplacement(result, replacement);
-        }
-        
-        matcher.appendTail(result);
+        // 使用预编译的模板渲染，未提供值的占位符替换为空
+        StringBuilder result = PlaceholderTemplate.buffer();
+        TEMPLATES.get(template).appendTo(result, MAP_RESOLVER, values);
         // 应用颜色代码
-        return ChatColor.translateAlternateColorCodes('&', result.toString());
+        PlaceholderTemplate.translateColorCodes(result);
+        return result.toString();
     }
     
     /**
@@ -356,6 +355,71 @@ public class FormatUtils {
      */
     public static void clearCache() {
         numberFormatCache.clear();
+        TEMPLATES.clear();
+        ATTRIBUTE_TEMPLATES.clear();
+    }
+    
+    /**
+     * 属性显示格式中可用的占位符
+     */
+    private enum AttributeSlot {
+        DISPLAY_NAME, VALUE, SYMBOL;
+        
+        private static AttributeSlot byName(String name) {
+            switch (name) {
+                case "display_name":
+                    return DISPLAY_NAME;
+                case "value":
+                    return VALUE;
+                case "symbol":
+                    return SYMBOL;
+                default:
+                    return null;
+            }
+        }
+    }
+    
+    /**
+     * 属性显示格式的渲染上下文
+     */
+    private static final class AttributeValue {
+        private final AttributeInfo info;
+        private final double value;
+        
+        private AttributeValue(AttributeInfo info, double value) {
+            this.info = info;
+            this.value = value;
+        }
+    }
+    
+    private static final PlaceholderTemplate.Resolver<AttributeSlot, AttributeValue> ATTRIBUTE_RESOLVER = (slot, attribute, out) -> {
+        switch (slot) {
+            case DISPLAY_NAME:
+                out.append(attribute.info.getDisplayName());
+                break;
+            case VALUE:
+                PlaceholderTemplate.appendFixed1(out, attribute.value);
+                break;
+            case SYMBOL:
+                out.append(attribute.info.getSymbol());
+                break;
+            default:
+                break;
+        }
+    };
+    
+    /**
+     * 按属性的显示格式（stats.yml中的format）格式化属性值
+     * 支持{display_name}、{value}（保留一位小数）和{symbol}占位符，并应用颜色代码
+     * @param info 属性信息
+     * @param value 属性值
+     * @return 格式化后的属性显示文本
+     */
+    public static String formatAttribute(AttributeInfo info, double value) {
+        StringBuilder result = PlaceholderTemplate.buffer();
+        ATTRIBUTE_TEMPLATES.get(info.getFormat()).appendTo(result, ATTRIBUTE_RESOLVER, new AttributeValue(info, value));
+        PlaceholderTemplate.translateColorCodes(result);
+        return result.toString();
     }
     
     /**
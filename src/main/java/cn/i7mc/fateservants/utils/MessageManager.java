@@ -3,18 +3,24 @@ package cn.i7mc.fateservants.utils;
 import cn.i7mc.fateservants.FateServants;
 import org.bukkit.ChatColor;
 import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 
-import java.io.File;
-
 /**
  * 消息管理器，统一管理插件中的消息
  */
 public class MessageManager {
     private static FateServants plugin;
     private static FileConfiguration messageConfig;
-    private static FileConfiguration debugMessageConfig;
+    
+    // 按消息文本缓存的编译模板，占位符{0}、{1}...绑定为参数序号
+    private static final PlaceholderTemplate.Cache<Integer> TEMPLATES = new PlaceholderTemplate.Cache<>(MessageManager::parseIndex);
+    static final PlaceholderTemplate.Resolver<Integer, Object[]> ARGUMENTS = (index, args, out) -> {
+        if (index < args.length) {
+            out.append(args[index]);
+        } else {
+            out.append('{').append(index.intValue()).append('}');
+        }
+    };
     
     /**
      * 初始化消息管理器
@@ -35,13 +41,7 @@ public class MessageManager {
             }
             
             messageConfig = plugin.getMessageConfig();
-            
-            // 加载debugmessage.yml
-            File debugFile = new File(plugin.getDataFolder(), "debugmessage.yml");
-            if (!debugFile.exists()) {
-                plugin.saveResource("debugmessage.yml", false);
-            }
-            debugMessageConfig = YamlConfiguration.loadConfiguration(debugFile);
+            TEMPLATES.clear();
         } catch (Exception e) {
             if (plugin != null) {
                 plugin.getLogger().severe("重新加载消息配置时出错: " + e.getMessage());
@@ -74,10 +74,10 @@ public class MessageManager {
      */
     public static String get(String key, Object... args) {
         String message = get(key);
-        for (int i = 0; i < args.length; i++) {
-            message = message.replace("{" + i + "}", String.valueOf(args[i]));
+        if (args.length == 0) {
+            return message;
         }
-        return message;
+        return TEMPLATES.get(message).render(ARGUMENTS, args);
     }
     
     /**
@@ -91,25 +91,31 @@ public class MessageManager {
     }
     
     /**
-     * 记录调试消息
+     * 记录调试消息，交给DebugUtils按分类等级和频率限制输出
      * @param key 调试消息键
      * @param args 参数
      */
     public static void debug(String key, Object... args) {
-        if (!plugin.getConfig().getBoolean("debug", false)) {
-            return;
+        DebugUtils.debug(key, args);
+    }
+    
+    /**
+     * 把占位符名称解析为参数序号
+     * @param name 占位符名称
+     * @return 参数序号，不是非负整数时返回null
+     */
+    static Integer parseIndex(String name) {
+        if (name.length() > 9) {
+            return null;
         }
-        
-        String message = debugMessageConfig.getString(key);
-        if (message == null) {
-            message = "调试消息未配置：" + key;
-        } else {
-            message = ChatColor.translateAlternateColorCodes('&', message);
-            for (int i = 0; i < args.length; i++) {
-                message = message.replace("{" + i + "}", String.valueOf(args[i]));
+        int index = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
             }
+            index = index * 10 + (c - '0');
         }
-        
-        plugin.getLogger().info("[DEBUG] " + message);
+        return index;
     }
-} 
\ No newline at end of file
+}
@@ -16,73 +16,9 @@ import java.util.stream.Collectors;
  * 优化工具类，提供各种计算优化功能
  */
 public class OptimizationUtils {
-    private static final Map<Integer, Integer> expCache = new ConcurrentHashMap<>();
     private static final Map<String, Long> lastUpdateTime = new ConcurrentHashMap<>();
     private static final int UPDATE_INTERVAL_MS = 500; // 更新间隔毫秒
     
-    /**
-     * 获取指定等级所需的经验值（使用缓存）
-     * @param level 等级
-     * @return 所需经验值
-     */
-    public static int getRequiredExperience(int level) {
-        // 从缓存获取
-        if (expCache.containsKey(level)) {
-            DebugUtils.log("optimization.exp_cache_hit", level, expCache.get(level));
-            return expCache.get(level);
-        }
-        
-        // 计算经验值
-        int exp = calculateRequiredExperience(level);
-        
-        // 缓存结果
-        expCache.put(level, exp);
-        DebugUtils.log("optimization.exp_precalc", level, exp);
-        
-        return exp;
-    }
-    
-    /**
-     * 计算指定等级所需的经验值
-     * @param level 等级
-     * @return 所需经验值
-     */
-    private static int calculateRequiredExperience(int level) {
-        // 默认基础经验值和成长因子
-        double baseExp = 100.0;
-        double expGrowth = 0.1;
-        
-        // 从配置文件中读取
-        try {
-            baseExp = FateServants.getInstance().getConfig().getDouble("stats.base_exp_requirement", baseExp);
-            expGrowth = FateServants.getInstance().getConfig().getDouble("stats.exp_growth_factor", expGrowth);
-        } catch (Exception e) {
-            // 使用默认值
-        }
-        
-        // 计算公式: baseExp * (1 + (level - 1) * expGrowth)
-        int requiredExp = (int) Math.round(baseExp * (1 + (level - 1) * expGrowth));
-        return Math.max(1, requiredExp);
-    }
-    
-    /**
-     * 清除经验缓存
-     */
-    public static void clearExpCache() {
-        expCache.clear();
-        DebugUtils.log("cache.clear", "经验值缓存");
-    }
-    
-    /**
-     * 预热经验缓存（预先计算指定范围的等级所需经验值）
-     * @param maxLevel 最大等级
-     */
-    public static void warmupExpCache(int maxLevel) {
-        for (int i = 1; i <= maxLevel; i++) {
-            getRequiredExperience(i);
-        }
-    }
-    
     /**
      * 检查是否应该更新（根据时间间隔）
      * @param key 更新键
@@ -0,0 +1,237 @@
+package cn.i7mc.fateservants.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 预编译的占位符模板
+ * 格式字符串在加载时只解析一次，拆分为文本片段和占位符槽位，槽位的名称在编译时由绑定函数转换为类型化的键，
+ * 渲染时按顺序把文本片段和占位符的值追加到可复用的StringBuilder中，不使用正则也不产生中间字符串
+ * 绑定函数返回null的占位符按原文保留，与String.replace链的行为一致
+ * @param <K> 占位符键的类型
+ */
+public final class PlaceholderTemplate<K> {
+    // 每个线程复用的渲染缓冲区
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+    private final String source;
+    // literals[i]位于keys[i]之前，最后一个元素为结尾文本
+    private final String[] literals;
+    private final Object[] keys;
+
+    /**
+     * 占位符解析器
+     * @param <K> 占位符键的类型
+     * @param <C> 渲染上下文的类型
+     */
+    public interface Resolver<K, C> {
+        /**
+         * 把占位符的值追加到输出中
+         * @param key 占位符键
+         * @param context 渲染上下文
+         * @param out 输出缓冲区
+         */
+        void append(K key, C context, StringBuilder out);
+    }
+
+    private PlaceholderTemplate(String source, String[] literals, Object[] keys) {
+        this.source = source;
+        this.literals = literals;
+        this.keys = keys;
+    }
+
+    /**
+     * 编译格式字符串
+     * @param format 格式字符串
+     * @param binder 占位符名称到键的绑定函数，返回null表示该占位符不处理
+     * @param <K> 占位符键的类型
+     * @return 编译后的模板
+     */
+    public static <K> PlaceholderTemplate<K> compile(String format, Function<String, K> binder) {
+        if (format == null) {
+            format = "";
+        }
+        List<String> literals = new ArrayList<>();
+        List<Object> keys = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        int length = format.length();
+        int i = 0;
+        while (i < length) {
+            char c = format.charAt(i);
+            if (c != '{') {
+                literal.append(c);
+                i++;
+                continue;
+            }
+
+            // 查找最近的右括号，中间出现左括号时以后一个左括号为准
+            int end = i + 1;
+            while (end < length && format.charAt(end) != '}' && format.charAt(end) != '{') {
+                end++;
+            }
+            if (end >= length || format.charAt(end) == '{' || end == i + 1) {
+                literal.append(format, i, end);
+                i = end;
+                continue;
+            }
+
+            String name = format.substring(i + 1, end);
+            K key = binder.apply(name);
+            if (key == null) {
+                literal.append(format, i, end + 1);
+            } else {
+                literals.add(literal.toString());
+                keys.add(key);
+                literal.setLength(0);
+            }
+            i = end + 1;
+        }
+        literals.add(literal.toString());
+
+        return new PlaceholderTemplate<>(format, literals.toArray(new String[0]), keys.toArray());
+    }
+
+    /**
+     * 获取当前线程的渲染缓冲区，返回前会清空
+     * 缓冲区在下一次调用前有效，解析器内部不应再次获取
+     * @return 渲染缓冲区
+     */
+    public static StringBuilder buffer() {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        return buffer;
+    }
+
+    /**
+     * 把模板渲染到指定缓冲区
+     * @param out 输出缓冲区
+     * @param resolver 占位符解析器
+     * @param context 渲染上下文
+     * @param <C> 渲染上下文的类型
+     */
+    @SuppressWarnings("unchecked")
+    public <C> void appendTo(StringBuilder out, Resolver<K, C> resolver, C context) {
+        for (int i = 0; i < keys.length; i++) {
+            out.append(literals[i]);
+            resolver.append((K) keys[i], context, out);
+        }
+        out.append(literals[keys.length]);
+    }
+
+    /**
+     * 渲染模板
+     * @param resolver 占位符解析器
+     * @param context 渲染上下文
+     * @param <C> 渲染上下文的类型
+     * @return 渲染结果
+     */
+    public <C> String render(Resolver<K, C> resolver, C context) {
+        if (keys.length == 0) {
+            return literals[0];
+        }
+        StringBuilder out = buffer();
+        appendTo(out, resolver, context);
+        return out.toString();
+    }
+
+    /**
+     * 获取占位符槽位数量
+     * @return 槽位数量
+     */
+    public int getSlotCount() {
+        return keys.length;
+    }
+
+    /**
+     * 获取指定槽位的键
+     * @param index 槽位序号
+     * @return 占位符键
+     */
+    @SuppressWarnings("unchecked")
+    public K getKey(int index) {
+        return (K) keys[index];
+    }
+
+    /**
+     * 获取原始格式字符串
+     * @return 格式字符串
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 原地转换缓冲区中的&颜色代码，规则与ChatColor.translateAlternateColorCodes相同
+     * @param text 缓冲区
+     */
+    public static void translateColorCodes(StringBuilder text) {
+        for (int i = 0, length = text.length() - 1; i < length; i++) {
+            if (text.charAt(i) == '&' && "0123456789AaBbCcDdEeFfKkLlMmNnOoRr".indexOf(text.charAt(i + 1)) > -1) {
+                text.setCharAt(i, '§');
+                text.setCharAt(i + 1, Character.toLowerCase(text.charAt(i + 1)));
+            }
+        }
+    }
+
+    /**
+     * 追加保留一位小数的数值，结果与String.format("%.1f")相同
+     * @param out 输出缓冲区
+     * @param value 数值
+     */
+    public static void appendFixed1(StringBuilder out, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append(value);
+            return;
+        }
+        long scaled = Math.round(Math.abs(value) * 10.0);
+        if (value < 0 && scaled != 0) {
+            out.append('-');
+        }
+        out.append(scaled / 10).append('.').append(scaled % 10);
+    }
+
+    /**
+     * 按格式字符串缓存的模板集合，同一格式字符串只编译一次，重载配置时清空
+     * @param <K> 占位符键的类型
+     */
+    public static final class Cache<K> {
+        private final Function<String, K> binder;
+        private final Map<String, PlaceholderTemplate<K>> templates = new ConcurrentHashMap<>();
+
+        /**
+         * 创建模板缓存
+         * @param binder 占位符名称到键的绑定函数
+         */
+        public Cache(Function<String, K> binder) {
+            this.binder = binder;
+        }
+
+        /**
+         * 获取格式字符串对应的模板，首次使用时编译
+         * @param format 格式字符串
+         * @return 编译后的模板
+         */
+        public PlaceholderTemplate<K> get(String format) {
+            if (format == null) {
+                format = "";
+            }
+            PlaceholderTemplate<K> template = templates.get(format);
+            if (template == null) {
+                template = compile(format, binder);
+                templates.put(format, template);
+            }
+            return template;
+        }
+
+        /**
+         * 清空缓存
+         */
+        public void clear() {
+            templates.clear();
+        }
+    }
+}